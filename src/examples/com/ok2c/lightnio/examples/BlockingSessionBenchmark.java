@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.examples;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+
+import com.ok2c.lightnio.IOEventDispatch;
+import com.ok2c.lightnio.ListenerEndpoint;
+import com.ok2c.lightnio.impl.BlockingIOEventDispatch;
+import com.ok2c.lightnio.impl.BlockingIOSession;
+import com.ok2c.lightnio.impl.BlockingSessionHandler;
+import com.ok2c.lightnio.impl.DefaultConnectingIOReactor;
+import com.ok2c.lightnio.impl.DefaultListeningIOReactor;
+import com.ok2c.lightnio.impl.IOReactorConfig;
+
+/**
+ * Compares the request throughput of an echo server written against
+ * the {@link IOEventDispatch} callbacks with the same server written in
+ * blocking style on top of {@link BlockingIOEventDispatch}. The client
+ * side always uses the callback API.
+ * <p>
+ * Mode <code>callback</code> runs the callback server, <code>blocking</code>
+ * runs the blocking server with a platform thread per session and
+ * <code>virtual</code> the blocking server with a virtual thread per session.
+ * The latter requires a JRE that supports virtual threads.
+ * <p>
+ * Usage: BlockingSessionBenchmark [callback|blocking|virtual] [connections]
+ *   [requests per connection]
+ */
+public class BlockingSessionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "blocking";
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+
+        IOEventDispatch serverDispatch;
+        if (mode.equals("callback")) {
+            serverDispatch = new WakeupBenchmark.ServerDispatch();
+        } else if (mode.equals("blocking")) {
+            serverDispatch = new BlockingIOEventDispatch(new EchoHandler());
+        } else if (mode.equals("virtual")) {
+            ThreadFactory threadFactory;
+            try {
+                threadFactory = virtualThreadFactory();
+            } catch (NoSuchMethodException ex) {
+                System.err.println("Virtual threads are not supported by this JRE");
+                return;
+            }
+            serverDispatch = new BlockingIOEventDispatch(new EchoHandler(), threadFactory);
+        } else {
+            System.err.println("Unknown mode: " + mode);
+            return;
+        }
+
+        IOReactorConfig config = new IOReactorConfig();
+        config.setWorkerCount(2);
+        config.setTcpNoDelay(true);
+
+        DefaultListeningIOReactor server = new DefaultListeningIOReactor(config);
+        DefaultConnectingIOReactor client = new DefaultConnectingIOReactor(config);
+
+        CountDownLatch latch = new CountDownLatch(connections);
+        WakeupBenchmark.ClientDispatch clientDispatch =
+            new WakeupBenchmark.ClientDispatch(requests, null, latch);
+
+        Thread serverThread = WakeupBenchmark.start(server, serverDispatch);
+        Thread clientThread = WakeupBenchmark.start(client, clientDispatch);
+
+        ListenerEndpoint endpoint = server.listen(new InetSocketAddress("localhost", 0));
+        endpoint.waitFor();
+        int port = ((InetSocketAddress) endpoint.getAddress()).getPort();
+        SocketAddress address = new InetSocketAddress("localhost", port);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < connections; i++) {
+            client.connect(address, null, null, null);
+        }
+        latch.await();
+        long elapsed = System.currentTimeMillis() - start;
+        long total = clientDispatch.completed.get();
+
+        System.out.println("Mode:              " + mode);
+        System.out.println("Connections:       " + connections);
+        System.out.println("Requests:          " + total);
+        System.out.println("Time (ms):         " + elapsed);
+        System.out.println("Requests/s:        " + (elapsed > 0 ? total * 1000 / elapsed : 0));
+
+        client.shutdown();
+        server.shutdown();
+        clientThread.join();
+        serverThread.join();
+    }
+
+    /**
+     * Obtains the virtual thread factory reflectively, so that this class
+     * can be compiled for and run on older JREs.
+     */
+    static ThreadFactory virtualThreadFactory() throws Exception {
+        Method ofVirtual = Thread.class.getMethod("ofVirtual");
+        Object builder = ofVirtual.invoke(null);
+        Method factory = ofVirtual.getReturnType().getMethod("factory");
+        return (ThreadFactory) factory.invoke(builder);
+    }
+
+    static class EchoHandler implements BlockingSessionHandler {
+
+        public void handle(final BlockingIOSession session) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            while (session.read(buffer) != -1) {
+                buffer.flip();
+                session.write(buffer);
+                buffer.clear();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.examples;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ok2c.lightnio.EventMask;
+import com.ok2c.lightnio.IOEventDispatch;
+import com.ok2c.lightnio.IOSession;
+import com.ok2c.lightnio.ListenerEndpoint;
+import com.ok2c.lightnio.impl.DefaultListeningIOReactor;
+import com.ok2c.lightnio.impl.IOReactorConfig;
+
+/**
+ * Measures the cost of {@link IOSession#setEvent(int)} /
+ * {@link IOSession#clearEvent(int)} calls made by the I/O reactor thread
+ * that owns the session, by foreign threads, and by both at the same time
+ * with foreign threads contending on the same sessions.
+ * <p>
+ * Usage: EventMaskBenchmark [foreign threads] [operations per thread] [queueing]
+ */
+public class EventMaskBenchmark {
+
+    private static final int SESSIONS = 4;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final int ops = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        boolean queueing = args.length > 2 ? Boolean.valueOf(args[2]).booleanValue() : false;
+
+        IOReactorConfig config = new IOReactorConfig();
+        config.setWorkerCount(1);
+        config.setInterestOpsQueueing(queueing);
+        final DefaultListeningIOReactor ioReactor = new DefaultListeningIOReactor(config);
+        final TogglingDispatch dispatch = new TogglingDispatch(ops);
+
+        Thread ioThread = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    ioReactor.execute(dispatch);
+                } catch (IOException ex) {
+                    System.err.println("I/O error: " + ex.getMessage());
+                }
+            }
+
+        });
+        ioThread.start();
+
+        ListenerEndpoint endpoint = ioReactor.listen(new InetSocketAddress("localhost", 0));
+        endpoint.waitFor();
+        int port = ((InetSocketAddress) endpoint.getAddress()).getPort();
+
+        Socket[] sockets = new Socket[SESSIONS];
+        for (int i = 0; i < sockets.length; i++) {
+            sockets[i] = new Socket("localhost", port);
+        }
+        while (dispatch.sessions.size() < SESSIONS) {
+            Thread.sleep(10);
+        }
+
+        System.out.println("Operations per thread: " + ops);
+        System.out.println("Interest ops queueing: " + queueing);
+
+        // Warm up
+        runReactor(dispatch, sockets[0]);
+        runForeign(dispatch.sessions, threads, ops);
+
+        long reactorTime = runReactor(dispatch, sockets[0]);
+        report("Reactor thread only", 1, ops, reactorTime);
+
+        long foreignTime = runForeign(dispatch.sessions, threads, ops);
+        report("Foreign threads only", threads, ops, foreignTime);
+
+        dispatch.reset();
+        sockets[0].getOutputStream().write(1);
+        sockets[0].getOutputStream().flush();
+        foreignTime = runForeign(dispatch.sessions, threads, ops);
+        dispatch.latch.await();
+        report("Mixed: reactor thread", 1, ops, dispatch.elapsed.get());
+        report("Mixed: foreign threads", threads, ops, foreignTime);
+
+        for (int i = 0; i < sockets.length; i++) {
+            sockets[i].close();
+        }
+        ioReactor.shutdown();
+        ioThread.join();
+    }
+
+    static void report(final String name, int threads, int ops, long nanos) {
+        long total = (long) threads * ops;
+        System.out.println(name + ": " + (nanos / total) + " ns/op, "
+                + (nanos > 0 ? total * 1000000000L / nanos : 0) + " ops/s");
+    }
+
+    static long runReactor(final TogglingDispatch dispatch, final Socket socket) throws Exception {
+        dispatch.reset();
+        socket.getOutputStream().write(1);
+        socket.getOutputStream().flush();
+        dispatch.latch.await();
+        return dispatch.elapsed.get();
+    }
+
+    static long runForeign(
+            final List<IOSession> sessions, int threads, final int ops) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < workers.length; i++) {
+            final IOSession session = sessions.get(i % sessions.size());
+            workers[i] = new Thread(new Runnable() {
+
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    for (int n = 0; n < ops; n++) {
+                        if ((n & 1) == 0) {
+                            session.setEvent(EventMask.WRITE);
+                        } else {
+                            session.clearEvent(EventMask.WRITE);
+                        }
+                    }
+                }
+
+            });
+            workers[i].start();
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].join();
+        }
+        return System.nanoTime() - started;
+    }
+
+    static class TogglingDispatch implements IOEventDispatch {
+
+        final List<IOSession> sessions;
+        final AtomicLong elapsed;
+        final ByteBuffer buffer;
+        final int ops;
+
+        volatile CountDownLatch latch;
+
+        TogglingDispatch(int ops) {
+            super();
+            this.ops = ops;
+            this.sessions = new CopyOnWriteArrayList<IOSession>();
+            this.elapsed = new AtomicLong(0);
+            this.buffer = ByteBuffer.allocate(16);
+        }
+
+        void reset() {
+            this.elapsed.set(0);
+            this.latch = new CountDownLatch(1);
+        }
+
+        public void connected(final IOSession session) {
+            session.setEventMask(EventMask.READ);
+            this.sessions.add(session);
+        }
+
+        public void inputReady(final IOSession session) {
+            try {
+                this.buffer.clear();
+                int bytesRead = session.channel().read(this.buffer);
+                if (bytesRead == -1) {
+                    session.close();
+                    return;
+                }
+            } catch (IOException ex) {
+                session.close();
+                return;
+            }
+            long started = System.nanoTime();
+            for (int n = 0; n < this.ops; n++) {
+                if ((n & 1) == 0) {
+                    session.setEvent(EventMask.WRITE);
+                } else {
+                    session.clearEvent(EventMask.WRITE);
+                }
+            }
+            this.elapsed.set(System.nanoTime() - started);
+            this.latch.countDown();
+        }
+
+        public void outputReady(final IOSession session) {
+            session.clearEvent(EventMask.WRITE);
+        }
+
+        public void timeout(final IOSession session) {
+            session.close();
+        }
+
+        public void disconnected(final IOSession session) {
+            this.sessions.remove(session);
+        }
+
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.examples;
+
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.spi.AbstractSelectionKey;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import com.ok2c.lightnio.impl.SelectedKeySet;
+
+/**
+ * Compares the per-loop overhead of the JDK hash based selected-key set
+ * and {@link SelectedKeySet} at 1k, 10k and 100k ready keys. Each round
+ * fills the set the way the selector does, walks it the way the I/O
+ * reactor does and clears it.
+ * <p>
+ * Usage: SelectedKeysBenchmark [key operations per measurement]
+ */
+public class SelectedKeysBenchmark {
+
+    private static final int[] READY_KEYS = new int[] { 1000, 10000, 100000 };
+
+    private static int sink;
+
+    public static void main(String[] args) throws Exception {
+        long work = args.length > 0 ? Long.parseLong(args[0]) : 50000000L;
+
+        System.out.println("Ready keys    HashSet (ns/key)    SelectedKeySet (ns/key)");
+        for (int i = 0; i < READY_KEYS.length; i++) {
+            int count = READY_KEYS[i];
+            SelectionKey[] keys = new SelectionKey[count];
+            for (int n = 0; n < keys.length; n++) {
+                keys[n] = new MockSelectionKey(n);
+            }
+            int rounds = (int) Math.max(1, work / count);
+
+            Set<SelectionKey> hashSet = new HashSet<SelectionKey>();
+            SelectedKeySet arraySet = new SelectedKeySet();
+            // Warm up
+            for (int n = 0; n < 3; n++) {
+                runHashSet(hashSet, keys, rounds);
+                runArraySet(arraySet, keys, rounds);
+            }
+            long hashTime = runHashSet(hashSet, keys, rounds);
+            long arrayTime = runArraySet(arraySet, keys, rounds);
+            long total = (long) rounds * count;
+            System.out.println(pad(Integer.toString(count), 14)
+                    + pad(format((double) hashTime / total), 20)
+                    + format((double) arrayTime / total));
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    static long runHashSet(final Set<SelectionKey> set, final SelectionKey[] keys, int rounds) {
+        long started = System.nanoTime();
+        int acc = 0;
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < keys.length; i++) {
+                set.add(keys[i]);
+            }
+            for (Iterator<SelectionKey> it = set.iterator(); it.hasNext(); ) {
+                SelectionKey key = it.next();
+                acc += key.readyOps();
+            }
+            set.clear();
+        }
+        sink += acc;
+        return System.nanoTime() - started;
+    }
+
+    static long runArraySet(final SelectedKeySet set, final SelectionKey[] keys, int rounds) {
+        long started = System.nanoTime();
+        int acc = 0;
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < keys.length; i++) {
+                set.add(keys[i]);
+            }
+            for (int i = 0; i < set.size(); i++) {
+                SelectionKey key = set.get(i);
+                acc += key.readyOps();
+            }
+            set.clear();
+        }
+        sink += acc;
+        return System.nanoTime() - started;
+    }
+
+    static String format(double value) {
+        return Long.toString(Math.round(value * 100) / 100) + "."
+            + pad2(Math.round(value * 100) % 100);
+    }
+
+    static String pad2(long value) {
+        return value < 10 ? "0" + value : Long.toString(value);
+    }
+
+    static String pad(final String s, int width) {
+        StringBuffer buffer = new StringBuffer(s);
+        while (buffer.length() < width) {
+            buffer.append(' ');
+        }
+        return buffer.toString();
+    }
+
+    static class MockSelectionKey extends AbstractSelectionKey {
+
+        private final int readyOps;
+
+        MockSelectionKey(int n) {
+            super();
+            this.readyOps = (n & 1) == 0 ? OP_READ : OP_WRITE;
+        }
+
+        @Override
+        public SelectableChannel channel() {
+            return null;
+        }
+
+        @Override
+        public Selector selector() {
+            return null;
+        }
+
+        @Override
+        public int interestOps() {
+            return OP_READ | OP_WRITE;
+        }
+
+        @Override
+        public SelectionKey interestOps(int ops) {
+            return this;
+        }
+
+        @Override
+        public int readyOps() {
+            return this.readyOps;
+        }
+
+    }
+
+}
@@ -0,0 +1,255 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.examples;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ok2c.lightnio.EventMask;
+import com.ok2c.lightnio.IOEventDispatch;
+import com.ok2c.lightnio.IOReactor;
+import com.ok2c.lightnio.IOSession;
+import com.ok2c.lightnio.ListenerEndpoint;
+import com.ok2c.lightnio.impl.DefaultConnectingIOReactor;
+import com.ok2c.lightnio.impl.DefaultListeningIOReactor;
+import com.ok2c.lightnio.impl.IOReactorConfig;
+
+/**
+ * Echo workload that counts selector wakeups per request. Both peers toggle
+ * {@link EventMask#WRITE} for every message. With <code>offload</code> set
+ * to <code>true</code> the client requests output from a separate thread
+ * as an application handing over responses to the I/O layer would.
+ * <p>
+ * Usage: WakeupBenchmark [connections] [requests per connection] [offload]
+ */
+public class WakeupBenchmark {
+
+    private static final byte[] MESSAGE = "0123456789abcdef0123456789abcdef".getBytes();
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        boolean offload = args.length > 2 ? Boolean.valueOf(args[2]).booleanValue() : false;
+
+        IOReactorConfig config = new IOReactorConfig();
+        config.setWorkerCount(2);
+        config.setTcpNoDelay(true);
+
+        final DefaultListeningIOReactor server = new DefaultListeningIOReactor(config);
+        final DefaultConnectingIOReactor client = new DefaultConnectingIOReactor(config);
+
+        ExecutorService executor = offload ? Executors.newSingleThreadExecutor() : null;
+        CountDownLatch latch = new CountDownLatch(connections);
+        ClientDispatch clientDispatch = new ClientDispatch(requests, executor, latch);
+
+        Thread serverThread = start(server, new ServerDispatch());
+        Thread clientThread = start(client, clientDispatch);
+
+        ListenerEndpoint endpoint = server.listen(new InetSocketAddress("localhost", 0));
+        endpoint.waitFor();
+        int port = ((InetSocketAddress) endpoint.getAddress()).getPort();
+        SocketAddress address = new InetSocketAddress("localhost", port);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < connections; i++) {
+            client.connect(address, null, null, null);
+        }
+        latch.await();
+        long elapsed = System.currentTimeMillis() - start;
+
+        long total = clientDispatch.completed.get();
+        long serverWakeups = server.getWakeupCount();
+        long clientWakeups = client.getWakeupCount();
+
+        System.out.println("Connections:       " + connections);
+        System.out.println("Requests:          " + total);
+        System.out.println("Offload:           " + offload);
+        System.out.println("Time (ms):         " + elapsed);
+        System.out.println("Requests/s:        " + (elapsed > 0 ? total * 1000 / elapsed : 0));
+        System.out.println("Server wakeups:    " + serverWakeups);
+        System.out.println("Client wakeups:    " + clientWakeups);
+        System.out.println("Wakeups / request: " + (double) (serverWakeups + clientWakeups) / total);
+
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        client.shutdown();
+        server.shutdown();
+        clientThread.join();
+        serverThread.join();
+    }
+
+    static Thread start(final IOReactor ioReactor, final IOEventDispatch eventDispatch) {
+        Thread thread = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    ioReactor.execute(eventDispatch);
+                } catch (IOException ex) {
+                    System.err.println("I/O error: " + ex.getMessage());
+                }
+            }
+
+        });
+        thread.start();
+        return thread;
+    }
+
+    static class ServerDispatch implements IOEventDispatch {
+
+        private static final String BUFFER = "buffer";
+
+        public void connected(final IOSession session) {
+            session.setAttribute(BUFFER, ByteBuffer.allocate(1024));
+            session.setEventMask(EventMask.READ);
+        }
+
+        public void inputReady(final IOSession session) {
+            ByteBuffer buffer = (ByteBuffer) session.getAttribute(BUFFER);
+            try {
+                int bytesRead = session.channel().read(buffer);
+                if (buffer.position() > 0) {
+                    session.setEvent(EventMask.WRITE);
+                }
+                if (bytesRead == -1) {
+                    session.close();
+                }
+            } catch (IOException ex) {
+                session.close();
+            }
+        }
+
+        public void outputReady(final IOSession session) {
+            ByteBuffer buffer = (ByteBuffer) session.getAttribute(BUFFER);
+            try {
+                buffer.flip();
+                session.channel().write(buffer);
+                buffer.compact();
+                if (buffer.position() == 0) {
+                    session.clearEvent(EventMask.WRITE);
+                }
+            } catch (IOException ex) {
+                session.close();
+            }
+        }
+
+        public void timeout(final IOSession session) {
+            session.close();
+        }
+
+        public void disconnected(final IOSession session) {
+        }
+
+    }
+
+    static class ClientState {
+
+        final ByteBuffer out = ByteBuffer.wrap(MESSAGE);
+        final ByteBuffer in = ByteBuffer.allocate(MESSAGE.length);
+        int remaining;
+
+    }
+
+    static class ClientDispatch implements IOEventDispatch {
+
+        private static final String STATE = "state";
+
+        final AtomicLong completed;
+
+        private final int requests;
+        private final ExecutorService executor;
+        private final CountDownLatch latch;
+
+        ClientDispatch(int requests, final ExecutorService executor, final CountDownLatch latch) {
+            super();
+            this.requests = requests;
+            this.executor = executor;
+            this.latch = latch;
+            this.completed = new AtomicLong(0);
+        }
+
+        public void connected(final IOSession session) {
+            ClientState state = new ClientState();
+            state.remaining = this.requests;
+            session.setAttribute(STATE, state);
+            session.setEventMask(EventMask.READ_WRITE);
+        }
+
+        public void inputReady(final IOSession session) {
+            ClientState state = (ClientState) session.getAttribute(STATE);
+            try {
+                int bytesRead = session.channel().read(state.in);
+                if (bytesRead == -1) {
+                    session.close();
+                    return;
+                }
+                if (state.in.hasRemaining()) {
+                    return;
+                }
+                state.in.clear();
+                this.completed.incrementAndGet();
+                state.remaining--;
+                if (state.remaining == 0) {
+                    session.close();
+                    this.latch.countDown();
+                    return;
+                }
+                state.out.rewind();
+                if (this.executor != null) {
+                    this.executor.execute(new Runnable() {
+
+                        public void run() {
+                            session.setEvent(EventMask.WRITE);
+                        }
+
+                    });
+                } else {
+                    session.setEvent(EventMask.WRITE);
+                }
+            } catch (IOException ex) {
+                session.close();
+            }
+        }
+
+        public void outputReady(final IOSession session) {
+            ClientState state = (ClientState) session.getAttribute(STATE);
+            try {
+                session.channel().write(state.out);
+                if (!state.out.hasRemaining()) {
+                    session.clearEvent(EventMask.WRITE);
+                }
+            } catch (IOException ex) {
+                session.close();
+            }
+        }
+
+        public void timeout(final IOSession session) {
+            session.close();
+        }
+
+        public void disconnected(final IOSession session) {
+        }
+
+    }
+
+}
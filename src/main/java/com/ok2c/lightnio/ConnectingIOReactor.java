@@ -15,6 +15,8 @@
 package com.ok2c.lightnio;
 
 import java.net.SocketAddress;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * ConnectingIOReactor represents an I/O reactor capable of establishing
@@ -60,4 +62,46 @@ public interface ConnectingIOReactor extends IOReactor {
             Object attachment,
             SessionRequestCallback callback);
 
+    /**
+     * Requests connections to multiple remote hosts at once. This method
+     * is equivalent to calling {@link #connect(SocketAddress, SocketAddress,
+     * Object, SessionRequestCallback)} for each of the given remote addresses
+     * but hands all requests over to the I/O reactor in one go.
+     *
+     * @param remoteAddresses the socket addresses of the remote hosts.
+     * @param localAddress the local socket address. Can be <code>null</code>,
+     *    in which can the default local address and a random port will be used.
+     * @param attachment the attachment object shared by all new sessions.
+     *    Can be <code>null</code>.
+     * @param callback interface. Can be <code>null</code>.
+     * @return session request objects in the order of the remote addresses.
+     */
+    List<SessionRequest> connect(
+            Collection<? extends SocketAddress> remoteAddresses,
+            SocketAddress localAddress,
+            Object attachment,
+            SessionRequestCallback callback);
+
+    /**
+     * Requests a connection to any of the given candidate addresses of
+     * a remote host. Connect attempts to the candidates race against each
+     * other: they are started in the given order, each after a configurable
+     * delay or as soon as the previous attempt fails. The first connection to be
+     * established wins, the other attempts are abandoned. The winning
+     * address is reported by {@link SessionRequest#getConnectedAddress()}.
+     * Candidate addresses are expected to be resolved.
+     *
+     * @param candidates the candidate socket addresses of the remote host.
+     * @param localAddress the local socket address. Can be <code>null</code>,
+     *    in which can the default local address and a random port will be used.
+     * @param attachment the attachment object. Can be <code>null</code>.
+     * @param callback interface. Can be <code>null</code>.
+     * @return session request object.
+     */
+    SessionRequest connectAny(
+            List<? extends SocketAddress> candidates,
+            SocketAddress localAddress,
+            Object attachment,
+            SessionRequestCallback callback);
+
 }
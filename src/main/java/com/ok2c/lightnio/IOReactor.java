@@ -50,6 +50,33 @@ public interface IOReactor {
     void execute(IOEventDispatch eventDispatch)
         throws IOException;
 
+    /**
+     * Submits the task to be run by the I/O reactor thread. Tasks submitted
+     * by the same thread are run in the order of submission. This method can
+     * be called by any thread and does not block.
+     * <p>
+     * Application code can use this method to perform a series of operations
+     * on I/O sessions in the context of the I/O reactor thread instead of
+     * having each operation synchronize with the I/O reactor.
+     *
+     * @param task the task.
+     * @throws java.util.concurrent.RejectedExecutionException if the task
+     *   queue is full or the reactor has been shut down.
+     */
+    void execute(Runnable task);
+
+    /**
+     * Submits the task to be run by the I/O reactor thread once the given
+     * delay elapses. This method can be called by any thread and does not
+     * block.
+     *
+     * @param task the task.
+     * @param delayMs delay in milliseconds.
+     * @throws java.util.concurrent.RejectedExecutionException if the task
+     *   queue is full or the reactor has been shut down.
+     */
+    void schedule(Runnable task, long delayMs);
+
     /**
      * Initiates shutdown of the reactor and blocks approximately for the given
      * period of time in milliseconds waiting for the reactor to terminate all
@@ -33,6 +33,17 @@ public interface SessionRequest {
      */
     SocketAddress getRemoteAddress();
 
+    /**
+     * Returns socket address of the remote host the connection has been
+     * established with. If the request had several candidate addresses or
+     * the host name of the remote address had to be resolved, this is the
+     * address of the connection attempt that succeeded.
+     *
+     * @return socket address of the connected remote host or
+     *  <code>null</code> if no connection has been established.
+     */
+    SocketAddress getConnectedAddress();
+
     /**
      * Returns local socket address.
      *
@@ -20,6 +20,20 @@ import java.nio.ByteBuffer;
  * A buffer that expand its capacity on demand using {@link ByteBufferAllocator}
  * interface. Internally, this class is backed by an instance of
  * {@link ByteBuffer}.
+ * <p>
+ * If the allocator is a {@link RecyclingByteBufferAllocator}, buffers
+ * outgrown on expansion are returned to the allocator, and so is the current
+ * buffer when {@link #release()} is called.
+ * <p>
+ * A lazy buffer holds backing storage only while it contains data. The
+ * backing buffer is allocated once data is written into it and released
+ * as soon as all data has been read out of it. Lazy buffers are best used
+ * with a {@link RecyclingByteBufferAllocator}.
+ * <p>
+ * By default the buffer never shrinks. A shrink policy can be set with
+ * {@link #setShrinkPolicy(int, float, boolean)} to let a buffer that has
+ * grown beyond twice its initial size fall back toward the initial size
+ * once the extra capacity is no longer used.
  */
 public class ExpandableBuffer {
 
@@ -27,26 +41,57 @@ public class ExpandableBuffer {
     public final static int OUTPUT_MODE = 1;
 
     private final ByteBufferAllocator allocator;
+    private final int buffersize;
+    private final boolean lazy;
     private int mode;
 
+    private int shrinkOperations;
+    private float shrinkUsage;
+    private boolean shrinkOnDrain;
+    private int lowUsageCount;
+
+    // Stands in for the backing buffer while none is attached. Never
+    // shared with other instances
+    private ByteBuffer empty;
+
     protected ByteBuffer buffer = null;
 
     /**
-     * Allocates buffer of the given size using the given allocator.
+     * Creates buffer of the given size using the given allocator.
      *
      * @param buffersize the buffer size.
      * @param allocator allocator to be used to allocate {@link ByteBuffer}s.
+     * @param lazy <code>true</code> if the backing buffer is to be allocated
+     *   only while the buffer contains data, <code>false</code> if it is to be
+     *   allocated immediately and kept.
      */
-    public ExpandableBuffer(int buffersize, final ByteBufferAllocator allocator) {
+    public ExpandableBuffer(int buffersize, final ByteBufferAllocator allocator, boolean lazy) {
         super();
         if (allocator == null) {
             throw new IllegalArgumentException("ByteBuffer allocator may not be null");
         }
         this.allocator = allocator;
-        this.buffer = allocator.allocate(buffersize);
+        this.buffersize = buffersize;
+        this.lazy = lazy;
+        if (lazy) {
+            this.buffer = detached();
+        } else {
+            this.buffer = allocator.allocate(buffersize);
+            this.buffer.clear();
+        }
         this.mode = INPUT_MODE;
     }
 
+    /**
+     * Allocates buffer of the given size using the given allocator.
+     *
+     * @param buffersize the buffer size.
+     * @param allocator allocator to be used to allocate {@link ByteBuffer}s.
+     */
+    public ExpandableBuffer(int buffersize, final ByteBufferAllocator allocator) {
+        this(buffersize, allocator, false);
+    }
+
     /**
      * Returns the current mode:
      * <p>
@@ -65,8 +110,41 @@ public class ExpandableBuffer {
      */
     protected void setOutputMode() {
         if (this.mode != OUTPUT_MODE) {
-            this.buffer.flip();
             this.mode = OUTPUT_MODE;
+            if (isDetached()) {
+                return;
+            }
+            this.buffer.flip();
+            if (this.shrinkOperations > 0) {
+                if (this.buffer.limit() < this.buffer.capacity() * this.shrinkUsage) {
+                    this.lowUsageCount++;
+                } else {
+                    this.lowUsageCount = 0;
+                }
+            }
+        }
+        releaseIfDrained();
+    }
+
+    /**
+     * Releases the backing buffer of a lazy buffer once it holds no data,
+     * that is, once all data has been read out of it in the output mode or
+     * while nothing has been written into it in the input mode.
+     */
+    protected void releaseIfDrained() {
+        if (!this.lazy || isDetached()) {
+            return;
+        }
+        boolean empty;
+        if (this.mode == OUTPUT_MODE) {
+            empty = !this.buffer.hasRemaining();
+        } else {
+            empty = this.buffer.position() == 0;
+        }
+        if (empty) {
+            ByteBuffer oldbuffer = this.buffer;
+            this.buffer = detached();
+            recycle(oldbuffer);
         }
     }
 
@@ -75,20 +153,126 @@ public class ExpandableBuffer {
      */
     protected void setInputMode() {
         if (this.mode != INPUT_MODE) {
+            this.mode = INPUT_MODE;
+            if (isDetached()) {
+                return;
+            }
             if (this.buffer.hasRemaining()) {
                 this.buffer.compact();
             } else {
                 this.buffer.clear();
             }
-            this.mode = INPUT_MODE;
+            shrinkIfUnused();
         }
     }
 
+    private void shrinkIfUnused() {
+        int capacity = this.buffer.capacity();
+        if (capacity < this.buffersize << 1) {
+            this.lowUsageCount = 0;
+            return;
+        }
+        if (this.shrinkOnDrain && this.buffer.position() == 0) {
+            ByteBuffer oldbuffer = this.buffer;
+            this.buffer = this.allocator.allocate(this.buffersize);
+            this.buffer.clear();
+            recycle(oldbuffer);
+            this.lowUsageCount = 0;
+        } else if (this.shrinkOperations > 0 && this.lowUsageCount >= this.shrinkOperations) {
+            int newcapacity = Math.max(capacity >> 1, this.buffersize);
+            if (this.buffer.position() <= newcapacity) {
+                expandCapacity(newcapacity);
+            }
+            this.lowUsageCount = 0;
+        }
+    }
+
+    /**
+     * Sets the policy for shrinking this buffer. A buffer that has grown to
+     * at least twice its initial size is halved, though not below its initial
+     * size, once it has been filled to less than the given fraction of its
+     * capacity the given number of times in a row. Optionally, such a buffer
+     * falls back to its initial size right away whenever it has been drained.
+     * Capacity given up by shrinking is returned to the allocator if the
+     * allocator is a {@link RecyclingByteBufferAllocator}.
+     *
+     * @param operations number of consecutive fill and drain cycles with low
+     *   usage after which to shrink, or <code>0</code> to disable shrinking
+     *   on low usage.
+     * @param usage the fraction of capacity below which usage counts as low.
+     * @param onDrain whether or not to shrink to the initial size once
+     *   drained.
+     */
+    public void setShrinkPolicy(int operations, float usage, boolean onDrain) {
+        if (operations < 0) {
+            throw new IllegalArgumentException("Operation count may not be negative");
+        }
+        if (usage <= 0 || usage > 1) {
+            throw new IllegalArgumentException("Usage fraction must be in the range (0, 1]");
+        }
+        this.shrinkOperations = operations;
+        this.shrinkUsage = usage;
+        this.shrinkOnDrain = onDrain;
+        this.lowUsageCount = 0;
+    }
+
     private void expandCapacity(int capacity) {
+        if (isDetached()) {
+            // Released or lazy. There is no content to carry over
+            this.buffer = allocator.allocate(Math.max(capacity, this.buffersize));
+            // Pooled buffers may have a limit below their capacity
+            this.buffer.clear();
+            return;
+        }
         ByteBuffer oldbuffer = this.buffer;
         this.buffer = allocator.allocate(capacity);
+        this.buffer.clear();
         oldbuffer.flip();
         this.buffer.put(oldbuffer);
+        recycle(oldbuffer);
+    }
+
+    private ByteBuffer detached() {
+        if (this.empty == null) {
+            this.empty = ByteBuffer.allocate(0);
+        }
+        return this.empty;
+    }
+
+    private void recycle(final ByteBuffer buffer) {
+        if (this.allocator instanceof RecyclingByteBufferAllocator) {
+            ((RecyclingByteBufferAllocator) this.allocator).release(buffer);
+        }
+    }
+
+    /**
+     * Determines whether this buffer is lazy and currently holds no
+     * backing storage.
+     *
+     * @return <code>true</code> if no backing buffer is attached,
+     *   <code>false</code> otherwise.
+     */
+    protected boolean isDetached() {
+        return this.buffer == this.empty;
+    }
+
+    /**
+     * Discards the content of this buffer and returns the backing
+     * {@link ByteBuffer} to the allocator if the allocator is
+     * a {@link RecyclingByteBufferAllocator}. The buffer remains usable
+     * and allocates a new backing buffer once written into.
+     * <p>
+     * The I/O reactor does not release session buffers on its own. Protocol
+     * handlers should call this method once the session has been closed.
+     */
+    public void release() {
+        this.mode = INPUT_MODE;
+        if (isDetached()) {
+            return;
+        }
+        ByteBuffer oldbuffer = this.buffer;
+        this.buffer = detached();
+        recycle(oldbuffer);
     }
 
     /**
@@ -157,8 +341,14 @@ public class ExpandableBuffer {
      * Clears buffer.
      */
     public void clear() {
-        this.buffer.clear();
+        if (this.lazy) {
+            release();
+            return;
+        }
         this.mode = INPUT_MODE;
+        if (!isDetached()) {
+            this.buffer.clear();
+        }
     }
 
     @Override
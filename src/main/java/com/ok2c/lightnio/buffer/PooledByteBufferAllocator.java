@@ -0,0 +1,265 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link RecyclingByteBufferAllocator} that pools buffers in power-of-two
+ * size classes.
+ * <p>
+ * Requests are rounded up to the next size class. Released buffers are kept
+ * in a small cache local to the releasing thread first, so that an I/O
+ * reactor thread allocating and releasing buffers for its own sessions does
+ * not contend with other threads. Buffers that do not fit into the thread
+ * local cache go to an arena shared by all threads. Buffers that fit into
+ * neither are left to the garbage collector. Requests larger than the largest
+ * size class are not pooled.
+ * <p>
+ * The capacity of buffers returned by this allocator is that of their size
+ * class. Their limit is set to the requested size.
+ * <p>
+ * Session buffers are owned by the protocol handler, not by the I/O reactor,
+ * so the I/O reactor does not return them to the pool when a session is
+ * closed. Protocol handlers are expected to release the session buffers they
+ * allocated with this allocator, typically from
+ * {@link com.ok2c.lightnio.IOEventDispatch#disconnected(com.ok2c.lightnio.IOSession)},
+ * using {@link ExpandableBuffer#release()}. Buffers that are not released
+ * are left to the garbage collector.
+ */
+public class PooledByteBufferAllocator implements RecyclingByteBufferAllocator {
+
+    private final boolean direct;
+    private final int minShift;
+    private final int maxShift;
+    private final int cacheCapacity;
+    private final int arenaCapacity;
+    private final Queue<ByteBuffer>[] arena;
+    private final AtomicInteger[] arenaSizes;
+    private final ThreadLocal<ThreadCache> threadCache;
+    private final AtomicLong allocatedCount;
+    private final AtomicLong reusedCount;
+
+    /**
+     * Creates new PooledByteBufferAllocator instance.
+     *
+     * @param direct whether or not to allocate direct buffers.
+     * @param minSize the size of the smallest size class. Rounded up to
+     *   a power of two.
+     * @param maxSize the size of the largest size class. Rounded up to
+     *   a power of two.
+     * @param cacheCapacity maximum number of buffers per size class cached
+     *   by each thread.
+     * @param arenaCapacity maximum number of buffers per size class kept
+     *   in the shared arena.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public PooledByteBufferAllocator(
+            boolean direct,
+            int minSize,
+            int maxSize,
+            int cacheCapacity,
+            int arenaCapacity) {
+        super();
+        if (minSize <= 0) {
+            throw new IllegalArgumentException("Minimum size may not be negative or zero");
+        }
+        if (maxSize < minSize) {
+            throw new IllegalArgumentException("Maximum size may not be less than minimum size");
+        }
+        if (maxSize > (1 << 30)) {
+            throw new IllegalArgumentException("Maximum size may not exceed 1 GB");
+        }
+        if (cacheCapacity < 0) {
+            throw new IllegalArgumentException("Cache capacity may not be negative");
+        }
+        if (arenaCapacity < 0) {
+            throw new IllegalArgumentException("Arena capacity may not be negative");
+        }
+        this.direct = direct;
+        this.minShift = shift(minSize);
+        this.maxShift = shift(maxSize);
+        this.cacheCapacity = cacheCapacity;
+        this.arenaCapacity = arenaCapacity;
+        int classes = this.maxShift - this.minShift + 1;
+        this.arena = new Queue[classes];
+        this.arenaSizes = new AtomicInteger[classes];
+        for (int i = 0; i < classes; i++) {
+            this.arena[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+            this.arenaSizes[i] = new AtomicInteger(0);
+        }
+        this.threadCache = new ThreadLocal<ThreadCache>() {
+
+            @Override
+            protected ThreadCache initialValue() {
+                return new ThreadCache(arena.length, PooledByteBufferAllocator.this.cacheCapacity);
+            }
+
+        };
+        this.allocatedCount = new AtomicLong(0);
+        this.reusedCount = new AtomicLong(0);
+    }
+
+    /**
+     * Creates new PooledByteBufferAllocator instance with size classes from
+     * 512 bytes to 1 MB, caching up to 16 buffers per size class and thread
+     * and keeping up to 256 buffers per size class in the shared arena.
+     *
+     * @param direct whether or not to allocate direct buffers.
+     */
+    public PooledByteBufferAllocator(boolean direct) {
+        this(direct, 512, 1024 * 1024, 16, 256);
+    }
+
+    private static int shift(int size) {
+        int shift = 0;
+        while ((1 << shift) < size) {
+            shift++;
+        }
+        return shift;
+    }
+
+    private int sizeClass(int size) {
+        if (size > (1 << this.maxShift)) {
+            return -1;
+        }
+        return Math.max(shift(size), this.minShift) - this.minShift;
+    }
+
+    public ByteBuffer allocate(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size may not be negative");
+        }
+        int idx = sizeClass(size);
+        if (idx < 0) {
+            this.allocatedCount.incrementAndGet();
+            return newBuffer(size);
+        }
+        ByteBuffer buffer = this.threadCache.get().poll(idx);
+        if (buffer == null) {
+            buffer = this.arena[idx].poll();
+            if (buffer != null) {
+                this.arenaSizes[idx].decrementAndGet();
+            }
+        }
+        if (buffer != null) {
+            this.reusedCount.incrementAndGet();
+            buffer.clear();
+        } else {
+            this.allocatedCount.incrementAndGet();
+            buffer = newBuffer(1 << (idx + this.minShift));
+        }
+        buffer.limit(size);
+        return buffer;
+    }
+
+    private ByteBuffer newBuffer(int capacity) {
+        return this.direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    public void release(final ByteBuffer buffer) {
+        if (buffer == null || buffer.isDirect() != this.direct || buffer.isReadOnly()) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        if ((capacity & (capacity - 1)) != 0) {
+            // Not obtained from a size class
+            return;
+        }
+        int idx = sizeClass(capacity);
+        if (idx < 0 || capacity < (1 << this.minShift)) {
+            return;
+        }
+        if (this.threadCache.get().offer(idx, buffer)) {
+            return;
+        }
+        AtomicInteger arenaSize = this.arenaSizes[idx];
+        int n;
+        do {
+            n = arenaSize.get();
+            if (n >= this.arenaCapacity) {
+                // Left to the garbage collector
+                return;
+            }
+        } while (!arenaSize.compareAndSet(n, n + 1));
+        this.arena[idx].add(buffer);
+    }
+
+    /**
+     * Returns the total number of buffers newly allocated by this allocator.
+     */
+    public long getAllocatedCount() {
+        return this.allocatedCount.get();
+    }
+
+    /**
+     * Returns the total number of allocation requests served with a pooled
+     * buffer.
+     */
+    public long getReusedCount() {
+        return this.reusedCount.get();
+    }
+
+    /**
+     * Returns the number of buffers currently kept in the shared arena.
+     */
+    public int getArenaSize() {
+        int total = 0;
+        for (int i = 0; i < this.arenaSizes.length; i++) {
+            total += this.arenaSizes[i].get();
+        }
+        return total;
+    }
+
+    static class ThreadCache {
+
+        private final ByteBuffer[][] stacks;
+        private final int[] sizes;
+
+        ThreadCache(int classes, int capacity) {
+            super();
+            this.stacks = new ByteBuffer[classes][capacity];
+            this.sizes = new int[classes];
+        }
+
+        ByteBuffer poll(int idx) {
+            int size = this.sizes[idx];
+            if (size == 0) {
+                return null;
+            }
+            size--;
+            ByteBuffer buffer = this.stacks[idx][size];
+            this.stacks[idx][size] = null;
+            this.sizes[idx] = size;
+            return buffer;
+        }
+
+        boolean offer(int idx, final ByteBuffer buffer) {
+            int size = this.sizes[idx];
+            if (size == this.stacks[idx].length) {
+                return false;
+            }
+            this.stacks[idx][size] = buffer;
+            this.sizes[idx] = size + 1;
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link ByteBufferAllocator} that can take back buffers no longer in use
+ * for reuse by subsequent allocations.
+ */
+public interface RecyclingByteBufferAllocator extends ByteBufferAllocator {
+
+    /**
+     * Returns the given buffer to this allocator. The buffer may not be
+     * accessed by the caller once it has been released, nor may it be
+     * released more than once.
+     *
+     * @param buffer the buffer previously obtained from this allocator.
+     */
+    void release(ByteBuffer buffer);
+
+}
@@ -0,0 +1,435 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.buffer;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A circular buffer that expands its capacity on demand using
+ * {@link ByteBufferAllocator} interface. Unlike {@link ExpandableBuffer},
+ * this class never compacts its content when interleaving writes and reads.
+ * Data that wraps around the end of the backing {@link ByteBuffer} is
+ * transferred from and to channels with scattering reads and gathering
+ * writes where the channel supports them. Content is only copied when the
+ * buffer expands.
+ * <p>
+ * If the allocator is a {@link RecyclingByteBufferAllocator}, buffers
+ * outgrown on expansion are returned to the allocator.
+ */
+public class RingBuffer {
+
+    private final ByteBufferAllocator allocator;
+
+    private ByteBuffer buffer;
+    private ByteBuffer[] segments;
+    private int head;
+    private int count;
+
+    /**
+     * Allocates buffer of the given size using the given allocator.
+     *
+     * @param buffersize the buffer size.
+     * @param allocator allocator to be used to allocate {@link ByteBuffer}s.
+     */
+    public RingBuffer(int buffersize, final ByteBufferAllocator allocator) {
+        super();
+        if (allocator == null) {
+            throw new IllegalArgumentException("ByteBuffer allocator may not be null");
+        }
+        if (buffersize <= 0) {
+            throw new IllegalArgumentException("Buffer size may not be negative or zero");
+        }
+        this.allocator = allocator;
+        setBuffer(allocator.allocate(buffersize));
+        this.head = 0;
+        this.count = 0;
+    }
+
+    private void setBuffer(final ByteBuffer buffer) {
+        buffer.clear();
+        this.buffer = buffer;
+        this.segments = new ByteBuffer[] { buffer.duplicate(), buffer.duplicate() };
+    }
+
+    private static void setSegment(final ByteBuffer segment, int from, int to) {
+        segment.clear();
+        segment.position(from);
+        segment.limit(to);
+    }
+
+    /**
+     * Sets up the segments holding the first <code>len</code> bytes of data.
+     *
+     * @return the number of segments.
+     */
+    private int dataSegments(int len) {
+        int capacity = this.buffer.capacity();
+        int end = this.head + len;
+        if (end <= capacity) {
+            setSegment(this.segments[0], this.head, end);
+            return 1;
+        }
+        setSegment(this.segments[0], this.head, capacity);
+        setSegment(this.segments[1], 0, end - capacity);
+        return 2;
+    }
+
+    /**
+     * Sets up the segments of free space following the data.
+     *
+     * @return the number of segments.
+     */
+    private int freeSegments() {
+        int capacity = this.buffer.capacity();
+        int tail = this.head + this.count;
+        if (tail >= capacity) {
+            setSegment(this.segments[0], tail - capacity, this.head);
+            return 1;
+        }
+        setSegment(this.segments[0], tail, capacity);
+        if (this.head == 0) {
+            return 1;
+        }
+        setSegment(this.segments[1], 0, this.head);
+        return 2;
+    }
+
+    private void consumed(int n) {
+        this.count -= n;
+        if (this.count == 0) {
+            // Maximize the contiguous free space
+            this.head = 0;
+        } else {
+            this.head = (this.head + n) % this.buffer.capacity();
+        }
+    }
+
+    private void produced(int n) {
+        this.count += n;
+    }
+
+    private void expandCapacity(int capacity) {
+        ByteBuffer oldbuffer = this.buffer;
+        ByteBuffer newbuffer = this.allocator.allocate(capacity);
+        newbuffer.clear();
+        int n = dataSegments(this.count);
+        for (int i = 0; i < n; i++) {
+            newbuffer.put(this.segments[i]);
+        }
+        setBuffer(newbuffer);
+        this.head = 0;
+        if (this.allocator instanceof RecyclingByteBufferAllocator) {
+            ((RecyclingByteBufferAllocator) this.allocator).release(oldbuffer);
+        }
+    }
+
+    /**
+     * Expands buffer's capacity.
+     */
+    protected void expand() {
+        int newcapacity = (this.buffer.capacity() + 1) << 1;
+        if (newcapacity < 0) {
+            newcapacity = Integer.MAX_VALUE;
+        }
+        expandCapacity(newcapacity);
+    }
+
+    /**
+     * Ensures the buffer can accommodate the required capacity.
+     *
+     * @param requiredCapacity
+     */
+    protected void ensureCapacity(int requiredCapacity) {
+        int capacity = this.buffer.capacity();
+        if (requiredCapacity > capacity) {
+            int newcapacity = (capacity + 1) << 1;
+            if (newcapacity < 0) {
+                newcapacity = Integer.MAX_VALUE;
+            }
+            expandCapacity(Math.max(requiredCapacity, newcapacity));
+        }
+    }
+
+    /**
+     * Reads data from the channel into the free space of this buffer
+     * without expanding it.
+     *
+     * @param src the source channel.
+     * @return the number of bytes read, possibly zero, or <code>-1</code>
+     *   if the channel has reached end-of-stream.
+     * @throws IOException in case of an I/O error.
+     */
+    protected int readFrom(final ReadableByteChannel src) throws IOException {
+        if (this.count == this.buffer.capacity()) {
+            return 0;
+        }
+        int n = freeSegments();
+        long bytesRead;
+        if (n == 1) {
+            bytesRead = src.read(this.segments[0]);
+        } else if (src instanceof ScatteringByteChannel) {
+            bytesRead = ((ScatteringByteChannel) src).read(this.segments, 0, n);
+        } else {
+            bytesRead = src.read(this.segments[0]);
+            if (bytesRead > 0 && !this.segments[0].hasRemaining()) {
+                int more = src.read(this.segments[1]);
+                if (more > 0) {
+                    bytesRead += more;
+                }
+            }
+        }
+        if (bytesRead > 0) {
+            produced((int) bytesRead);
+        }
+        return (int) bytesRead;
+    }
+
+    /**
+     * Writes up to <code>maxLen</code> bytes of data from this buffer
+     * to the channel.
+     *
+     * @param dst the destination channel.
+     * @param maxLen the maximum number of bytes to be written.
+     * @return the number of bytes written, possibly zero.
+     * @throws IOException in case of an I/O error.
+     */
+    protected int writeTo(final WritableByteChannel dst, int maxLen) throws IOException {
+        int len = Math.min(this.count, maxLen);
+        if (len <= 0) {
+            return 0;
+        }
+        int n = dataSegments(len);
+        long bytesWritten;
+        if (n == 1) {
+            bytesWritten = dst.write(this.segments[0]);
+        } else if (dst instanceof GatheringByteChannel) {
+            bytesWritten = ((GatheringByteChannel) dst).write(this.segments, 0, n);
+        } else {
+            bytesWritten = dst.write(this.segments[0]);
+            if (!this.segments[0].hasRemaining()) {
+                bytesWritten += dst.write(this.segments[1]);
+            }
+        }
+        if (bytesWritten > 0) {
+            consumed((int) bytesWritten);
+        }
+        return (int) bytesWritten;
+    }
+
+    /**
+     * Removes one byte from this buffer.
+     *
+     * @return the byte as an unsigned value.
+     * @throws BufferUnderflowException if the buffer is empty.
+     */
+    protected int get() {
+        if (this.count == 0) {
+            throw new BufferUnderflowException();
+        }
+        int b = this.buffer.get(this.head) & 0xff;
+        consumed(1);
+        return b;
+    }
+
+    /**
+     * Transfers up to <code>maxLen</code> bytes from this buffer to the
+     * destination buffer.
+     *
+     * @param dst the destination buffer.
+     * @param maxLen the maximum number of bytes to be transferred.
+     * @return the number of bytes transferred.
+     */
+    protected int get(final ByteBuffer dst, int maxLen) {
+        int len = Math.min(Math.min(this.count, maxLen), dst.remaining());
+        if (len <= 0) {
+            return 0;
+        }
+        int n = dataSegments(len);
+        for (int i = 0; i < n; i++) {
+            dst.put(this.segments[i]);
+        }
+        consumed(len);
+        return len;
+    }
+
+    /**
+     * Copies the content of the source buffer into this buffer expanding
+     * it if necessary.
+     *
+     * @param src the source buffer.
+     */
+    protected void put(final ByteBuffer src) {
+        int len = src.remaining();
+        if (len == 0) {
+            return;
+        }
+        ensureCapacity(this.count + len);
+        int n = freeSegments();
+        for (int i = 0; i < n && src.hasRemaining(); i++) {
+            ByteBuffer segment = this.segments[i];
+            if (segment.remaining() < src.remaining()) {
+                int limit = src.limit();
+                src.limit(src.position() + segment.remaining());
+                segment.put(src);
+                src.limit(limit);
+            } else {
+                segment.put(src);
+            }
+        }
+        produced(len);
+    }
+
+    /**
+     * Copies the given bytes into this buffer expanding it if necessary.
+     *
+     * @param b the bytes.
+     * @param off the offset of the first byte.
+     * @param len the number of bytes.
+     */
+    protected void put(final byte[] b, int off, int len) {
+        if (len == 0) {
+            return;
+        }
+        ensureCapacity(this.count + len);
+        int n = freeSegments();
+        int remaining = len;
+        for (int i = 0; i < n && remaining > 0; i++) {
+            ByteBuffer segment = this.segments[i];
+            int chunk = Math.min(segment.remaining(), remaining);
+            segment.put(b, off, chunk);
+            off += chunk;
+            remaining -= chunk;
+        }
+        produced(len);
+    }
+
+    /**
+     * Returns the position of the first occurrence of the given byte
+     * relative to the start of data, or <code>-1</code> if not found.
+     *
+     * @param b the byte to look for.
+     * @return the position relative to the start of data.
+     */
+    protected int indexOf(byte b) {
+        int capacity = this.buffer.capacity();
+        int idx = this.head;
+        for (int i = 0; i < this.count; i++) {
+            if (this.buffer.get(idx) == b) {
+                return i;
+            }
+            idx++;
+            if (idx == capacity) {
+                idx = 0;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a view of the first <code>len</code> bytes of data if they
+     * are stored contiguously, or <code>null</code> if they wrap around the
+     * end of the backing buffer. The view is only valid until this buffer
+     * is next modified.
+     *
+     * @param len the number of bytes.
+     * @return the view or <code>null</code>.
+     */
+    protected ByteBuffer contiguous(int len) {
+        if (len > this.count) {
+            throw new IllegalArgumentException("Length may not exceed the buffer length");
+        }
+        if (dataSegments(len) == 1) {
+            return this.segments[0];
+        }
+        return null;
+    }
+
+    /**
+     * Discards the given number of bytes from the start of data.
+     *
+     * @param len the number of bytes to discard.
+     */
+    protected void skip(int len) {
+        if (len > this.count) {
+            throw new IllegalArgumentException("Length may not exceed the buffer length");
+        }
+        consumed(len);
+    }
+
+    /**
+     * Returns the total capacity of this buffer.
+     *
+     * @return total capacity.
+     */
+    public int capacity() {
+        return this.buffer.capacity();
+    }
+
+    /**
+     * Determines if the buffer contains data.
+     *
+     * @return <code>true</code> if there is data in the buffer,
+     *   <code>false</code> otherwise.
+     */
+    public boolean hasData() {
+        return this.count > 0;
+    }
+
+    /**
+     * Returns the length of this buffer.
+     *
+     * @return buffer length.
+     */
+    public int length() {
+        return this.count;
+    }
+
+    /**
+     * Returns available capacity of this buffer.
+     *
+     * @return buffer length.
+     */
+    public int available() {
+        return this.buffer.capacity() - this.count;
+    }
+
+    /**
+     * Clears buffer.
+     */
+    public void clear() {
+        this.head = 0;
+        this.count = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("[head=");
+        sb.append(this.head);
+        sb.append(" len=");
+        sb.append(this.count);
+        sb.append(" cap=");
+        sb.append(this.buffer.capacity());
+        sb.append("]");
+        return sb.toString();
+    }
+
+}
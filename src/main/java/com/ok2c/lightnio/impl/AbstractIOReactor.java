@@ -19,15 +19,22 @@ import java.io.InterruptedIOException;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.ok2c.lightnio.IOReactor;
 import com.ok2c.lightnio.IOReactorException;
@@ -46,46 +53,116 @@ public abstract class AbstractIOReactor implements IOReactor {
     private final Object statusMutex;
     private final long selectTimeout;
     private final boolean interestOpsQueueing;
+    private final boolean byteCounting;
+    private final ReactorClock clock;
     private final Selector selector;
+    private final SelectorWakeup selectorWakeup;
+    private final SelectedKeySet selectedKeySet;
     private final Set<IOSession> sessions;
-    private final Queue<InterestOpEntry> interestOpsQueue;
+    private final AtomicReference<IOSessionImpl> interestOpsQueue;
+    private final InterestOpsCallback interestOpsCallback;
+    private final SessionClosedCallback sessionClosedCallback;
+    private final SocketTimeoutCallback socketTimeoutCallback;
     private final Queue<IOSession> closedSessions;
+    private final Queue<IOSessionImpl> timeoutUpdates;
     private final Queue<ChannelEntry> newChannels;
+    private final TaskQueue taskQueue;
+    private final AtomicInteger pendingChannels;
+
+    private volatile long loopLatency;
 
     /**
      * Creates new AbstractIOReactor instance.
      *
-     * @param selectTimeout the select timeout.
+     * @param config the configuration object.
      * @throws IOReactorException in case if a non-recoverable I/O error.
      */
-    public AbstractIOReactor(long selectTimeout, boolean interestOpsQueueing) throws IOReactorException {
+    public AbstractIOReactor(final IOReactorConfig config) throws IOReactorException {
         super();
-        if (selectTimeout <= 0) {
-            throw new IllegalArgumentException("Select timeout may not be negative or zero");
+        if (config == null) {
+            throw new IllegalArgumentException("Configuration may not be null");
         }
-        this.selectTimeout = selectTimeout;
-        this.interestOpsQueueing = interestOpsQueueing;
+        this.selectTimeout = config.getSelectInterval();
+        this.interestOpsQueueing = config.isInterestOpsQueueing();
+        this.byteCounting = config.getLoopByteBudget() > 0 || config.getSessionByteBudget() > 0;
+        this.clock = new ReactorClock(config.isMonotonicClock());
         this.sessions = Collections.synchronizedSet(new HashSet<IOSession>());
-        this.interestOpsQueue = new ConcurrentLinkedQueue<InterestOpEntry>();
+        this.interestOpsQueue = new AtomicReference<IOSessionImpl>();
+        if (this.interestOpsQueueing) {
+            this.interestOpsCallback = new InterestOpsCallback() {
+
+                public void addInterestOps(final IOSessionImpl session) {
+                    queueInterestOps(session);
+                }
+
+            };
+        } else {
+            this.interestOpsCallback = null;
+        }
+        this.sessionClosedCallback = new SessionClosedCallback() {
+
+            public void sessionClosed(final IOSession session) {
+                queueClosedSession(session);
+            }
+
+        };
+        this.socketTimeoutCallback = new SocketTimeoutCallback() {
+
+            public void socketTimeoutChanged(final IOSessionImpl session) {
+                timeoutUpdates.add(session);
+                selectorWakeup.wakeup();
+            }
+
+        };
         this.closedSessions = new ConcurrentLinkedQueue<IOSession>();
+        this.timeoutUpdates = new ConcurrentLinkedQueue<IOSessionImpl>();
         this.newChannels = new ConcurrentLinkedQueue<ChannelEntry>();
+        this.taskQueue = new TaskQueue(config.getTaskQueueCapacity(), config.getTaskBudget());
+        this.pendingChannels = new AtomicInteger(0);
         try {
             this.selector = Selector.open();
         } catch (IOException ex) {
             throw new IOReactorException("Failure opening selector", ex);
         }
+        this.selectorWakeup = new SelectorWakeup(this.selector);
+        if (config.isOptimizedSelectedKeys()) {
+            this.selectedKeySet = SelectedKeySet.install(this.selector);
+        } else {
+            this.selectedKeySet = null;
+        }
         this.statusMutex = new Object();
         this.status = IOReactorStatus.INACTIVE;
     }
 
+    /**
+     * Creates new AbstractIOReactor instance.
+     *
+     * @param selectTimeout the select timeout.
+     * @throws IOReactorException in case if a non-recoverable I/O error.
+     */
+    public AbstractIOReactor(long selectTimeout, boolean interestOpsQueueing) throws IOReactorException {
+        this(createConfig(selectTimeout, interestOpsQueueing));
+    }
+
+    static IOReactorConfig createConfig(long selectTimeout, boolean interestOpsQueueing) {
+        if (selectTimeout <= 0) {
+            throw new IllegalArgumentException("Select timeout may not be negative or zero");
+        }
+        IOReactorConfig config = new IOReactorConfig();
+        config.setSelectInterval(selectTimeout);
+        config.setInterestOpsQueueing(interestOpsQueueing);
+        return config;
+    }
+
     /**
      * Triggered when the key signals {@link SelectionKey#OP_ACCEPT} readiness.
      * <p>
      * Super-classes can implement this method to react to the event.
      *
      * @param key the selection key.
+     * @throws IOReactorException in case if a non-recoverable I/O error.
      */
-    protected abstract void acceptable(SelectionKey key);
+    protected abstract void acceptable(SelectionKey key) throws IOReactorException;
 
     /**
      * Triggered when the key signals {@link SelectionKey#OP_CONNECT} readiness.
@@ -115,27 +192,14 @@ public abstract class AbstractIOReactor implements IOReactor {
     protected abstract void writable(SelectionKey key);
 
     /**
-     * Triggered to verify whether the I/O session associated with the
-     * given selection key has not timed out.
+     * Triggered after each I/O select loop once the selected I/O events
+     * have been processed.
      * <p>
-     * Super-classes can implement this method to react to the event.
-     *
-     * @param key the selection key.
-     * @param now current time as long value.
+     * Super-classes can implement this method to expire session timeouts
+     * and include additional processing that needs to be executed after
+     * each I/O select loop.
      */
-    protected abstract void timeoutCheck(SelectionKey key, long now);
-
-    /**
-     * Triggered to validate keys currently registered with the selector. This
-     * method is called after each I/O select loop.
-     * <p>
-     * Super-classes can implement this method to run validity checks on
-     * active sessions and include additional processing that needs to be
-     * executed after each I/O select loop.
-     *
-     * @param keys all selection keys registered with the selector.
-     */
-    protected abstract void validate(Set<SelectionKey> keys);
+    protected abstract void validate();
 
     /**
      * Triggered when new session has been created.
@@ -156,6 +220,19 @@ public abstract class AbstractIOReactor implements IOReactor {
      */
     protected abstract void sessionClosed(IOSession session);
 
+    /**
+     * Triggered when the socket timeout of a session managed by this I/O
+     * reactor has been changed. The change may have been made by any thread.
+     * <p>
+     * This implementation does nothing. Super-classes can override this
+     * method to re-arm the timeout of the session.
+     *
+     * @param key the selection key.
+     * @param session the I/O session.
+     */
+    protected void socketTimeoutChanged(final SelectionKey key, final IOSession session) {
+    }
+
     /**
      * Obtains {@link IOSession} instance associated with the given selection
      * key.
@@ -165,10 +242,89 @@ public abstract class AbstractIOReactor implements IOReactor {
      */
     protected abstract IOSession getSession(SelectionKey key);
 
+    /**
+     * Returns the time in milliseconds at which the I/O reactor needs to wake
+     * up in order to carry out time based processing such as expiry of
+     * session timeouts. The I/O select loop blocks until the deadline expires
+     * unless woken up earlier by an I/O event. {@link Long#MAX_VALUE}
+     * signifies there is nothing pending and the select loop can block
+     * indefinitely.
+     * <p>
+     * This implementation wakes up the I/O reactor once per select interval.
+     * Super-classes can override this method to compute the deadline
+     * from the timeouts they keep track of.
+     *
+     * @param now current time.
+     * @return the deadline or {@link Long#MAX_VALUE} if none.
+     */
+    protected long getNextDeadline(long now) {
+        return now + this.selectTimeout;
+    }
+
+    /**
+     * Returns the clock of this I/O reactor. The clock is updated by the I/O
+     * reactor thread before and after each select operation.
+     *
+     * @return the I/O reactor clock.
+     */
+    protected ReactorClock getClock() {
+        return this.clock;
+    }
+
+    /**
+     * Returns the select interval in milliseconds.
+     *
+     * @return select interval.
+     */
+    protected long getSelectTimeout() {
+        return this.selectTimeout;
+    }
+
     public IOReactorStatus getStatus() {
         return this.status;
     }
 
+    /**
+     * Returns the total number of times the selector of this I/O reactor
+     * has been woken up by other threads.
+     *
+     * @return number of selector wakeups.
+     */
+    public long getWakeupCount() {
+        return this.selectorWakeup.getWakeupCount();
+    }
+
+    /**
+     * Returns the number of active sessions managed by this I/O reactor.
+     *
+     * @return number of sessions.
+     */
+    public int getSessionCount() {
+        return this.sessions.size();
+    }
+
+    /**
+     * Returns the number of channels added to this I/O reactor that have
+     * not been registered with the selector yet.
+     *
+     * @return number of pending channels.
+     */
+    public int getPendingChannelCount() {
+        return this.pendingChannels.get();
+    }
+
+    /**
+     * Returns the time in nanoseconds this I/O reactor has recently been
+     * taking to process the outcome of a select operation, averaged over
+     * the last few I/O select loops. The time spent blocked in the select
+     * operation is not included.
+     *
+     * @return average loop processing time in nanoseconds.
+     */
+    public long getLoopLatency() {
+        return this.loopLatency;
+    }
+
     /**
      * Returns <code>true</code> if interest Ops queueing is enabled, <code>false</code> otherwise.
      */
@@ -186,8 +342,72 @@ public abstract class AbstractIOReactor implements IOReactor {
         if (channelEntry == null) {
             throw new IllegalArgumentException("Channel entry may not be null");
         }
+        this.pendingChannels.incrementAndGet();
         this.newChannels.add(channelEntry);
-        this.selector.wakeup();
+        this.selectorWakeup.wakeup();
+    }
+
+    /**
+     * Submits the task to be run by the I/O reactor thread. Tasks are run
+     * in batches after I/O events have been processed. The number of tasks
+     * run per I/O select loop is limited by
+     * {@link IOReactorConfig#getTaskBudget()}. Tasks still pending when
+     * the I/O reactor is shut down are discarded.
+     *
+     * @param task the task.
+     * @throws RejectedExecutionException if the task queue is full or
+     *   the I/O reactor has been shut down.
+     */
+    public void execute(final Runnable task) {
+        if (this.status == IOReactorStatus.SHUT_DOWN) {
+            throw new RejectedExecutionException("I/O reactor has been shut down");
+        }
+        if (!this.taskQueue.add(task)) {
+            throw new RejectedExecutionException("Task queue is full");
+        }
+        if (this.status == IOReactorStatus.SHUT_DOWN) {
+            // Shut down in the meantime. Do not leave the task behind
+            this.taskQueue.cancelPending();
+            return;
+        }
+        this.selectorWakeup.wakeup();
+    }
+
+    /**
+     * Submits the task to be run by the I/O reactor thread once the given
+     * delay elapses.
+     *
+     * @param task the task.
+     * @param delayMs delay in milliseconds.
+     * @throws RejectedExecutionException if the task queue is full or
+     *   the I/O reactor has been shut down.
+     */
+    public void schedule(final Runnable task, long delayMs) {
+        if (this.status == IOReactorStatus.SHUT_DOWN) {
+            throw new RejectedExecutionException("I/O reactor has been shut down");
+        }
+        if (!this.taskQueue.schedule(task, delayMs)) {
+            throw new RejectedExecutionException("Task queue is full");
+        }
+        if (this.status == IOReactorStatus.SHUT_DOWN) {
+            // Shut down in the meantime. Do not leave the task behind
+            this.taskQueue.cancelPending();
+            return;
+        }
+        this.selectorWakeup.wakeup();
+    }
+
+    /**
+     * Handles the given {@link RuntimeException} thrown by a task.
+     * <p>
+     * This implementation re-throws the exception, which terminates
+     * the I/O reactor. Super-classes can override this method to deal with
+     * the exception.
+     *
+     * @param ex the runtime exception.
+     */
+    protected void handleRuntimeException(final RuntimeException ex) {
+        throw ex;
     }
 
     /**
@@ -196,36 +416,42 @@ public abstract class AbstractIOReactor implements IOReactor {
      * <p>
      * This method will enter the infinite I/O select loop on
      * the {@link Selector} instance associated with this I/O reactor.
+     * The select loop blocks until an I/O event occurs or the deadline
+     * returned by {@link #getNextDeadline(long)} expires.
      * <p>
      * The method will remain blocked unto the I/O reactor is shut down or the
      * execution thread is interrupted.
      *
+     * @see #getNextDeadline(long)
      * @see #acceptable(SelectionKey)
      * @see #connectable(SelectionKey)
      * @see #readable(SelectionKey)
      * @see #writable(SelectionKey)
-     * @see #timeoutCheck(SelectionKey, long)
-     * @see #validate(Set)
+     * @see #validate()
      * @see #sessionCreated(SelectionKey, IOSession)
      * @see #sessionClosed(IOSession)
+     * @see #socketTimeoutChanged(SelectionKey, IOSession)
      *
      * @throws InterruptedIOException if the dispatch thread is interrupted.
      * @throws IOReactorException in case if a non-recoverable I/O error.
      */
     protected void execute() throws InterruptedIOException, IOReactorException {
         this.status = IOReactorStatus.ACTIVE;
+        this.selectorWakeup.bind(Thread.currentThread());
 
         try {
             for (;;) {
 
                 int readyCount;
                 try {
-                    readyCount = this.selector.select(this.selectTimeout);
+                    readyCount = select();
                 } catch (InterruptedIOException ex) {
                     throw ex;
                 } catch (IOException ex) {
                     throw new IOReactorException("Unexpected selector failure", ex);
                 }
+                this.clock.update();
+                long started = System.nanoTime();
 
                 if (this.status == IOReactorStatus.SHUT_DOWN) {
                     // Hard shut down. Exit select loop immediately
@@ -241,11 +467,15 @@ public abstract class AbstractIOReactor implements IOReactor {
 
                 // Process selected I/O events
                 if (readyCount > 0) {
-                    processEvents(this.selector.selectedKeys());
+                    if (this.selectedKeySet != null) {
+                        processEvents(this.selectedKeySet);
+                    } else {
+                        processEvents(this.selector.selectedKeys());
+                    }
                 }
 
-                // Validate active channels
-                validate(this.selector.keys());
+                // Expire timeouts and run post-loop processing
+                validate();
 
                 // Process closed sessions
                 processClosedSessions();
@@ -255,6 +485,12 @@ public abstract class AbstractIOReactor implements IOReactor {
                     processNewChannels();
                 }
 
+                // Run pending tasks
+                processTasks();
+
+                // Re-arm changed socket timeouts
+                processTimeoutUpdates();
+
                 // Exit select loop if graceful shutdown has been completed
                 if (this.status.compareTo(IOReactorStatus.ACTIVE) > 0
                         && this.sessions.isEmpty()) {
@@ -266,9 +502,13 @@ public abstract class AbstractIOReactor implements IOReactor {
                     processPendingInterestOps();
                 }
 
+                // Exponentially weighted moving average
+                long latency = this.loopLatency;
+                this.loopLatency = latency + ((System.nanoTime() - started - latency) >> 3);
             }
         } catch (ClosedSelectorException ex) {
         } finally {
+            this.selectorWakeup.bind(null);
             hardShutdown();
             synchronized (this.statusMutex) {
                 this.statusMutex.notifyAll();
@@ -276,7 +516,50 @@ public abstract class AbstractIOReactor implements IOReactor {
         }
     }
 
-    private void processEvents(final Set<SelectionKey> selectedKeys) {
+    private int select() throws IOException {
+        long now = this.clock.update();
+        long deadline = Math.min(getNextDeadline(now), this.taskQueue.nextDeadline());
+        if (this.status != IOReactorStatus.ACTIVE) {
+            // Keep an eye on sessions being closed out
+            deadline = Math.min(deadline, now + this.selectTimeout);
+        }
+        this.selectorWakeup.beginSelect();
+        try {
+            if (hasPendingWork()) {
+                // Wakeups requested before the select window has been
+                // opened were skipped. Do not block
+                return this.selector.selectNow();
+            }
+            if (deadline == Long.MAX_VALUE) {
+                return this.selector.select();
+            }
+            long timeout = deadline - now;
+            if (timeout > 0) {
+                return this.selector.select(timeout);
+            } else {
+                return this.selector.selectNow();
+            }
+        } finally {
+            this.selectorWakeup.endSelect();
+        }
+    }
+
+    private boolean hasPendingWork() {
+        return !this.newChannels.isEmpty()
+            || !this.closedSessions.isEmpty()
+            || !this.timeoutUpdates.isEmpty()
+            || this.interestOpsQueue.get() != null
+            || this.taskQueue.hasPendingTasks();
+    }
+
+    private void processEvents(final SelectedKeySet selectedKeys) throws IOReactorException {
+        for (int i = 0; i < selectedKeys.size(); i++) {
+            processEvent(selectedKeys.get(i));
+        }
+        selectedKeys.clear();
+    }
+
+    private void processEvents(final Set<SelectionKey> selectedKeys) throws IOReactorException {
         for (Iterator<SelectionKey> it = selectedKeys.iterator(); it.hasNext(); ) {
 
             SelectionKey key = it.next();
@@ -290,8 +573,9 @@ public abstract class AbstractIOReactor implements IOReactor {
      * Processes new event on the given selection key.
      *
      * @param key the selection key that triggered an event.
+     * @throws IOReactorException in case if a non-recoverable I/O error.
      */
-    protected void processEvent(final SelectionKey key) {
+    protected void processEvent(final SelectionKey key) throws IOReactorException {
         try {
             if (key.isAcceptable()) {
                 acceptable(key);
@@ -312,6 +596,186 @@ public abstract class AbstractIOReactor implements IOReactor {
         }
     }
 
+    /**
+     * Triggered when the session is about to be migrated to another I/O
+     * reactor. The selection key is cancelled once this method returns.
+     * <p>
+     * This implementation returns the key attachment. Super-classes can
+     * override this method to release the per-session state they keep track
+     * of and to return the state to be carried over to the other I/O reactor.
+     *
+     * @param key the selection key.
+     * @param session the I/O session.
+     * @return the state to be passed to
+     *   {@link #sessionAttached(SelectionKey, IOSession, Object)}.
+     */
+    protected Object sessionDetached(final SelectionKey key, final IOSession session) {
+        return key.attachment();
+    }
+
+    /**
+     * Triggered when the session migrated from another I/O reactor has been
+     * registered with the selector of this I/O reactor.
+     * <p>
+     * This implementation attaches the state to the selection key.
+     * Super-classes can override this method to take over the per-session
+     * state.
+     *
+     * @param key the selection key.
+     * @param session the I/O session.
+     * @param state the state returned by
+     *   {@link #sessionDetached(SelectionKey, IOSession)}.
+     */
+    protected void sessionAttached(final SelectionKey key, final IOSession session, final Object state) {
+        key.attach(state);
+    }
+
+    /**
+     * Registers the given channel with the selector of this I/O reactor.
+     * The registration is carried out asynchronously by the I/O reactor
+     * thread. Channels closed in the meantime are not registered.
+     *
+     * @param channel the channel.
+     * @param ops interest ops.
+     * @param attachment the key attachment.
+     * @throws RejectedExecutionException if this I/O reactor does not accept
+     *   new tasks.
+     */
+    void registerChannel(final SelectableChannel channel, final int ops, final Object attachment) {
+        execute(new Runnable() {
+
+            public void run() {
+                try {
+                    channel.register(selector, ops, attachment);
+                } catch (ClosedChannelException ex) {
+                    // Closed in the meantime
+                }
+            }
+
+        });
+    }
+
+    /**
+     * Determines whether the given session is managed by this I/O reactor.
+     */
+    boolean hasSession(final IOSession session) {
+        return this.sessions.contains(session);
+    }
+
+    /**
+     * Migrates the given session to the target I/O reactor. The session is
+     * detached by the I/O reactor thread of this I/O reactor and then
+     * attached by the I/O reactor thread of the target I/O reactor, so that
+     * the I/O events of the session are never processed by both threads at
+     * the same time. If the target I/O reactor shuts down before the session
+     * has been attached, the session is closed. This method can be called by
+     * any thread.
+     *
+     * @param session the I/O session.
+     * @param target the target I/O reactor.
+     * @throws RejectedExecutionException if this I/O reactor does not accept
+     *   new tasks.
+     */
+    void migrateSession(final IOSessionImpl session, final AbstractIOReactor target) {
+        execute(new Runnable() {
+
+            public void run() {
+                detachSession(session, target);
+            }
+
+        });
+    }
+
+    /**
+     * Migrates up to the given number of sessions to the target I/O reactor.
+     * This method can be called by any thread.
+     *
+     * @param count the maximum number of sessions to migrate.
+     * @param target the target I/O reactor.
+     * @throws RejectedExecutionException if this I/O reactor does not accept
+     *   new tasks.
+     */
+    void migrateSessions(final int count, final AbstractIOReactor target) {
+        execute(new Runnable() {
+
+            public void run() {
+                List<IOSessionImpl> candidates = new ArrayList<IOSessionImpl>(count);
+                synchronized (sessions) {
+                    for (Iterator<IOSession> it = sessions.iterator();
+                            it.hasNext() && candidates.size() < count; ) {
+                        IOSession session = it.next();
+                        if (session instanceof IOSessionImpl && !session.isClosed()) {
+                            candidates.add((IOSessionImpl) session);
+                        }
+                    }
+                }
+                for (int i = 0; i < candidates.size(); i++) {
+                    detachSession(candidates.get(i), target);
+                }
+            }
+
+        });
+    }
+
+    private void detachSession(final IOSessionImpl session, final AbstractIOReactor target) {
+        if (this.status != IOReactorStatus.ACTIVE || session.isClosed()
+                || !this.sessions.remove(session)) {
+            // Closed or not managed by this I/O reactor
+            return;
+        }
+        SelectionKey key = session.getSelectionKey();
+        final Object state = sessionDetached(key, session);
+        key.attach(null);
+        key.cancel();
+        try {
+            target.execute(new CancellableTask() {
+
+                public void run() {
+                    target.attachSession(session, state);
+                }
+
+                public void cancel() {
+                    // The target I/O reactor has shut down before
+                    // the session could be attached
+                    session.close();
+                    target.sessionClosed(session);
+                }
+
+            });
+        } catch (RejectedExecutionException ex) {
+            session.close();
+            sessionClosed(session);
+        }
+    }
+
+    private void attachSession(final IOSessionImpl session, final Object state) {
+        SelectableChannel channel = session.getSelectionKey().channel();
+        SelectionKey key;
+        try {
+            key = channel.register(this.selector, 0);
+        } catch (ClosedChannelException ex) {
+            // Closed while migrating. Closed sessions are ignored
+            // by the previous I/O reactor
+            session.close();
+            sessionClosed(session);
+            return;
+        }
+        this.sessions.add(session);
+        try {
+            sessionAttached(key, session, state);
+        } catch (CancelledKeyException ex) {
+            queueClosedSession(session);
+            key.attach(null);
+        }
+        session.rebind(key, this.interestOpsCallback, this.sessionClosedCallback,
+                this.socketTimeoutCallback, this.selectorWakeup);
+        if (session.isClosed()) {
+            // May have been closed before the session was re-bound
+            key.cancel();
+            queueClosedSession(session);
+        }
+    }
+
     /**
      * Queues the given I/O session to be processed asynchronously as closed.
      *
@@ -327,6 +791,7 @@ public abstract class AbstractIOReactor implements IOReactor {
     private void processNewChannels() throws IOReactorException {
         ChannelEntry entry;
         while ((entry = this.newChannels.poll()) != null) {
+            this.pendingChannels.decrementAndGet();
 
             SocketChannel channel;
             SelectionKey key;
@@ -346,49 +811,102 @@ public abstract class AbstractIOReactor implements IOReactor {
                         "with the selector", ex);
             }
 
-            SessionClosedCallback sessionClosedCallback = new SessionClosedCallback() {
+            openSession(key, entry);
+        }
+    }
 
-                public void sessionClosed(IOSession session) {
-                    queueClosedSession(session);
-                }
+    /**
+     * Registers the given channel with the selector of this I/O reactor.
+     * This method may be called by the I/O reactor thread only.
+     *
+     * @param channel the channel.
+     * @param ops interest ops.
+     * @param attachment the key attachment.
+     * @return the selection key.
+     * @throws ClosedChannelException if the channel has been closed.
+     */
+    SelectionKey register(
+            final SelectableChannel channel,
+            int ops,
+            final Object attachment) throws ClosedChannelException {
+        return channel.register(this.selector, ops, attachment);
+    }
 
-            };
+    /**
+     * Turns the channel of the given selection key into a new I/O session
+     * once the connection initiated by this I/O reactor has been established.
+     * The key must be registered with the selector of this I/O reactor.
+     *
+     * @param key the selection key of the connected channel.
+     * @param entry the channel entry.
+     */
+    void channelConnected(final SelectionKey key, final ChannelEntry entry) {
+        key.attach(null);
+        try {
+            key.interestOps(SelectionKey.OP_READ);
+        } catch (CancelledKeyException ex) {
+            SessionRequestImpl sessionRequest = entry.getSessionRequest();
+            if (sessionRequest != null) {
+                sessionRequest.cancel();
+            }
+            return;
+        }
+        openSession(key, entry);
+    }
 
-            InterestOpsCallback interestOpsCallback = null;
-            if (this.interestOpsQueueing) {
-                interestOpsCallback = new InterestOpsCallback() {
+    private void openSession(final SelectionKey key, final ChannelEntry entry) {
+        SocketChannel channel = entry.getChannel();
+        IOSession session = new IOSessionImpl(key, this.interestOpsCallback, this.sessionClosedCallback,
+                this.socketTimeoutCallback, this.selectorWakeup, this.byteCounting);
 
-                    public void addInterestOps(InterestOpEntry entry) {
-                        queueInterestOps(entry);
-                    }
+        int timeout = 0;
+        try {
+            timeout = channel.socket().getSoTimeout();
+        } catch (IOException ex) {
+            // Very unlikely to happen and is not fatal
+            // as the protocol layer is expected to overwrite
+            // this value anyways
+        }
 
-                };
-            }
+        session.setAttribute(IOSession.ATTACHMENT_KEY, entry.getAttachment());
+        session.setSocketTimeout(timeout);
+        this.sessions.add(session);
 
-            IOSession session = new IOSessionImpl(key, interestOpsCallback, sessionClosedCallback);
+        try {
+            SessionRequestImpl sessionRequest = entry.getSessionRequest();
+            if (sessionRequest != null) {
+                sessionRequest.completed(session);
+            }
+            sessionCreated(key, session);
+        } catch (CancelledKeyException ex) {
+            queueClosedSession(session);
+            key.attach(null);
+        }
+    }
 
-            int timeout = 0;
+    private void processTasks() {
+        long now = this.clock.now();
+        this.taskQueue.beginBatch();
+        Runnable task;
+        while ((task = this.taskQueue.poll(now)) != null) {
             try {
-                timeout = channel.socket().getSoTimeout();
-            } catch (IOException ex) {
-                // Very unlikely to happen and is not fatal
-                // as the protocol layer is expected to overwrite
-                // this value anyways
+                task.run();
+            } catch (RuntimeException ex) {
+                handleRuntimeException(ex);
             }
+        }
+    }
 
-            session.setAttribute(IOSession.ATTACHMENT_KEY, entry.getAttachment());
-            session.setSocketTimeout(timeout);
-            this.sessions.add(session);
-
-            try {
-                SessionRequestImpl sessionRequest = entry.getSessionRequest();
-                if (sessionRequest != null) {
-                    sessionRequest.completed(session);
+    private void processTimeoutUpdates() {
+        IOSessionImpl session;
+        while ((session = this.timeoutUpdates.poll()) != null) {
+            session.clearTimeoutQueued();
+            if (!session.isClosed() && this.sessions.contains(session)) {
+                try {
+                    socketTimeoutChanged(session.getSelectionKey(), session);
+                } catch (RuntimeException ex) {
+                    handleRuntimeException(ex);
                 }
-                sessionCreated(key, session);
-            } catch (CancelledKeyException ex) {
-                queueClosedSession(session);
-                key.attach(null);
             }
         }
     }
@@ -415,14 +933,14 @@ public abstract class AbstractIOReactor implements IOReactor {
         if (!this.interestOpsQueueing) {
             return;
         }
-        InterestOpEntry entry;
-        while ((entry = this.interestOpsQueue.poll()) != null) {
-            // obtain the operation's details
-            SelectionKey key = entry.getSelectionKey();
-            int eventMask = entry.getEventMask();
-            if (key.isValid()) {
-                key.interestOps(eventMask);
-            }
+        // Detach all queued sessions at once. Each session is queued
+        // only once and its most recent event mask is applied
+        IOSessionImpl session = this.interestOpsQueue.getAndSet(null);
+        while (session != null) {
+            IOSessionImpl next = session.nextQueued;
+            session.nextQueued = null;
+            session.applyInterestOps();
+            session = next;
         }
     }
 
@@ -446,6 +964,7 @@ public abstract class AbstractIOReactor implements IOReactor {
     protected void closeNewChannels() throws IOReactorException {
         ChannelEntry entry;
         while ((entry = this.newChannels.poll()) != null) {
+            this.pendingChannels.decrementAndGet();
             SessionRequestImpl sessionRequest = entry.getSessionRequest();
             if (sessionRequest != null) {
                 sessionRequest.cancel();
@@ -471,6 +990,13 @@ public abstract class AbstractIOReactor implements IOReactor {
                 IOSession session = getSession(key);
                 if (session != null) {
                     session.close();
+                } else if (key.channel() instanceof ServerSocketChannel) {
+                    // Accepting on behalf of a listener endpoint
+                    key.channel().close();
+                } else if (key.attachment() instanceof SessionRequestHandle) {
+                    // Connecting on behalf of a connecting I/O reactor
+                    ((SessionRequestHandle) key.attachment()).getSessionRequest().cancel();
+                    key.channel().close();
                 }
             }
             this.selector.close();
@@ -507,6 +1033,9 @@ public abstract class AbstractIOReactor implements IOReactor {
         closeNewChannels();
         closeActiveChannels();
         processClosedSessions();
+        // Cancel pending tasks so that they release the channels
+        // and sessions they hold
+        this.taskQueue.clear();
     }
 
     /**
@@ -550,23 +1079,28 @@ public abstract class AbstractIOReactor implements IOReactor {
     }
 
     /**
-     * Adds an {@link InterestOpEntry} to the
+     * Adds an {@link IOSessionImpl} with a pending event mask to the
      * {@link java.nio.channels.SelectionKey#interestOps(int) interestOps(int)}
-     * queue for this instance.
+     * queue for this instance. The queue is linked through the sessions
+     * themselves and does not allocate.
      * @return <code>true</code> if the operation could be performed successfully,
      *   <code>false</code> otherwise.
      */
-    protected boolean queueInterestOps(final InterestOpEntry entry) {
+    protected boolean queueInterestOps(final IOSessionImpl session) {
         // validity checks
         if (!this.interestOpsQueueing) {
             throw new IllegalStateException("Interest ops queueing not enabled");
         }
-        if (entry == null) {
+        if (session == null) {
             return false;
         }
 
-        // add this operation to the interestOps() queue
-        this.interestOpsQueue.add(entry);
+        // push this session onto the interestOps() queue
+        IOSessionImpl head;
+        do {
+            head = this.interestOpsQueue.get();
+            session.nextQueued = head;
+        } while (!this.interestOpsQueue.compareAndSet(head, session));
 
         return true;
     }
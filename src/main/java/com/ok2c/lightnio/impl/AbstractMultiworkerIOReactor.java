@@ -28,6 +28,7 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -36,6 +37,7 @@ import com.ok2c.lightnio.IOReactor;
 import com.ok2c.lightnio.IOReactorException;
 import com.ok2c.lightnio.IOReactorExceptionHandler;
 import com.ok2c.lightnio.IOReactorStatus;
+import com.ok2c.lightnio.IOSession;
 
 /**
  * Generic implementation of {@link IOReactor} that can run multiple
@@ -80,12 +82,17 @@ public abstract class AbstractMultiworkerIOReactor implements IOReactor {
     protected volatile IOReactorStatus status;
 
     protected final Selector selector;
+    protected final ReactorClock clock;
     protected final long selectTimeout;
     protected final boolean interestOpsQueueing;
     protected final long gracePeriod;
     protected final boolean tcpNoDelay;
     protected final int soLinger;
 
+    private final IOReactorConfig config;
+    private final SelectorWakeup selectorWakeup;
+    private final SelectedKeySet selectedKeySet;
+    private final TaskQueue taskQueue;
     private final int workerCount;
     private final ThreadFactory threadFactory;
     private final BaseIOReactor[] dispatchers;
@@ -96,7 +103,7 @@ public abstract class AbstractMultiworkerIOReactor implements IOReactor {
     protected IOReactorExceptionHandler exceptionHandler;
     protected List<ExceptionEvent> auditLog;
 
-    private int currentWorker = 0;
+    private volatile WorkerSelector workerSelector;
 
     /**
      * Creates an instance of AbstractMultiworkerIOReactor.
@@ -118,6 +125,15 @@ public abstract class AbstractMultiworkerIOReactor implements IOReactor {
         } catch (IOException ex) {
             throw new IOReactorException("Failure opening selector", ex);
         }
+        this.selectorWakeup = new SelectorWakeup(this.selector);
+        if (config.isOptimizedSelectedKeys()) {
+            this.selectedKeySet = SelectedKeySet.install(this.selector);
+        } else {
+            this.selectedKeySet = null;
+        }
+        this.taskQueue = new TaskQueue(config.getTaskQueueCapacity(), config.getTaskBudget());
+        this.config = config;
+        this.clock = new ReactorClock(config.isMonotonicClock());
         this.workerCount = config.getWorkerCount();
         this.selectTimeout = config.getSelectInterval();
         this.interestOpsQueueing = config.isInterestOpsQueueing();
@@ -134,6 +150,7 @@ public abstract class AbstractMultiworkerIOReactor implements IOReactor {
         this.dispatchers = new BaseIOReactor[workerCount];
         this.workers = new Worker[workerCount];
         this.threads = new Thread[workerCount];
+        this.workerSelector = new RoundRobinWorkerSelector();
         this.status = IOReactorStatus.INACTIVE;
     }
 
@@ -141,6 +158,23 @@ public abstract class AbstractMultiworkerIOReactor implements IOReactor {
         return this.status;
     }
 
+    /**
+     * Returns the total number of times the main selector and the selectors
+     * of the worker I/O reactors have been woken up by other threads.
+     *
+     * @return number of selector wakeups.
+     */
+    public long getWakeupCount() {
+        long count = this.selectorWakeup.getWakeupCount();
+        for (int i = 0; i < this.dispatchers.length; i++) {
+            BaseIOReactor dispatcher = this.dispatchers[i];
+            if (dispatcher != null) {
+                count += dispatcher.getWakeupCount();
+            }
+        }
+        return count;
+    }
+
     /**
      * Returns the audit log containing exceptions thrown by the I/O reactor
      * prior and in the course of the reactor shutdown.
@@ -194,6 +228,20 @@ public abstract class AbstractMultiworkerIOReactor implements IOReactor {
         this.exceptionHandler = exceptionHandler;
     }
 
+    /**
+     * Sets the strategy used to assign new channels to worker I/O reactors.
+     * By default new channels are assigned in turn using
+     * {@link RoundRobinWorkerSelector}.
+     *
+     * @param workerSelector the worker selector.
+     */
+    public void setWorkerSelector(final WorkerSelector workerSelector) {
+        if (workerSelector == null) {
+            throw new IllegalArgumentException("Worker selector may not be null");
+        }
+        this.workerSelector = workerSelector;
+    }
+
     /**
      * Triggered to process I/O events registered by the main {@link Selector}.
      * <p>
@@ -204,6 +252,197 @@ public abstract class AbstractMultiworkerIOReactor implements IOReactor {
      */
     protected abstract void processEvents(int count) throws IOReactorException;
 
+    /**
+     * Returns the time in milliseconds at which the main I/O reactor needs to
+     * wake up in order to carry out time based processing such as expiry of
+     * session request timeouts. {@link Long#MAX_VALUE} signifies there is
+     * nothing pending and the main select loop can block indefinitely.
+     * <p>
+     * This implementation wakes up the main I/O reactor once per select
+     * interval. Super-classes can override this method to compute
+     * the deadline from the timeouts they keep track of.
+     *
+     * @param now current time.
+     * @return the deadline or {@link Long#MAX_VALUE} if none.
+     */
+    protected long getNextDeadline(long now) {
+        return now + this.selectTimeout;
+    }
+
+    /**
+     * Returns the array-backed selected-key set installed into the main
+     * selector or <code>null</code> if the default key set is in use.
+     *
+     * @return the selected-key set or <code>null</code>.
+     */
+    protected SelectedKeySet getSelectedKeySet() {
+        return this.selectedKeySet;
+    }
+
+    /**
+     * Determines whether there are requests pending processing by the main
+     * I/O reactor. The main select loop does not block if this method returns
+     * <code>true</code>.
+     * <p>
+     * This implementation returns <code>false</code>. Super-classes that
+     * queue requests and signal the main I/O reactor by calling
+     * {@link #wakeup()} must override this method.
+     *
+     * @return <code>true</code> if there are pending requests,
+     *   <code>false</code> otherwise.
+     */
+    protected boolean hasPendingRequests() {
+        return false;
+    }
+
+    /**
+     * Wakes up the main I/O reactor in order to process pending requests.
+     * Redundant wakeups as well as wakeups from the main I/O reactor thread
+     * itself are skipped.
+     *
+     * @see #hasPendingRequests()
+     */
+    protected void wakeup() {
+        this.selectorWakeup.wakeup();
+    }
+
+    /**
+     * Submits the task to be run by the main I/O reactor thread. Tasks are
+     * run in batches after I/O events have been processed. The number of
+     * tasks run per I/O select loop is limited by
+     * {@link IOReactorConfig#getTaskBudget()}.
+     *
+     * @param task the task.
+     * @throws RejectedExecutionException if the task queue is full or
+     *   the I/O reactor has been shut down.
+     */
+    public void execute(final Runnable task) {
+        if (this.status.compareTo(IOReactorStatus.ACTIVE) > 0) {
+            throw new RejectedExecutionException("I/O reactor has been shut down");
+        }
+        if (!this.taskQueue.add(task)) {
+            throw new RejectedExecutionException("Task queue is full");
+        }
+        if (this.status.compareTo(IOReactorStatus.ACTIVE) > 0) {
+            // Shut down in the meantime. Do not leave the task behind
+            this.taskQueue.cancelPending();
+            return;
+        }
+        this.selectorWakeup.wakeup();
+    }
+
+    /**
+     * Submits the task to be run by the main I/O reactor thread once
+     * the given delay elapses.
+     *
+     * @param task the task.
+     * @param delayMs delay in milliseconds.
+     * @throws RejectedExecutionException if the task queue is full or
+     *   the I/O reactor has been shut down.
+     */
+    public void schedule(final Runnable task, long delayMs) {
+        if (this.status.compareTo(IOReactorStatus.ACTIVE) > 0) {
+            throw new RejectedExecutionException("I/O reactor has been shut down");
+        }
+        if (!this.taskQueue.schedule(task, delayMs)) {
+            throw new RejectedExecutionException("Task queue is full");
+        }
+        if (this.status.compareTo(IOReactorStatus.ACTIVE) > 0) {
+            // Shut down in the meantime. Do not leave the task behind
+            this.taskQueue.cancelPending();
+            return;
+        }
+        this.selectorWakeup.wakeup();
+    }
+
+    private void processTasks() {
+        long now = this.clock.now();
+        this.taskQueue.beginBatch();
+        Runnable task;
+        while ((task = this.taskQueue.poll(now)) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                if (this.exceptionHandler == null || !this.exceptionHandler.handle(ex)) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Migrates the given I/O session to the worker I/O reactor with the given
+     * index. The session is cancelled with the selector of its current worker
+     * and registered with the selector of the target worker along with its
+     * attributes, buffered input and timeout state. I/O events of the session
+     * are never dispatched by both workers at the same time. The migration
+     * is carried out asynchronously.
+     *
+     * @param session the I/O session.
+     * @param worker the index of the target worker I/O reactor.
+     * @return <code>true</code> if the migration has been initiated,
+     *   <code>false</code> if the session is closed, is not managed by any
+     *   of the workers or is already managed by the target worker.
+     */
+    public boolean migrate(final IOSession session, int worker) {
+        if (session == null) {
+            throw new IllegalArgumentException("Session may not be null");
+        }
+        if (worker < 0 || worker >= this.workerCount) {
+            throw new IllegalArgumentException("Invalid worker index: " + worker);
+        }
+        if (this.status != IOReactorStatus.ACTIVE || !(session instanceof IOSessionImpl)
+                || session.isClosed()) {
+            return false;
+        }
+        BaseIOReactor target = this.dispatchers[worker];
+        for (int i = 0; i < this.workerCount; i++) {
+            BaseIOReactor dispatcher = this.dispatchers[i];
+            if (dispatcher != target && dispatcher.hasSession(session)) {
+                try {
+                    dispatcher.migrateSession((IOSessionImpl) session, target);
+                } catch (RejectedExecutionException ex) {
+                    return false;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves sessions from the busiest worker I/O reactor to the least busy
+     * one if the difference in the number of sessions they manage exceeds
+     * {@link IOReactorConfig#getBalanceThreshold()}. Executed by the main
+     * I/O reactor thread every {@link IOReactorConfig#getBalanceInterval()}
+     * milliseconds if the interval is greater than zero.
+     */
+    protected void balanceWorkers() {
+        int max = -1;
+        int min = -1;
+        int maxCount = Integer.MIN_VALUE;
+        int minCount = Integer.MAX_VALUE;
+        for (int i = 0; i < this.workerCount; i++) {
+            int count = this.dispatchers[i].getSessionCount();
+            if (count > maxCount) {
+                maxCount = count;
+                max = i;
+            }
+            if (count < minCount) {
+                minCount = count;
+                min = i;
+            }
+        }
+        int diff = maxCount - minCount;
+        if (max != min && diff > this.config.getBalanceThreshold()) {
+            try {
+                this.dispatchers[max].migrateSessions(diff / 2, this.dispatchers[min]);
+            } catch (RejectedExecutionException ex) {
+                // Shutting down
+            }
+        }
+    }
+
     /**
      * Triggered to cancel pending session requests.
      * <p>
@@ -232,9 +471,12 @@ public abstract class AbstractMultiworkerIOReactor implements IOReactor {
      * The following HTTP parameters affect execution of this method:
      * <p>
      * The {@link IOReactorConfig#getSelectInterval()} parameter determines the
-     * time interval in milliseconds at which the I/O reactor wakes up to check
-     * for timed out sessions and session requests.
+     * maximum time interval in milliseconds the I/O reactors remain blocked
+     * while there is time based processing pending that cannot be expressed
+     * as a deadline. Session and session request timeouts are tracked
+     * precisely and wake up the I/O reactors only when due.
      *
+     * @see #getNextDeadline(long)
      * @see #processEvents(int)
      * @see #cancelRequests()
      *
@@ -258,16 +500,17 @@ public abstract class AbstractMultiworkerIOReactor implements IOReactor {
             this.status = IOReactorStatus.ACTIVE;
             // Start I/O dispatchers
             for (int i = 0; i < this.dispatchers.length; i++) {
-                BaseIOReactor dispatcher = new BaseIOReactor(this.selectTimeout, this.interestOpsQueueing);
+                BaseIOReactor dispatcher = new BaseIOReactor(this.config);
                 dispatcher.setExceptionHandler(exceptionHandler);
                 this.dispatchers[i] = dispatcher;
             }
             for (int i = 0; i < this.workerCount; i++) {
                 BaseIOReactor dispatcher = this.dispatchers[i];
-                this.workers[i] = new Worker(dispatcher, eventDispatch);
+                this.workers[i] = new Worker(dispatcher, eventDispatch, this.selector);
                 this.threads[i] = this.threadFactory.newThread(this.workers[i]);
             }
         }
+        this.selectorWakeup.bind(Thread.currentThread());
         try {
 
             for (int i = 0; i < this.workerCount; i++) {
@@ -277,31 +520,50 @@ public abstract class AbstractMultiworkerIOReactor implements IOReactor {
                 this.threads[i].start();
             }
 
+            final long balanceInterval = this.config.getBalanceInterval();
+            if (balanceInterval > 0) {
+                schedule(new Runnable() {
+
+                    public void run() {
+                        balanceWorkers();
+                        try {
+                            schedule(this, balanceInterval);
+                        } catch (RejectedExecutionException ex) {
+                            // Shutting down
+                        }
+                    }
+
+                }, balanceInterval);
+            }
+
             for (;;) {
                 int readyCount;
                 try {
-                    readyCount = this.selector.select(this.selectTimeout);
+                    readyCount = select();
                 } catch (InterruptedIOException ex) {
                     throw ex;
                 } catch (IOException ex) {
                     throw new IOReactorException("Unexpected selector failure", ex);
                 }
+                this.clock.update();
 
                 if (this.status.compareTo(IOReactorStatus.ACTIVE) > 0) {
                     break;
                 }
                 processEvents(readyCount);
 
+                // Run pending tasks
+                processTasks();
+
                 // Verify I/O dispatchers
                 for (int i = 0; i < this.workerCount; i++) {
                     Worker worker = this.workers[i];
-                    Thread thread = this.threads[i];
-                    if (!thread.isAlive()) {
-                        Exception ex = worker.getException();
-                        if (ex != null) {
-                            throw new IOReactorException(
-                                    "I/O dispatch worker terminated abnormally", ex);
-                        }
+                    // The exception is set before the worker wakes up
+                    // the main I/O reactor, possibly still alive
+                    Exception ex = worker.getException();
+                    if (ex != null) {
+                        throw new IOReactorException(
+                                "I/O dispatch worker terminated abnormally", ex);
                     }
                 }
             }
@@ -314,6 +576,7 @@ public abstract class AbstractMultiworkerIOReactor implements IOReactor {
             }
             throw ex;
         } finally {
+            this.selectorWakeup.bind(null);
             doShutdown();
             synchronized (this.statusLock) {
                 this.status = IOReactorStatus.SHUT_DOWN;
@@ -322,6 +585,30 @@ public abstract class AbstractMultiworkerIOReactor implements IOReactor {
         }
     }
 
+    private int select() throws IOException {
+        long now = this.clock.update();
+        long deadline = Math.min(getNextDeadline(now), this.taskQueue.nextDeadline());
+        this.selectorWakeup.beginSelect();
+        try {
+            if (hasPendingRequests() || this.taskQueue.hasPendingTasks()) {
+                // Wakeups requested before the select window has been
+                // opened were skipped. Do not block
+                return this.selector.selectNow();
+            }
+            if (deadline == Long.MAX_VALUE) {
+                return this.selector.select();
+            }
+            long timeout = deadline - now;
+            if (timeout > 0) {
+                return this.selector.select(timeout);
+            } else {
+                return this.selector.selectNow();
+            }
+        } finally {
+            this.selectorWakeup.endSelect();
+        }
+    }
+
     /**
      * Activates the shutdown sequence for this reactor. This method will cancel
      * all pending session requests, close out all active I/O channels,
@@ -352,6 +639,7 @@ public abstract class AbstractMultiworkerIOReactor implements IOReactor {
                 addExceptionEvent(ex.getCause());
             }
         }
+        this.taskQueue.clear();
         this.selector.wakeup();
 
         // Close out all channels
@@ -413,16 +701,85 @@ public abstract class AbstractMultiworkerIOReactor implements IOReactor {
     }
 
     /**
-     * Assigns the given channel entry to one of the worker I/O reactors.
+     * Assigns the given channel entry to one of the worker I/O reactors
+     * chosen by the {@link WorkerSelector}.
      *
      * @param entry the channel entry.
      */
     protected void addChannel(final ChannelEntry entry) {
         // Distribute new channels among the workers
-        int i = Math.abs(this.currentWorker++ % this.workerCount);
+        int i = this.workerSelector.select(entry, this.dispatchers);
+        if (i < 0 || i >= this.workerCount) {
+            throw new IllegalStateException("Invalid worker index: " + i);
+        }
         this.dispatchers[i].addChannel(entry);
     }
 
+    /**
+     * Assigns the given channel entry of an unconnected channel to one of
+     * the worker I/O reactors chosen by the {@link WorkerSelector}. The worker
+     * I/O reactor initiates and finishes the connection on behalf of the
+     * session request of the entry and manages the resultant I/O session.
+     *
+     * @param entry the channel entry.
+     * @return <code>true</code> if the entry has been assigned to a worker,
+     *   <code>false</code> if the worker does not accept new tasks.
+     */
+    protected boolean connectChannel(final ChannelEntry entry) {
+        int i = this.workerSelector.select(entry, this.dispatchers);
+        if (i < 0 || i >= this.workerCount) {
+            throw new IllegalStateException("Invalid worker index: " + i);
+        }
+        try {
+            this.dispatchers[i].connectChannel(entry);
+            return true;
+        } catch (RejectedExecutionException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of worker I/O reactors.
+     *
+     * @return number of workers.
+     */
+    protected int getWorkerCount() {
+        return this.workerCount;
+    }
+
+    /**
+     * Returns the worker I/O reactor with the given index or
+     * <code>null</code> if the workers have not been started yet.
+     */
+    BaseIOReactor getWorker(int index) {
+        return this.dispatchers[index];
+    }
+
+    /**
+     * Registers the given channel with the selector of the worker I/O reactor
+     * with the given index. The registration is carried out asynchronously by
+     * the worker thread. I/O events on the channel are processed by the worker
+     * I/O reactor.
+     *
+     * @param worker the index of the worker I/O reactor.
+     * @param channel the channel.
+     * @param ops interest ops.
+     * @param attachment the key attachment.
+     * @throws IOReactorException if the worker I/O reactor has been shut down.
+     */
+    protected void registerWorkerChannel(
+            int worker,
+            final SelectableChannel channel,
+            int ops,
+            final Object attachment) throws IOReactorException {
+        try {
+            this.dispatchers[worker].registerChannel(channel, ops, attachment);
+        } catch (RejectedExecutionException ex) {
+            throw new IOReactorException("Failure registering channel " +
+                    "with the worker selector", ex);
+        }
+    }
+
     /**
      * Registers the given channel with the main {@link Selector}.
      *
@@ -501,13 +858,18 @@ public abstract class AbstractMultiworkerIOReactor implements IOReactor {
 
         final BaseIOReactor dispatcher;
         final IOEventDispatch eventDispatch;
+        final Selector mainSelector;
 
         private volatile Exception exception;
 
-        public Worker(final BaseIOReactor dispatcher, final IOEventDispatch eventDispatch) {
+        public Worker(
+                final BaseIOReactor dispatcher,
+                final IOEventDispatch eventDispatch,
+                final Selector mainSelector) {
             super();
             this.dispatcher = dispatcher;
             this.eventDispatch = eventDispatch;
+            this.mainSelector = mainSelector;
         }
 
         public void run() {
@@ -515,6 +877,9 @@ public abstract class AbstractMultiworkerIOReactor implements IOReactor {
                 this.dispatcher.execute(this.eventDispatch);
             } catch (Exception ex) {
                 this.exception = ex;
+            } finally {
+                // Let the main I/O reactor verify the worker status
+                this.mainSelector.wakeup();
             }
         }
 
@@ -0,0 +1,180 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of connections accepted by a listening I/O reactor. Counters
+ * are updated once per batch of connections accepted on a single readiness
+ * event and can be read by any thread.
+ * <p>
+ * The overflow of the kernel accept queue is not visible to Java code.
+ * Batches cut short by the accept batch size are reported instead: if they
+ * occur frequently, connections are arriving faster than they are accepted
+ * and the accept queue is likely to overflow.
+ */
+public final class AcceptMetrics {
+
+    private final AtomicLong accepted;
+    private final AtomicLong batches;
+    private final AtomicLong saturatedBatches;
+    private final AtomicLong failures;
+    private final AtomicLong throttles;
+    private final AtomicLong deferrals;
+    private final AtomicLong rejections;
+
+    public AcceptMetrics() {
+        super();
+        this.accepted = new AtomicLong(0);
+        this.batches = new AtomicLong(0);
+        this.saturatedBatches = new AtomicLong(0);
+        this.failures = new AtomicLong(0);
+        this.throttles = new AtomicLong(0);
+        this.deferrals = new AtomicLong(0);
+        this.rejections = new AtomicLong(0);
+    }
+
+    /**
+     * Records a batch of accepted connections.
+     *
+     * @param count number of connections accepted.
+     * @param saturated <code>true</code> if the batch has been cut short
+     *   by the accept batch size.
+     */
+    void batchCompleted(int count, boolean saturated) {
+        this.batches.incrementAndGet();
+        if (count > 0) {
+            this.accepted.addAndGet(count);
+        }
+        if (saturated) {
+            this.saturatedBatches.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records a failure to accept a connection.
+     */
+    void acceptFailed() {
+        this.failures.incrementAndGet();
+    }
+
+    /**
+     * Records the start of an overload condition.
+     */
+    void throttled() {
+        this.throttles.incrementAndGet();
+    }
+
+    /**
+     * Records an accept readiness event left unprocessed due to overload.
+     */
+    void acceptDeferred() {
+        this.deferrals.incrementAndGet();
+    }
+
+    /**
+     * Records a connection closed right after acceptance due to overload.
+     */
+    void acceptRejected() {
+        this.rejections.incrementAndGet();
+    }
+
+    /**
+     * Returns the total number of accepted connections. Connections
+     * rejected due to overload are not included.
+     */
+    public long getAcceptedCount() {
+        return this.accepted.get();
+    }
+
+    /**
+     * Returns the number of accept readiness events processed.
+     */
+    public long getBatchCount() {
+        return this.batches.get();
+    }
+
+    /**
+     * Returns the average number of connections accepted per accept
+     * readiness event.
+     */
+    public double getAcceptedPerWakeup() {
+        long batches = this.batches.get();
+        return batches > 0 ? (double) this.accepted.get() / batches : 0;
+    }
+
+    /**
+     * Returns the number of batches cut short by the accept batch size
+     * while more connections may have been pending.
+     */
+    public long getSaturatedBatchCount() {
+        return this.saturatedBatches.get();
+    }
+
+    /**
+     * Returns the number of failed accept attempts.
+     */
+    public long getFailureCount() {
+        return this.failures.get();
+    }
+
+    /**
+     * Returns the number of times accepting has been throttled due to
+     * overload.
+     */
+    public long getThrottleCount() {
+        return this.throttles.get();
+    }
+
+    /**
+     * Returns the number of accept readiness events on which accepting has
+     * been suspended due to overload, leaving connections pending in the
+     * accept queue.
+     */
+    public long getDeferredCount() {
+        return this.deferrals.get();
+    }
+
+    /**
+     * Returns the number of connections closed right after acceptance due
+     * to overload.
+     */
+    public long getRejectedCount() {
+        return this.rejections.get();
+    }
+
+    @Override
+    public String toString() {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append("[accepted: ");
+        buffer.append(this.accepted.get());
+        buffer.append("; batches: ");
+        buffer.append(this.batches.get());
+        buffer.append("; saturated batches: ");
+        buffer.append(this.saturatedBatches.get());
+        buffer.append("; failures: ");
+        buffer.append(this.failures.get());
+        buffer.append("; throttles: ");
+        buffer.append(this.throttles.get());
+        buffer.append("; deferred: ");
+        buffer.append(this.deferrals.get());
+        buffer.append("; rejected: ");
+        buffer.append(this.rejections.get());
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Overload controller of a listening I/O reactor. The controller watches
+ * the load of the worker I/O reactors and stops accepting new connections
+ * once any of the load figures reaches its high-water mark. Accepting is
+ * resumed once all load figures fall to their low-water marks.
+ * <p>
+ * While overloaded, server channels stop accepting connections upon their
+ * next accept readiness event and leave pending connections in the accept
+ * queue of the kernel. If shedding is enabled, pending connections are
+ * accepted and closed immediately instead.
+ */
+final class AcceptThrottle {
+
+    private final long latencyLowWatermark;
+    private final long latencyHighWatermark;
+    private final int pendingLowWatermark;
+    private final int pendingHighWatermark;
+    private final int sessionLowWatermark;
+    private final int sessionHighWatermark;
+    private final boolean shedding;
+    private final AcceptMetrics acceptMetrics;
+    private final Queue<SelectionKey> suspendedKeys;
+
+    private volatile boolean overloaded;
+
+    AcceptThrottle(final IOReactorConfig config, final AcceptMetrics acceptMetrics) {
+        super();
+        this.latencyLowWatermark = config.getLoopLatencyLowWatermark() * 1000000;
+        this.latencyHighWatermark = config.getLoopLatencyHighWatermark() * 1000000;
+        this.pendingLowWatermark = config.getPendingChannelLowWatermark();
+        this.pendingHighWatermark = config.getPendingChannelHighWatermark();
+        this.sessionLowWatermark = config.getSessionLowWatermark();
+        this.sessionHighWatermark = config.getSessionHighWatermark();
+        this.shedding = config.isOverloadShedding();
+        this.acceptMetrics = acceptMetrics;
+        this.suspendedKeys = new ConcurrentLinkedQueue<SelectionKey>();
+    }
+
+    /**
+     * Determines whether the given configuration enables overload control.
+     */
+    static boolean isEnabled(final IOReactorConfig config) {
+        return config.getLoopLatencyHighWatermark() > 0
+            || config.getPendingChannelHighWatermark() > 0
+            || config.getSessionHighWatermark() > 0;
+    }
+
+    boolean isOverloaded() {
+        return this.overloaded;
+    }
+
+    boolean isShedding() {
+        return this.shedding;
+    }
+
+    /**
+     * Updates the overload state from the current load of the worker I/O
+     * reactors. This method may be called by the main I/O reactor thread
+     * only.
+     *
+     * @param loopLatency the highest loop latency of the workers in
+     *   nanoseconds.
+     * @param pendingChannels the total number of new channels pending
+     *   registration.
+     * @param sessions the total number of sessions.
+     * @return <code>true</code> if overloaded, <code>false</code> otherwise.
+     */
+    boolean update(long loopLatency, int pendingChannels, int sessions) {
+        if (!this.overloaded) {
+            if ((this.latencyHighWatermark > 0 && loopLatency >= this.latencyHighWatermark)
+                    || (this.pendingHighWatermark > 0 && pendingChannels >= this.pendingHighWatermark)
+                    || (this.sessionHighWatermark > 0 && sessions >= this.sessionHighWatermark)) {
+                this.overloaded = true;
+                this.acceptMetrics.throttled();
+            }
+        } else {
+            if ((this.latencyHighWatermark == 0 || loopLatency <= this.latencyLowWatermark)
+                    && (this.pendingHighWatermark == 0 || pendingChannels <= this.pendingLowWatermark)
+                    && (this.sessionHighWatermark == 0 || sessions <= this.sessionLowWatermark)) {
+                this.overloaded = false;
+                resumeKeys();
+            }
+        }
+        return this.overloaded;
+    }
+
+    /**
+     * Stops accepting connections on the given selection key until the
+     * overload condition clears. This method may be called by the I/O
+     * reactor thread the key is registered with.
+     *
+     * @param key the selection key of a server channel.
+     */
+    void suspend(final SelectionKey key) {
+        try {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_ACCEPT);
+        } catch (CancelledKeyException ex) {
+            return;
+        }
+        this.acceptMetrics.acceptDeferred();
+        this.suspendedKeys.add(key);
+        // The overload may have cleared in the meantime
+        if (!this.overloaded) {
+            resumeKeys();
+        }
+    }
+
+    private void resumeKeys() {
+        SelectionKey key;
+        while ((key = this.suspendedKeys.poll()) != null) {
+            try {
+                key.interestOps(key.interestOps() | SelectionKey.OP_ACCEPT);
+                key.selector().wakeup();
+            } catch (CancelledKeyException ex) {
+                // Endpoint closed in the meantime
+            }
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import com.ok2c.lightnio.IOReactorException;
+import com.ok2c.lightnio.IOReactorExceptionHandler;
+
+/**
+ * Accepts pending connections on server channels in batches. Upon each
+ * accept readiness event up to {@link IOReactorConfig#getAcceptBatchSize()}
+ * connections are accepted and passed to the {@link AcceptCallback}.
+ * The same accept logic is shared by the main I/O reactor of
+ * {@link DefaultListeningIOReactor} and the worker I/O reactors accepting
+ * connections of their own in the <code>SO_REUSEPORT</code> accept mode.
+ * <p>
+ * Instances of this class are expected to be accessed by the I/O reactor
+ * thread only.
+ */
+final class Acceptor {
+
+    private final int batchSize;
+    private final AcceptCallback callback;
+
+    Acceptor(int batchSize, final AcceptCallback callback) {
+        super();
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Accept batch size may not be negative or zero");
+        }
+        if (callback == null) {
+            throw new IllegalArgumentException("Accept callback may not be null");
+        }
+        this.batchSize = batchSize;
+        this.callback = callback;
+    }
+
+    /**
+     * Accepts pending connections on the server channel of the given
+     * selection key. While overloaded, accepting is suspended or, if
+     * the throttle sheds load, accepted connections are closed immediately.
+     *
+     * @param key the selection key of a server channel.
+     * @param acceptThrottle the accept throttle. Can be <code>null</code>.
+     * @param overloaded <code>true</code> if the I/O reactors are overloaded,
+     *   <code>false</code> otherwise.
+     * @param acceptMetrics the accept metrics. Can be <code>null</code>.
+     * @param exceptionHandler the exception handler. Can be <code>null</code>.
+     * @throws IOReactorException if an I/O error could not be handled by
+     *   the exception handler.
+     */
+    void accept(
+            final SelectionKey key,
+            final AcceptThrottle acceptThrottle,
+            boolean overloaded,
+            final AcceptMetrics acceptMetrics,
+            final IOReactorExceptionHandler exceptionHandler) throws IOReactorException {
+        ServerSocketChannel serverChannel = (ServerSocketChannel) key.channel();
+        boolean shedding = false;
+        if (acceptThrottle != null && overloaded) {
+            if (!acceptThrottle.isShedding()) {
+                acceptThrottle.suspend(key);
+                return;
+            }
+            shedding = true;
+        }
+        int accepted = 0;
+        int rejected = 0;
+        try {
+            while (accepted + rejected < this.batchSize) {
+                SocketChannel socketChannel = null;
+                try {
+                    socketChannel = serverChannel.accept();
+                } catch (IOException ex) {
+                    if (acceptMetrics != null) {
+                        acceptMetrics.acceptFailed();
+                    }
+                    if (exceptionHandler == null || !exceptionHandler.handle(ex)) {
+                        throw new IOReactorException("Failure accepting connection", ex);
+                    }
+                    break;
+                }
+                if (socketChannel == null) {
+                    break;
+                }
+                if (shedding) {
+                    rejected++;
+                    if (acceptMetrics != null) {
+                        acceptMetrics.acceptRejected();
+                    }
+                    try {
+                        socketChannel.close();
+                    } catch (IOException ignore) {
+                    }
+                    continue;
+                }
+                accepted++;
+                try {
+                    this.callback.prepareSocket(socketChannel.socket());
+                } catch (IOException ex) {
+                    if (exceptionHandler == null || !exceptionHandler.handle(ex)) {
+                        throw new IOReactorException("Failure initalizing socket", ex);
+                    }
+                }
+                this.callback.channelAccepted(new ChannelEntry(socketChannel));
+            }
+        } finally {
+            if (acceptMetrics != null) {
+                acceptMetrics.batchCompleted(accepted,
+                        accepted + rejected == this.batchSize);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of host name resolution results. Successful resolutions
+ * are kept for the time to live and failures for the negative time to live.
+ * Once full, the least recently used entries are evicted. Host names are
+ * case insensitive. Instances of this class are threading safe.
+ */
+final class AddressCache {
+
+    private final Map<String, CacheEntry> map;
+    private final long ttl;
+    private final long negativeTtl;
+
+    /**
+     * Creates new AddressCache instance.
+     *
+     * @param maxEntries maximum number of entries.
+     * @param ttl time to live of successful resolutions in milliseconds.
+     * @param negativeTtl time to live of failed resolutions in milliseconds.
+     *   Failures are not cached if <code>0</code>.
+     */
+    AddressCache(final int maxEntries, long ttl, long negativeTtl) {
+        super();
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries may not be negative or zero");
+        }
+        if (ttl < 0) {
+            throw new IllegalArgumentException("TTL may not be negative");
+        }
+        if (negativeTtl < 0) {
+            throw new IllegalArgumentException("Negative TTL may not be negative");
+        }
+        this.map = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+
+        };
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+    }
+
+    /**
+     * Looks up the given host name.
+     *
+     * @param host the host name.
+     * @param now current time in milliseconds.
+     * @return the addresses of the host or <code>null</code> if there is
+     *   no valid entry for the host name.
+     * @throws UnknownHostException if the host name is known not to resolve.
+     */
+    synchronized InetAddress[] get(final String host, long now) throws UnknownHostException {
+        String key = host.toLowerCase();
+        CacheEntry entry = this.map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiry <= now) {
+            this.map.remove(key);
+            return null;
+        }
+        if (entry.addresses == null) {
+            throw new UnknownHostException(host);
+        }
+        return entry.addresses;
+    }
+
+    /**
+     * Caches successful resolution of the given host name.
+     */
+    synchronized void put(final String host, final InetAddress[] addresses, long now) {
+        if (this.ttl > 0) {
+            this.map.put(host.toLowerCase(), new CacheEntry(addresses, now + this.ttl));
+        }
+    }
+
+    /**
+     * Caches failed resolution of the given host name.
+     */
+    synchronized void putFailure(final String host, long now) {
+        if (this.negativeTtl > 0) {
+            this.map.put(host.toLowerCase(), new CacheEntry(null, now + this.negativeTtl));
+        }
+    }
+
+    synchronized int size() {
+        return this.map.size();
+    }
+
+    synchronized void clear() {
+        this.map.clear();
+    }
+
+    static class CacheEntry {
+
+        final InetAddress[] addresses;
+        final long expiry;
+
+        CacheEntry(final InetAddress[] addresses, long expiry) {
+            super();
+            this.addresses = addresses;
+            this.expiry = expiry;
+        }
+
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * {@link WorkerSelector} implementation that assigns new channels to worker
+ * I/O reactors based on the hash of the remote IP address, so that all
+ * connections from the same host are handled by the same worker.
+ * Channels whose remote address is not known are assigned in turn.
+ */
+public class AddressHashWorkerSelector implements WorkerSelector {
+
+    private final WorkerSelector fallback;
+
+    public AddressHashWorkerSelector() {
+        super();
+        this.fallback = new RoundRobinWorkerSelector();
+    }
+
+    public int select(final ChannelEntry entry, final BaseIOReactor[] workers) {
+        Socket socket = entry.getChannel().socket();
+        InetAddress address = socket.getInetAddress();
+        if (address == null) {
+            return this.fallback.select(entry, workers);
+        }
+        int hash = address.hashCode();
+        // Spread the bits as addresses tend to differ in the low order byte
+        hash ^= (hash >>> 16);
+        hash ^= (hash >>> 8);
+        return (hash & Integer.MAX_VALUE) % workers.length;
+    }
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Strategy used by {@link DefaultConnectingIOReactor} to resolve host names
+ * of unresolved remote addresses. Resolution is carried out by a dedicated
+ * thread pool, so implementations are allowed to block. Implementations must
+ * be threading safe as several host names may be resolved concurrently.
+ */
+public interface AddressResolver {
+
+    /**
+     * Resolves the given host name.
+     *
+     * @param host the host name.
+     * @return the addresses of the host. The array may not be empty.
+     * @throws UnknownHostException if the host name cannot be resolved.
+     */
+    InetAddress[] resolve(String host) throws UnknownHostException;
+
+}
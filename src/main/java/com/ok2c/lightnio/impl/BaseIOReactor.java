@@ -14,12 +14,18 @@
  */
 package com.ok2c.lightnio.impl;
 
+import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.net.Socket;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.ok2c.lightnio.EventMask;
 import com.ok2c.lightnio.IOEventDispatch;
@@ -33,17 +39,97 @@ import com.ok2c.lightnio.IOSession;
  * for more advanced {@link IOReactor} implementations. This class adds
  * support for the I/O event dispatching using {@link IOEventDispatch},
  * management of buffering sessions, and session timeout handling.
+ * <p>
+ * Session timeouts are tracked using a {@link TimingWheel}. The session
+ * handle is re-armed every time the session is dispatched an I/O event or
+ * its socket timeout is changed, so that only those sessions whose timeout
+ * is about to expire have to be examined after each I/O select loop.
+ * <p>
+ * The number of events and the number of bytes a single session and all
+ * sessions together may consume per I/O select loop can be limited using
+ * {@link IOReactorConfig}. Once a budget has been exhausted the remaining
+ * sessions are deferred. Their selection keys are dispatched first in the
+ * next loop, ahead of newly selected keys, and the I/O reactor does not
+ * block in the next select operation. Only the deferred events the session
+ * is still interested in are dispatched. Byte budgets are checked between
+ * event dispatches, so an event handler may overdraw the budget once.
  */
 public class BaseIOReactor extends AbstractIOReactor {
 
-    private final long timeoutCheckInterval;
-    private final Set<IOSession> bufferingSessions;
+    private final Set<SessionHandle> bufferingSessions;
+    private final TimingWheel timeoutWheel;
+    private final TimingWheel.ExpiryCallback timeoutCallback;
 
-    private long lastTimeoutCheck;
+    private final int loopEventBudget;
+    private final int sessionEventBudget;
+    private final long loopByteBudget;
+    private final long sessionByteBudget;
+    private final boolean budgeting;
+    private final boolean byteBudgeting;
+    private final boolean tcpNoDelay;
+    private final int soLinger;
+    private final Acceptor acceptor;
+
+    private List<SelectionKey> deferredKeys;
+    private List<SelectionKey> resumedKeys;
+    private boolean bufferedInputDeferred;
+    private long loop;
+    private long resumedLoop;
+    private int loopEvents;
+    private long loopBytes;
 
     private IOReactorExceptionHandler exceptionHandler = null;
     private IOEventDispatch eventDispatch = null;
 
+    /**
+     * Creates new BaseIOReactor instance.
+     *
+     * @param config the configuration object.
+     * @throws IOReactorException in case if a non-recoverable I/O error.
+     */
+    public BaseIOReactor(final IOReactorConfig config) throws IOReactorException {
+        super(config);
+        this.bufferingSessions = new HashSet<SessionHandle>();
+        this.timeoutWheel = new TimingWheel(
+                Math.min(config.getSelectInterval(), TimingWheel.DEFAULT_TICK_DURATION),
+                TimingWheel.DEFAULT_WHEEL_SIZE,
+                getClock().now());
+        this.timeoutCallback = new TimingWheel.ExpiryCallback() {
+
+            public void expired(final TimingWheel.Entry entry, long now) {
+                if (entry instanceof SessionRequestHandle) {
+                    connectTimedOut((SessionRequestHandle) entry, now);
+                } else {
+                    sessionTimedOut((SessionHandle) entry, now);
+                }
+            }
+
+        };
+        this.loopEventBudget = config.getLoopEventBudget();
+        this.sessionEventBudget = config.getSessionEventBudget();
+        this.loopByteBudget = config.getLoopByteBudget();
+        this.sessionByteBudget = config.getSessionByteBudget();
+        this.byteBudgeting = this.loopByteBudget > 0 || this.sessionByteBudget > 0;
+        this.budgeting = this.byteBudgeting || this.loopEventBudget > 0 || this.sessionEventBudget > 0;
+        this.tcpNoDelay = config.isTcpNoDelay();
+        this.soLinger = config.getSoLinger();
+        this.acceptor = new Acceptor(config.getAcceptBatchSize(), new AcceptCallback() {
+
+            public void prepareSocket(final Socket socket) throws IOException {
+                BaseIOReactor.this.prepareSocket(socket);
+            }
+
+            public void channelAccepted(final ChannelEntry entry) {
+                addChannel(entry);
+            }
+
+        });
+        this.deferredKeys = new ArrayList<SelectionKey>();
+        this.resumedKeys = new ArrayList<SelectionKey>();
+        this.loop = 0;
+        this.resumedLoop = -1;
+    }
+
     /**
      * Creates new BaseIOReactor instance.
      *
@@ -51,10 +137,7 @@ public class BaseIOReactor extends AbstractIOReactor {
      * @throws IOReactorException in case if a non-recoverable I/O error.
      */
     public BaseIOReactor(long selectTimeout, boolean interestOpsQueueing) throws IOReactorException {
-        super(selectTimeout, interestOpsQueueing);
-        this.bufferingSessions = new HashSet<IOSession>();
-        this.timeoutCheckInterval = selectTimeout;
-        this.lastTimeoutCheck = System.currentTimeMillis();
+        this(createConfig(selectTimeout, interestOpsQueueing));
     }
 
     /**
@@ -90,6 +173,7 @@ public class BaseIOReactor extends AbstractIOReactor {
      *
      * @param ex the runtime exception.
      */
+    @Override
     protected void handleRuntimeException(final RuntimeException ex) {
         if (this.exceptionHandler == null || !this.exceptionHandler.handle(ex)) {
             throw ex;
@@ -97,23 +181,314 @@ public class BaseIOReactor extends AbstractIOReactor {
     }
 
     /**
-     * This I/O reactor implementation does not react to the
-     * {@link SelectionKey#OP_ACCEPT} event.
+     * Returns the earliest session timeout deadline. If there are sessions
+     * with buffered input the I/O reactor wakes up at least once per select
+     * interval. Otherwise, if no session can time out, the I/O reactor blocks
+     * until an I/O event occurs. If sessions have been deferred due to
+     * an exhausted I/O budget, the deadline is due immediately.
+     */
+    @Override
+    protected long getNextDeadline(long now) {
+        if (!this.deferredKeys.isEmpty() || this.bufferedInputDeferred) {
+            return now;
+        }
+        long deadline = this.timeoutWheel.nextDeadline();
+        if (!this.bufferingSessions.isEmpty()) {
+            deadline = Math.min(deadline, now + getSelectTimeout());
+        }
+        return deadline;
+    }
+
+    /**
+     * Processes new event on the given selection key. If I/O budgets are
+     * enforced, selection keys deferred in the previous I/O select loop are
+     * processed first.
+     */
+    @Override
+    protected void processEvent(final SelectionKey key) throws IOReactorException {
+        if (this.budgeting) {
+            if (this.resumedLoop != this.loop) {
+                processDeferredKeys();
+            }
+            Object attachment = key.attachment();
+            if (attachment instanceof SessionHandle
+                    && ((SessionHandle) attachment).resumedLoop == this.loop) {
+                // Already processed in this loop
+                return;
+            }
+        }
+        dispatchEvent(key);
+    }
+
+    private void dispatchEvent(final SelectionKey key) throws IOReactorException {
+        Object attachment = key.attachment();
+        super.processEvent(key);
+        if (attachment instanceof SessionHandle && key.attachment() == null) {
+            // Session closed while processing the event
+            this.timeoutWheel.cancel((SessionHandle) attachment);
+        }
+    }
+
+    private void processDeferredKeys() {
+        this.resumedLoop = this.loop;
+        if (this.deferredKeys.isEmpty()) {
+            return;
+        }
+        // Keys that run out of budget again get deferred to the other list
+        List<SelectionKey> keys = this.deferredKeys;
+        this.deferredKeys = this.resumedKeys;
+        this.resumedKeys = keys;
+        for (int i = 0; i < keys.size(); i++) {
+            SelectionKey key = keys.get(i);
+            Object attachment = key.attachment();
+            if (attachment instanceof SessionHandle) {
+                SessionHandle handle = (SessionHandle) attachment;
+                int ops = handle.deferredOps;
+                handle.deferredOps = 0;
+                handle.resumedLoop = this.loop;
+                if (key.isValid()) {
+                    resumeEvent(key, ops);
+                }
+            }
+        }
+        keys.clear();
+    }
+
+    /**
+     * Dispatches the deferred events on the given selection key. The ready
+     * operations of the key date back to the select operation that deferred
+     * them and are not updated unless the key gets selected again, therefore
+     * the events are masked with the current interest operations instead.
+     */
+    private void resumeEvent(final SelectionKey key, int ops) {
+        Object attachment = key.attachment();
+        try {
+            if ((ops & key.interestOps() & SelectionKey.OP_READ) != 0) {
+                readable(key);
+            }
+            if (key.isValid() && (ops & key.interestOps() & SelectionKey.OP_WRITE) != 0) {
+                writable(key);
+            }
+        } catch (CancelledKeyException ex) {
+            IOSession session = getSession(key);
+            queueClosedSession(session);
+            key.attach(null);
+        }
+        if (key.attachment() == null) {
+            // Session closed while processing the event
+            this.timeoutWheel.cancel((SessionHandle) attachment);
+        }
+    }
+
+    /**
+     * Charges one event to the per-loop budget and to the budget of
+     * the given session.
+     *
+     * @return <code>true</code> if the event may be dispatched,
+     *   <code>false</code> if a budget has been exhausted.
+     */
+    private boolean acquireBudget(final SessionHandle handle) {
+        if (handle.budgetLoop != this.loop) {
+            handle.budgetLoop = this.loop;
+            handle.loopEvents = 0;
+            handle.loopBytes = 0;
+        }
+        if (this.loopEventBudget > 0 && this.loopEvents >= this.loopEventBudget) {
+            return false;
+        }
+        if (this.sessionEventBudget > 0 && handle.loopEvents >= this.sessionEventBudget) {
+            return false;
+        }
+        if (this.loopByteBudget > 0 && this.loopBytes >= this.loopByteBudget) {
+            return false;
+        }
+        if (this.sessionByteBudget > 0 && handle.loopBytes >= this.sessionByteBudget) {
+            return false;
+        }
+        this.loopEvents++;
+        handle.loopEvents++;
+        return true;
+    }
+
+    private void chargeBytes(final SessionHandle handle, long bytesTransferred) {
+        long bytes = getBytesTransferred(handle.getSession()) - bytesTransferred;
+        if (bytes > 0) {
+            this.loopBytes += bytes;
+            handle.loopBytes += bytes;
+        }
+    }
+
+    private static long getBytesTransferred(final IOSession session) {
+        if (session instanceof IOSessionImpl) {
+            return ((IOSessionImpl) session).getBytesTransferred();
+        } else {
+            return 0;
+        }
+    }
+
+    private void defer(final SelectionKey key, final SessionHandle handle, int op) {
+        if (handle.deferredOps == 0) {
+            this.deferredKeys.add(key);
+        }
+        handle.deferredOps |= op;
+    }
+
+    /**
+     * Processes {@link SelectionKey#OP_ACCEPT} event on the given selection
+     * key of a server channel registered with this I/O reactor. Up to
+     * {@link IOReactorConfig#getAcceptBatchSize()} pending connections are
+     * accepted per event. The accepted channels are registered with the
+     * selector of this I/O reactor in the course of the same I/O select loop
+     * without involving other threads. While the listening I/O reactor is
+     * overloaded, accepting is suspended or, if overload shedding is enabled,
+     * accepted connections are closed immediately.
      * <p>
-     * Super-classes can override this method to react to the event.
+     * I/O exceptions that cannot be handled by the
+     * {@link IOReactorExceptionHandler} terminate the I/O reactor.
      */
     @Override
-    protected void acceptable(final SelectionKey key) {
+    protected void acceptable(final SelectionKey key) throws IOReactorException {
+        AcceptMetrics acceptMetrics = null;
+        AcceptThrottle acceptThrottle = null;
+        Object attachment = key.attachment();
+        if (attachment instanceof ListenerEndpointImpl) {
+            acceptMetrics = ((ListenerEndpointImpl) attachment).acceptMetrics;
+            acceptThrottle = ((ListenerEndpointImpl) attachment).acceptThrottle;
+        }
+        boolean overloaded = acceptThrottle != null && acceptThrottle.isOverloaded();
+        this.acceptor.accept(key, acceptThrottle, overloaded, acceptMetrics, this.exceptionHandler);
+    }
+
+    private void prepareSocket(final Socket socket) throws IOException {
+        socket.setTcpNoDelay(this.tcpNoDelay);
+        if (this.soLinger >= 0) {
+            socket.setSoLinger(this.soLinger > 0, this.soLinger);
+        }
+    }
+
+    /**
+     * Initiates the connection of the given channel entry on behalf of its
+     * session request. The connection is initiated and finished by the I/O
+     * reactor thread, which then turns the channel into an I/O session
+     * managed by this I/O reactor. If the I/O reactor shuts down before
+     * the connection has been initiated, the session request is cancelled
+     * and the channel closed. This method can be called by any thread.
+     *
+     * @param entry the channel entry of an unconnected channel.
+     * @throws RejectedExecutionException if this I/O reactor does not accept
+     *   new tasks.
+     */
+    void connectChannel(final ChannelEntry entry) {
+        execute(new CancellableTask() {
+
+            public void run() {
+                startConnect(entry);
+            }
+
+            public void cancel() {
+                entry.getSessionRequest().cancel();
+                closeChannel(entry.getChannel());
+            }
+
+        });
+    }
+
+    private void startConnect(final ChannelEntry entry) {
+        SocketChannel channel = entry.getChannel();
+        SessionRequestImpl sessionRequest = entry.getSessionRequest();
+        if (sessionRequest.isCompleted()) {
+            closeChannel(channel);
+            return;
+        }
+        try {
+            if (sessionRequest.getLocalAddress() != null) {
+                channel.socket().bind(sessionRequest.getLocalAddress());
+            }
+            if (channel.connect(sessionRequest.getConnectAddress())) {
+                prepareSocket(channel.socket());
+                addChannel(entry);
+                return;
+            }
+            long now = getClock().now();
+            SessionRequestHandle handle = new SessionRequestHandle(sessionRequest, now);
+            SelectionKey key = register(channel, SelectionKey.OP_CONNECT, handle);
+            sessionRequest.setKey(key);
+            scheduleConnectTimeout(handle, now);
+        } catch (IOException ex) {
+            closeChannel(channel);
+            sessionRequest.failed(ex);
+        }
+    }
+
+    private void scheduleConnectTimeout(final SessionRequestHandle handle, long now) {
+        SessionRequestImpl sessionRequest = handle.getSessionRequest();
+        long deadline = now + getSelectTimeout();
+        int timeout = sessionRequest.getConnectTimeout();
+        if (timeout > 0) {
+            deadline = Math.min(deadline, handle.getRequestTime() + timeout);
+        }
+        this.timeoutWheel.schedule(handle, deadline);
+    }
+
+    private void connectTimedOut(final SessionRequestHandle handle, long now) {
+        SessionRequestImpl sessionRequest = handle.getSessionRequest();
+        if (sessionRequest.isCompleted()) {
+            return;
+        }
+        int timeout = sessionRequest.getConnectTimeout();
+        if (timeout > 0 && handle.getRequestTime() + timeout <= now) {
+            sessionRequest.timeout();
+        } else {
+            // Connect timeout may have been changed in the meantime
+            scheduleConnectTimeout(handle, now);
+        }
+    }
+
+    private static void closeChannel(final SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignore) {
+        }
     }
 
     /**
-     * This I/O reactor implementation does not react to the
-     * {@link SelectionKey#OP_CONNECT} event.
+     * Processes {@link SelectionKey#OP_CONNECT} event on the given selection
+     * key of a channel connected by this I/O reactor. Once the connection has
+     * been established, the channel is turned into an I/O session without
+     * being registered anew.
      * <p>
-     * Super-classes can override this method to react to the event.
+     * I/O exceptions that cannot be handled by the
+     * {@link IOReactorExceptionHandler} terminate the I/O reactor.
      */
     @Override
     protected void connectable(final SelectionKey key) {
+        Object attachment = key.attachment();
+        if (!(attachment instanceof SessionRequestHandle)) {
+            return;
+        }
+        SessionRequestHandle handle = (SessionRequestHandle) attachment;
+        SessionRequestImpl sessionRequest = handle.getSessionRequest();
+        SocketChannel channel = (SocketChannel) key.channel();
+        try {
+            if (!channel.finishConnect()) {
+                return;
+            }
+        } catch (IOException ex) {
+            this.timeoutWheel.cancel(handle);
+            key.cancel();
+            closeChannel(channel);
+            sessionRequest.failed(ex);
+            return;
+        }
+        this.timeoutWheel.cancel(handle);
+        try {
+            prepareSocket(channel.socket());
+        } catch (IOException ex) {
+            if (this.exceptionHandler == null || !this.exceptionHandler.handle(ex)) {
+                throw new IllegalStateException("Failure initalizing socket", ex);
+            }
+        }
+        channelConnected(key, new ChannelEntry(channel, sessionRequest));
     }
 
     /**
@@ -124,9 +499,14 @@ public class BaseIOReactor extends AbstractIOReactor {
     @Override
     protected void readable(final SelectionKey key) {
         SessionHandle handle = (SessionHandle) key.attachment();
+        if (this.budgeting && !acquireBudget(handle)) {
+            defer(key, handle, SelectionKey.OP_READ);
+            return;
+        }
         IOSession session = handle.getSession();
-        handle.resetLastRead();
+        handle.resetLastRead(getClock().now());
 
+        long bytesTransferred = this.byteBudgeting ? getBytesTransferred(session) : 0;
         try {
             this.eventDispatch.inputReady(session);
         } catch (CancelledKeyException ex) {
@@ -135,9 +515,13 @@ public class BaseIOReactor extends AbstractIOReactor {
         } catch (RuntimeException ex) {
             handleRuntimeException(ex);
         }
+        if (this.byteBudgeting) {
+            chargeBytes(handle, bytesTransferred);
+        }
         if (session.hasBufferedInput()) {
-            this.bufferingSessions.add(session);
+            this.bufferingSessions.add(handle);
         }
+        scheduleTimeout(handle);
     }
 
     /**
@@ -148,9 +532,14 @@ public class BaseIOReactor extends AbstractIOReactor {
     @Override
     protected void writable(final SelectionKey key) {
         SessionHandle handle = (SessionHandle) key.attachment();
+        if (this.budgeting && !acquireBudget(handle)) {
+            defer(key, handle, SelectionKey.OP_WRITE);
+            return;
+        }
         IOSession session = handle.getSession();
-        handle.resetLastWrite();
+        handle.resetLastWrite(getClock().now());
 
+        long bytesTransferred = this.byteBudgeting ? getBytesTransferred(session) : 0;
         try {
             this.eventDispatch.outputReady(session);
         } catch (CancelledKeyException ex) {
@@ -159,40 +548,48 @@ public class BaseIOReactor extends AbstractIOReactor {
         } catch (RuntimeException ex) {
             handleRuntimeException(ex);
         }
+        if (this.byteBudgeting) {
+            chargeBytes(handle, bytesTransferred);
+        }
+        scheduleTimeout(handle);
     }
 
     /**
-     * Verifies whether any of the sessions associated with the given selection
-     * keys timed out by invoking the {@link #timeoutCheck(SelectionKey, long)}
-     * method.
+     * Expires those sessions whose timeout has elapsed by advancing
+     * the {@link TimingWheel} of this I/O reactor. The cost of the timeout
+     * check is proportional to the number of sessions that are due to expire
+     * rather than to the total number of sessions.
      * <p>
      * This method will also invoke the
      * {@link IOEventDispatch#inputReady(IOSession)} method on all sessions
-     * that have buffered input data.
+     * that have buffered input data, unless their I/O budget has been
+     * exhausted, and reset the I/O budgets for the next I/O select loop.
      */
     @Override
-    protected void validate(final Set<SelectionKey> keys) {
-        long currentTime = System.currentTimeMillis();
-        if( (currentTime - this.lastTimeoutCheck) >= this.timeoutCheckInterval) {
-            this.lastTimeoutCheck = currentTime;
-            if (keys != null) {
-                for (Iterator<SelectionKey> it = keys.iterator(); it.hasNext();) {
-                    SelectionKey key = it.next();
-                    timeoutCheck(key, currentTime);
-                }
-            }
+    protected void validate() {
+        if (this.budgeting && this.resumedLoop != this.loop) {
+            // No events selected in this loop
+            processDeferredKeys();
         }
+        this.timeoutWheel.expire(getClock().now(), this.timeoutCallback);
+        this.bufferedInputDeferred = false;
         if (!this.bufferingSessions.isEmpty()) {
-            for (Iterator<IOSession> it = this.bufferingSessions.iterator(); it.hasNext(); ) {
-                IOSession session = it.next();
-                if (!session.hasBufferedInput()) {
+            for (Iterator<SessionHandle> it = this.bufferingSessions.iterator(); it.hasNext(); ) {
+                SessionHandle handle = it.next();
+                IOSession session = handle.getSession();
+                if (session.isClosed() || !session.hasBufferedInput()) {
                     it.remove();
                     continue;
                 }
 
                 int ops = 0;
                 try {
-                    ops = session.getEventMask();
+                    if (session instanceof IOSessionImpl) {
+                        // Suspended events must not be dispatched either
+                        ops = ((IOSessionImpl) session).getInterestOps();
+                    } else {
+                        ops = session.getEventMask();
+                    }
                 } catch (CancelledKeyException ex) {
                     it.remove();
                     queueClosedSession(session);
@@ -200,6 +597,11 @@ public class BaseIOReactor extends AbstractIOReactor {
                 }
 
                 if ((ops & EventMask.READ) > 0) {
+                    if (this.budgeting && !acquireBudget(handle)) {
+                        this.bufferedInputDeferred = true;
+                        continue;
+                    }
+                    long bytesTransferred = this.byteBudgeting ? getBytesTransferred(session) : 0;
                     try {
                         this.eventDispatch.inputReady(session);
                     } catch (CancelledKeyException ex) {
@@ -208,37 +610,67 @@ public class BaseIOReactor extends AbstractIOReactor {
                     } catch (RuntimeException ex) {
                         handleRuntimeException(ex);
                     }
+                    if (this.byteBudgeting) {
+                        chargeBytes(handle, bytesTransferred);
+                    }
                     if (!session.hasBufferedInput()) {
                         it.remove();
                     }
                 }
             }
         }
+        this.loop++;
+        this.loopEvents = 0;
+        this.loopBytes = 0;
     }
 
     /**
-     * Performs timeout check for the I/O session associated with the given
-     * selection key.
+     * Schedules the handle of the given session with the timeout wheel
+     * according to the current socket timeout of the session. Deadlines that
+     * move forward as a result of I/O activity are not re-hashed immediately,
+     * they get picked up once the previously armed deadline expires.
+     *
+     * @param handle the session handle.
      */
-    @Override
-    protected void timeoutCheck(final SelectionKey key, long now) {
-        Object attachment = key.attachment();
-        if (attachment instanceof SessionHandle) {
-            SessionHandle handle = (SessionHandle) key.attachment();
-            IOSession session = handle.getSession();
-            int timeout = session.getSocketTimeout();
-            if (timeout > 0) {
-                if (handle.getLastAccessTime() + timeout < now) {
-                    try {
-                        this.eventDispatch.timeout(session);
-                    } catch (CancelledKeyException ex) {
-                        queueClosedSession(session);
-                        key.attach(null);
-                    } catch (RuntimeException ex) {
-                        handleRuntimeException(ex);
-                    }
-                }
+    protected void scheduleTimeout(final SessionHandle handle) {
+        IOSession session = handle.getSession();
+        int timeout = session.getSocketTimeout();
+        if (timeout > 0 && !session.isClosed()) {
+            long deadline = handle.getLastAccessTime() + timeout;
+            if (!handle.isScheduled() || deadline < handle.getDeadline()) {
+                this.timeoutWheel.schedule(handle, deadline);
             }
+        } else {
+            this.timeoutWheel.cancel(handle);
+        }
+    }
+
+    private void sessionTimedOut(final SessionHandle handle, long now) {
+        IOSession session = handle.getSession();
+        if (session.isClosed()) {
+            return;
+        }
+        int timeout = session.getSocketTimeout();
+        if (timeout <= 0) {
+            return;
+        }
+        long deadline = handle.getLastAccessTime() + timeout;
+        if (deadline > now) {
+            // I/O activity since the handle was armed
+            this.timeoutWheel.schedule(handle, deadline);
+            return;
+        }
+        try {
+            this.eventDispatch.timeout(session);
+        } catch (CancelledKeyException ex) {
+            queueClosedSession(session);
+        } catch (RuntimeException ex) {
+            handleRuntimeException(ex);
+        }
+        // Still idle? Notify again once another timeout period elapses
+        timeout = session.getSocketTimeout();
+        if (timeout > 0 && !session.isClosed()) {
+            this.timeoutWheel.schedule(handle, now + timeout);
         }
     }
 
@@ -248,16 +680,67 @@ public class BaseIOReactor extends AbstractIOReactor {
      */
     @Override
     protected void sessionCreated(final SelectionKey key, final IOSession session) {
-        SessionHandle handle = new SessionHandle(session);
+        SessionHandle handle = new SessionHandle(session, getClock().now());
         key.attach(handle);
         try {
             this.eventDispatch.connected(session);
         } catch (CancelledKeyException ex) {
             queueClosedSession(session);
             key.attach(null);
+            return;
         } catch (RuntimeException ex) {
             handleRuntimeException(ex);
         }
+        scheduleTimeout(handle);
+    }
+
+    /**
+     * Re-arms the timeout of the session whose socket timeout has been
+     * changed, so that the timeout is enforced even if the session is idle.
+     */
+    @Override
+    protected void socketTimeoutChanged(final SelectionKey key, final IOSession session) {
+        Object attachment = key.attachment();
+        if (attachment instanceof SessionHandle) {
+            scheduleTimeout((SessionHandle) attachment);
+        }
+    }
+
+    /**
+     * Releases the timeout and buffering state of the session about to be
+     * migrated to another I/O reactor and returns its {@link SessionHandle}.
+     */
+    @Override
+    protected Object sessionDetached(final SelectionKey key, final IOSession session) {
+        Object attachment = key.attachment();
+        if (attachment instanceof SessionHandle) {
+            SessionHandle handle = (SessionHandle) attachment;
+            this.timeoutWheel.cancel(handle);
+            this.bufferingSessions.remove(handle);
+            handle.budgetLoop = -1;
+            handle.resumedLoop = -1;
+            handle.deferredOps = 0;
+        }
+        return attachment;
+    }
+
+    /**
+     * Takes over the {@link SessionHandle} of the session migrated from
+     * another I/O reactor. Buffered input, if any, is dispatched once this
+     * I/O select loop has been completed.
+     */
+    @Override
+    protected void sessionAttached(final SelectionKey key, final IOSession session, final Object state) {
+        key.attach(state);
+        if (state instanceof SessionHandle) {
+            SessionHandle handle = (SessionHandle) state;
+            if (session.hasBufferedInput()) {
+                this.bufferingSessions.add(handle);
+                // Do not block in the next select operation
+                this.bufferedInputDeferred = true;
+            }
+            scheduleTimeout(handle);
+        }
     }
 
     @Override
@@ -272,12 +755,19 @@ public class BaseIOReactor extends AbstractIOReactor {
     }
 
     /**
-     * Processes closed I/O session. This method dispatches the event
-     * notification to the {@link IOEventDispatch#disconnected(IOSession)}
-     * method.
+     * Processes closed I/O session. This method releases the timeout and
+     * buffering state of the session and dispatches the event notification
+     * to the {@link IOEventDispatch#disconnected(IOSession)} method.
      */
     @Override
     protected void sessionClosed(final IOSession session) {
+        if (session instanceof IOSessionImpl) {
+            Object attachment = ((IOSessionImpl) session).getSelectionKey().attachment();
+            if (attachment instanceof SessionHandle) {
+                this.timeoutWheel.cancel((SessionHandle) attachment);
+                this.bufferingSessions.remove(attachment);
+            }
+        }
         try {
             this.eventDispatch.disconnected(session);
         } catch (CancelledKeyException ex) {
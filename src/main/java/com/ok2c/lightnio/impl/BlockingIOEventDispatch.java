@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ok2c.lightnio.EventMask;
+import com.ok2c.lightnio.IOEventDispatch;
+import com.ok2c.lightnio.IOSession;
+
+/**
+ * {@link IOEventDispatch} that lets {@link BlockingSessionHandler}s process
+ * sessions in blocking style. Each session is handed to a thread of its own
+ * obtained from the given {@link ThreadFactory}, while the I/O reactor keeps
+ * owning the selector. The session thread parks whenever the channel is not
+ * ready and gets unparked by the I/O reactor once the channel becomes ready.
+ * <p>
+ * The threads are expected to be cheap to create and to park. On platforms
+ * with lightweight (virtual) threads, pass a factory of such threads in order
+ * to serve many sessions without tying up an operating system thread per
+ * session. The default factory creates platform threads.
+ */
+public class BlockingIOEventDispatch implements IOEventDispatch {
+
+    private static final String SESSION_KEY = "lightnio.blocking.session";
+
+    private final BlockingSessionHandler handler;
+    private final ThreadFactory threadFactory;
+
+    public BlockingIOEventDispatch(
+            final BlockingSessionHandler handler,
+            final ThreadFactory threadFactory) {
+        super();
+        if (handler == null) {
+            throw new IllegalArgumentException("Session handler may not be null");
+        }
+        this.handler = handler;
+        this.threadFactory = threadFactory != null ? threadFactory : new SessionThreadFactory();
+    }
+
+    public BlockingIOEventDispatch(final BlockingSessionHandler handler) {
+        this(handler, null);
+    }
+
+    public void connected(final IOSession session) {
+        // No events until the handler asks for them
+        session.setEventMask(0);
+        BlockingIOSession blockingSession = new BlockingIOSession(session);
+        session.setAttribute(SESSION_KEY, blockingSession);
+        Thread thread = this.threadFactory.newThread(new SessionWorker(blockingSession));
+        if (thread == null) {
+            session.close();
+            return;
+        }
+        thread.start();
+    }
+
+    public void inputReady(final IOSession session) {
+        BlockingIOSession blockingSession = getBlockingSession(session);
+        if (blockingSession != null) {
+            session.clearEvent(EventMask.READ);
+            blockingSession.inputReady();
+        }
+    }
+
+    public void outputReady(final IOSession session) {
+        BlockingIOSession blockingSession = getBlockingSession(session);
+        if (blockingSession != null) {
+            session.clearEvent(EventMask.WRITE);
+            blockingSession.outputReady();
+        }
+    }
+
+    public void timeout(final IOSession session) {
+        // Socket timeouts are enforced by the session thread
+    }
+
+    public void disconnected(final IOSession session) {
+        BlockingIOSession blockingSession = getBlockingSession(session);
+        if (blockingSession != null) {
+            blockingSession.disconnected();
+        }
+    }
+
+    private static BlockingIOSession getBlockingSession(final IOSession session) {
+        return (BlockingIOSession) session.getAttribute(SESSION_KEY);
+    }
+
+    /**
+     * Triggered when the session handler terminates with an exception.
+     * The session is closed in any case.
+     * <p>
+     * This implementation does nothing. Super-classes can override this
+     * method in order to log the exception.
+     *
+     * @param session the blocking I/O session.
+     * @param ex the exception.
+     */
+    protected void handleException(final BlockingIOSession session, final Exception ex) {
+    }
+
+    class SessionWorker implements Runnable {
+
+        private final BlockingIOSession session;
+
+        SessionWorker(final BlockingIOSession session) {
+            super();
+            this.session = session;
+        }
+
+        public void run() {
+            try {
+                handler.handle(this.session);
+            } catch (IOException ex) {
+                handleException(this.session, ex);
+            } catch (RuntimeException ex) {
+                handleException(this.session, ex);
+            } finally {
+                this.session.close();
+            }
+        }
+
+    }
+
+    static class SessionThreadFactory implements ThreadFactory {
+
+        private static AtomicInteger COUNT = new AtomicInteger(0);
+
+        public Thread newThread(final Runnable r) {
+            return new Thread(r, "I/O session " + (COUNT.incrementAndGet()));
+        }
+
+    }
+
+}
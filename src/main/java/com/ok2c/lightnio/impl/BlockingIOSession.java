@@ -0,0 +1,225 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.locks.LockSupport;
+
+import com.ok2c.lightnio.EventMask;
+import com.ok2c.lightnio.IOSession;
+
+/**
+ * Blocking view of an {@link IOSession} handed to
+ * a {@link BlockingSessionHandler}.
+ * <p>
+ * {@link #read(ByteBuffer)} and {@link #write(ByteBuffer)} never block
+ * in the channel. If the channel is not ready, the calling thread sets
+ * the corresponding event of the session and parks until the I/O reactor
+ * that owns the session reports the channel ready, the session gets closed
+ * or the socket timeout of the session expires. The timeout is measured by
+ * the waiting thread itself, so that it can be changed by the handler at any
+ * time. Parking rather than
+ * blocking in a monitor makes this class suitable for lightweight threads
+ * that are unmounted from their carrier thread while parked.
+ * <p>
+ * One thread may read while another one writes. Concurrent reads or
+ * concurrent writes by several threads are not supported.
+ */
+public final class BlockingIOSession {
+
+    private final IOSession session;
+
+    private volatile Thread readThread;
+    private volatile Thread writeThread;
+    private volatile boolean readReady;
+    private volatile boolean writeReady;
+
+    BlockingIOSession(final IOSession session) {
+        super();
+        if (session == null) {
+            throw new IllegalArgumentException("I/O session may not be null");
+        }
+        this.session = session;
+    }
+
+    /**
+     * Returns the underlying I/O session.
+     */
+    public IOSession getSession() {
+        return this.session;
+    }
+
+    /**
+     * Reads a sequence of bytes from the session into the given buffer,
+     * waiting for input to become available if necessary.
+     *
+     * @param dst the destination buffer.
+     * @return the number of bytes read, possibly zero if the buffer has no
+     *   space remaining, or <code>-1</code> if the end of stream has been
+     *   reached.
+     * @throws SocketTimeoutException if the socket timeout of the session
+     *   expired while waiting for input.
+     * @throws IOException in case of an I/O error.
+     */
+    public int read(final ByteBuffer dst) throws IOException {
+        if (dst == null) {
+            throw new IllegalArgumentException("Buffer may not be null");
+        }
+        for (;;) {
+            int bytesRead = this.session.channel().read(dst);
+            if (bytesRead != 0 || !dst.hasRemaining()) {
+                return bytesRead;
+            }
+            await(EventMask.READ);
+        }
+    }
+
+    /**
+     * Writes the content of the given buffer to the session, waiting for
+     * the channel to accept more output if necessary. This method returns
+     * once the buffer has been written out completely.
+     *
+     * @param src the source buffer.
+     * @return the number of bytes written.
+     * @throws SocketTimeoutException if the socket timeout of the session
+     *   expired while waiting for the channel to accept output.
+     * @throws IOException in case of an I/O error.
+     */
+    public int write(final ByteBuffer src) throws IOException {
+        if (src == null) {
+            throw new IllegalArgumentException("Buffer may not be null");
+        }
+        int total = 0;
+        while (src.hasRemaining()) {
+            int bytesWritten = this.session.channel().write(src);
+            if (bytesWritten > 0) {
+                total += bytesWritten;
+            } else {
+                await(EventMask.WRITE);
+            }
+        }
+        return total;
+    }
+
+    private void await(int op) throws IOException {
+        Thread current = Thread.currentThread();
+        boolean input = op == EventMask.READ;
+        if (input) {
+            this.readReady = false;
+            this.readThread = current;
+        } else {
+            this.writeReady = false;
+            this.writeThread = current;
+        }
+        int timeout = this.session.getSocketTimeout();
+        long deadline = timeout > 0 ? System.nanoTime() + timeout * 1000000L : 0;
+        try {
+            this.session.setEvent(op);
+            for (;;) {
+                if (input ? this.readReady : this.writeReady) {
+                    return;
+                }
+                if (this.session.isClosed()) {
+                    throw new ClosedChannelException();
+                }
+                if (current.isInterrupted()) {
+                    throw new InterruptedIOException();
+                }
+                if (timeout > 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        this.session.clearEvent(op);
+                        throw new SocketTimeoutException(input ? "Read timed out" : "Write timed out");
+                    }
+                    LockSupport.parkNanos(remaining);
+                } else {
+                    LockSupport.park();
+                }
+            }
+        } finally {
+            if (input) {
+                this.readThread = null;
+            } else {
+                this.writeThread = null;
+            }
+        }
+    }
+
+    void inputReady() {
+        this.readReady = true;
+        unpark(this.readThread);
+    }
+
+    void outputReady() {
+        this.writeReady = true;
+        unpark(this.writeThread);
+    }
+
+    void disconnected() {
+        unpark(this.readThread);
+        unpark(this.writeThread);
+    }
+
+    private static void unpark(final Thread thread) {
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public SocketAddress getLocalAddress() {
+        return this.session.getLocalAddress();
+    }
+
+    public SocketAddress getRemoteAddress() {
+        return this.session.getRemoteAddress();
+    }
+
+    /**
+     * Returns the socket timeout in milliseconds applied to blocking reads
+     * and writes. <code>0</code> is interpreted as an infinite timeout.
+     */
+    public int getSocketTimeout() {
+        return this.session.getSocketTimeout();
+    }
+
+    /**
+     * Sets the socket timeout in milliseconds applied to blocking reads
+     * and writes. <code>0</code> is interpreted as an infinite timeout.
+     *
+     * @param timeout the socket timeout.
+     */
+    public void setSocketTimeout(int timeout) {
+        this.session.setSocketTimeout(timeout);
+    }
+
+    public boolean isClosed() {
+        return this.session.isClosed();
+    }
+
+    public void close() {
+        this.session.close();
+    }
+
+    @Override
+    public String toString() {
+        return this.session.toString();
+    }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.io.IOException;
+
+/**
+ * Handler of an I/O session written in blocking style. The handler is run
+ * by a thread of its own created by {@link BlockingIOEventDispatch} once
+ * the session has been established. The session is closed once the handler
+ * returns.
+ */
+public interface BlockingSessionHandler {
+
+    /**
+     * Handles the given session.
+     *
+     * @param session the blocking I/O session.
+     * @throws IOException in case of an I/O error.
+     */
+    void handle(BlockingIOSession session) throws IOException;
+
+}
@@ -0,0 +1,30 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+/**
+ * Task run by an I/O reactor thread that holds resources which must be
+ * released if the task is discarded without being run, for instance
+ * because the I/O reactor has been shut down.
+ */
+interface CancellableTask extends Runnable {
+
+    /**
+     * Releases the resources held by the task. Called instead of
+     * {@link #run()} if the task is discarded.
+     */
+    void cancel();
+
+}
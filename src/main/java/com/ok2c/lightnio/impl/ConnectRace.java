@@ -0,0 +1,129 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.SelectionKey;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * State of a session request with several candidate remote addresses
+ * whose connect attempts race against each other. Attempts are started
+ * one candidate at a time with a delay in between or as soon as
+ * the previous attempt fails. The first connection to be established wins.
+ * <p>
+ * The race is scheduled with the {@link TimingWheel} of the connecting I/O
+ * reactor to trigger the next attempt. Instances of this class are expected
+ * to be accessed by the I/O reactor thread only.
+ */
+final class ConnectRace extends TimingWheel.Entry {
+
+    private final SessionRequestImpl sessionRequest;
+    private final SocketAddress[] candidates;
+    private final long startTime;
+    private final List<Attempt> attempts;
+
+    private int next;
+    private boolean finished;
+    private IOException lastException;
+
+    ConnectRace(final SessionRequestImpl sessionRequest, final SocketAddress[] candidates, long now) {
+        super();
+        this.sessionRequest = sessionRequest;
+        this.candidates = candidates;
+        this.startTime = now;
+        this.attempts = new ArrayList<Attempt>(candidates.length);
+        this.next = 0;
+    }
+
+    SessionRequestImpl getSessionRequest() {
+        return this.sessionRequest;
+    }
+
+    long getStartTime() {
+        return this.startTime;
+    }
+
+    boolean hasNextCandidate() {
+        return !this.finished && this.next < this.candidates.length;
+    }
+
+    SocketAddress nextCandidate() {
+        return this.candidates[this.next++];
+    }
+
+    /**
+     * Returns the attempts in progress.
+     */
+    List<Attempt> getAttempts() {
+        return this.attempts;
+    }
+
+    boolean isFinished() {
+        return this.finished;
+    }
+
+    void setFinished() {
+        this.finished = true;
+    }
+
+    IOException getLastException() {
+        return this.lastException;
+    }
+
+    void setLastException(final IOException lastException) {
+        this.lastException = lastException;
+    }
+
+    /**
+     * Connect attempt to one of the candidate addresses. The attempt is
+     * the attachment of the selection key of its channel and is scheduled
+     * with the {@link TimingWheel} to track the connect timeout of
+     * the session request.
+     */
+    static class Attempt extends SessionRequestHandle {
+
+        private final ConnectRace race;
+        private final SocketAddress address;
+
+        private SelectionKey key;
+
+        Attempt(final ConnectRace race, final SocketAddress address) {
+            super(race.getSessionRequest(), race.getStartTime());
+            this.race = race;
+            this.address = address;
+        }
+
+        ConnectRace getRace() {
+            return this.race;
+        }
+
+        SocketAddress getAddress() {
+            return this.address;
+        }
+
+        SelectionKey getKey() {
+            return this.key;
+        }
+
+        void setKey(final SelectionKey key) {
+            this.key = key;
+        }
+
+    }
+
+}
@@ -15,17 +15,27 @@
 package com.ok2c.lightnio.impl;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.UnknownHostException;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.ok2c.lightnio.ConnectingIOReactor;
 import com.ok2c.lightnio.IOReactorException;
@@ -37,20 +47,89 @@ import com.ok2c.lightnio.SessionRequestCallback;
  * Default implementation of {@link ConnectingIOReactor}. This class extends
  * {@link AbstractMultiworkerIOReactor} with capability to connect to remote
  * hosts.
+ * <p>
+ * Connect timeouts of pending session requests are tracked using
+ * a {@link TimingWheel}. Pending requests are re-examined at least once per
+ * select interval, so that connect timeouts set after the request has been
+ * submitted take effect.
+ * <p>
+ * By default connections are initiated and finished by the main I/O reactor
+ * and then handed over to the worker I/O reactors. If
+ * {@link IOReactorConfig#isWorkerConnect()} is enabled, each session request
+ * is assigned to a worker I/O reactor up front, which connects the channel
+ * using its own selector and keeps managing the resultant I/O session.
+ * <p>
+ * Session requests are processed in batches of up to
+ * {@link IOReactorConfig#getConnectBatchSize()} requests per I/O select loop.
+ * Requests left over keep the next select operation from blocking.
+ * <p>
+ * Session requests can be made to unresolved remote addresses. Host names
+ * are resolved by a small pool of resolver threads using the
+ * {@link AddressResolver} set with {@link #setAddressResolver(AddressResolver)}.
+ * Resolution results are kept in a bounded cache configured by
+ * {@link IOReactorConfig#getAddressCacheSize()},
+ * {@link IOReactorConfig#getAddressCacheTtl()} and
+ * {@link IOReactorConfig#getAddressCacheNegativeTtl()}. Concurrent requests
+ * to the same host name share one resolution. Requests whose host name
+ * cannot be resolved fail with {@link UnknownHostException}; their
+ * callbacks are invoked by a resolver thread.
+ * <p>
+ * Session requests with several candidate remote addresses, made with
+ * {@link #connectAny(List, SocketAddress, Object, SessionRequestCallback)}
+ * or resulting from host names that resolve to several addresses, are
+ * connected by racing connect attempts to the candidates. Attempts are
+ * started in turn every {@link IOReactorConfig#getConnectAttemptDelay()}
+ * milliseconds or as soon as the previous attempt fails. The first
+ * connection to be established wins and the other attempts are abandoned.
+ * Resolved addresses are tried alternating between address families.
+ * Such requests are always connected by the main I/O reactor.
  */
 public class DefaultConnectingIOReactor extends AbstractMultiworkerIOReactor
         implements ConnectingIOReactor {
 
     private final Queue<SessionRequestImpl> requestQueue;
+    private final TimingWheel timeoutWheel;
+    private final TimingWheel.ExpiryCallback timeoutCallback;
+    private final boolean workerConnect;
+    private final int connectBatchSize;
+    private final long connectAttemptDelay;
+    private final int resolverThreads;
+    private final AddressCache addressCache;
+    private final Map<String, List<SessionRequestImpl>> pendingLookups;
 
-    private long lastTimeoutCheck;
+    private volatile AddressResolver addressResolver;
+    private ExecutorService resolverExecutor;
 
     public DefaultConnectingIOReactor(
             final IOReactorConfig config,
             final ThreadFactory threadFactory) throws IOReactorException {
         super(config, threadFactory);
         this.requestQueue = new ConcurrentLinkedQueue<SessionRequestImpl>();
-        this.lastTimeoutCheck = System.currentTimeMillis();
+        this.timeoutWheel = new TimingWheel(
+                Math.min(this.selectTimeout, TimingWheel.DEFAULT_TICK_DURATION),
+                TimingWheel.DEFAULT_WHEEL_SIZE,
+                this.clock.now());
+        this.timeoutCallback = new TimingWheel.ExpiryCallback() {
+
+            public void expired(final TimingWheel.Entry entry, long now) {
+                if (entry instanceof ConnectRace) {
+                    nextAttemptDue((ConnectRace) entry, now);
+                } else {
+                    requestTimedOut((SessionRequestHandle) entry, now);
+                }
+            }
+
+        };
+        this.workerConnect = config.isWorkerConnect();
+        this.connectBatchSize = config.getConnectBatchSize();
+        this.connectAttemptDelay = config.getConnectAttemptDelay();
+        this.resolverThreads = config.getResolverThreads();
+        this.addressCache = new AddressCache(
+                config.getAddressCacheSize(),
+                config.getAddressCacheTtl(),
+                config.getAddressCacheNegativeTtl());
+        this.pendingLookups = new HashMap<String, List<SessionRequestImpl>>();
+        this.addressResolver = new SystemAddressResolver();
     }
 
     public DefaultConnectingIOReactor(final IOReactorConfig config) throws IOReactorException {
@@ -63,6 +142,42 @@ public class DefaultConnectingIOReactor extends AbstractMultiworkerIOReactor
         while ((request = this.requestQueue.poll()) != null) {
             request.cancel();
         }
+        List<SessionRequestImpl> requests = new ArrayList<SessionRequestImpl>();
+        synchronized (this.pendingLookups) {
+            for (List<SessionRequestImpl> waiting: this.pendingLookups.values()) {
+                requests.addAll(waiting);
+            }
+            this.pendingLookups.clear();
+            if (this.resolverExecutor != null) {
+                this.resolverExecutor.shutdownNow();
+            }
+        }
+        for (int i = 0; i < requests.size(); i++) {
+            requests.get(i).cancel();
+        }
+    }
+
+    /**
+     * Sets the resolver used to resolve host names of unresolved remote
+     * addresses.
+     *
+     * @param addressResolver the address resolver.
+     */
+    public void setAddressResolver(final AddressResolver addressResolver) {
+        if (addressResolver == null) {
+            throw new IllegalArgumentException("Address resolver may not be null");
+        }
+        this.addressResolver = addressResolver;
+    }
+
+    @Override
+    protected boolean hasPendingRequests() {
+        return !this.requestQueue.isEmpty();
+    }
+
+    @Override
+    protected long getNextDeadline(long now) {
+        return this.timeoutWheel.nextDeadline();
     }
 
     @Override
@@ -70,22 +185,25 @@ public class DefaultConnectingIOReactor extends AbstractMultiworkerIOReactor
         processSessionRequests();
 
         if (readyCount > 0) {
-            Set<SelectionKey> selectedKeys = this.selector.selectedKeys();
-            for (Iterator<SelectionKey> it = selectedKeys.iterator(); it.hasNext(); ) {
+            SelectedKeySet selectedKeySet = getSelectedKeySet();
+            if (selectedKeySet != null) {
+                for (int i = 0; i < selectedKeySet.size(); i++) {
+                    processEvent(selectedKeySet.get(i));
+                }
+                selectedKeySet.clear();
+            } else {
+                Set<SelectionKey> selectedKeys = this.selector.selectedKeys();
+                for (Iterator<SelectionKey> it = selectedKeys.iterator(); it.hasNext(); ) {
 
-                SelectionKey key = it.next();
-                processEvent(key);
+                    SelectionKey key = it.next();
+                    processEvent(key);
 
+                }
+                selectedKeys.clear();
             }
-            selectedKeys.clear();
         }
 
-        long currentTime = System.currentTimeMillis();
-        if ((currentTime - this.lastTimeoutCheck) >= this.selectTimeout) {
-            this.lastTimeoutCheck = currentTime;
-            Set<SelectionKey> keys = this.selector.keys();
-            processTimeouts(keys);
-        }
+        this.timeoutWheel.expire(this.clock.now(), this.timeoutCallback);
     }
 
     private void processEvent(final SelectionKey key) {
@@ -94,9 +212,14 @@ public class DefaultConnectingIOReactor extends AbstractMultiworkerIOReactor
             if (key.isConnectable()) {
 
                 SocketChannel channel = (SocketChannel) key.channel();
+                if (key.attachment() instanceof ConnectRace.Attempt) {
+                    attemptConnectable(key, (ConnectRace.Attempt) key.attachment());
+                    return;
+                }
                 // Get request handle
                 SessionRequestHandle requestHandle = (SessionRequestHandle) key.attachment();
                 SessionRequestImpl sessionRequest = requestHandle.getSessionRequest();
+                this.timeoutWheel.cancel(requestHandle);
 
                 // Finish connection process
                 try {
@@ -129,23 +252,175 @@ public class DefaultConnectingIOReactor extends AbstractMultiworkerIOReactor
         }
     }
 
-    private void processTimeouts(final Set<SelectionKey> keys) {
-        long now = System.currentTimeMillis();
-        for (Iterator<SelectionKey> it = keys.iterator(); it.hasNext();) {
-            SelectionKey key = it.next();
-            Object attachment = key.attachment();
-
-            if (attachment instanceof SessionRequestHandle) {
-                SessionRequestHandle handle = (SessionRequestHandle) key.attachment();
-                SessionRequestImpl sessionRequest = handle.getSessionRequest();
-                int timeout = sessionRequest.getConnectTimeout();
-                if (timeout > 0) {
-                    if (handle.getRequestTime() + timeout < now) {
-                        sessionRequest.timeout();
-                    }
+    private void attemptConnectable(final SelectionKey key, final ConnectRace.Attempt attempt) {
+        ConnectRace race = attempt.getRace();
+        SessionRequestImpl sessionRequest = race.getSessionRequest();
+        SocketChannel channel = (SocketChannel) key.channel();
+        try {
+            if (!channel.finishConnect()) {
+                return;
+            }
+        } catch (IOException ex) {
+            this.timeoutWheel.cancel(attempt);
+            race.getAttempts().remove(attempt);
+            key.cancel();
+            closeChannel(channel);
+            race.setLastException(ex);
+            if (sessionRequest.isCompleted()) {
+                abortRace(race);
+            } else if (race.hasNextCandidate()) {
+                // Do not wait for the attempt delay to elapse
+                startAttempt(race);
+                scheduleNextAttempt(race, this.clock.now());
+            } else if (race.getAttempts().isEmpty()) {
+                raceLost(race);
+            }
+            return;
+        }
+        this.timeoutWheel.cancel(attempt);
+        race.getAttempts().remove(attempt);
+        key.cancel();
+        raceWon(race, channel, attempt.getAddress());
+    }
+
+    private void startRace(final SessionRequestImpl request, final SocketAddress[] candidates) {
+        ConnectRace race = new ConnectRace(request, candidates, this.clock.now());
+        startAttempt(race);
+        scheduleNextAttempt(race, race.getStartTime());
+    }
+
+    /**
+     * Starts a connect attempt to the next candidate address. Candidates
+     * whose attempts fail right away are skipped.
+     */
+    private void startAttempt(final ConnectRace race) {
+        SessionRequestImpl request = race.getSessionRequest();
+        while (race.hasNextCandidate()) {
+            SocketAddress address = race.nextCandidate();
+            SocketChannel socketChannel = null;
+            try {
+                validateAddress(address);
+                socketChannel = SocketChannel.open();
+                socketChannel.configureBlocking(false);
+                if (request.getLocalAddress() != null) {
+                    socketChannel.socket().bind(request.getLocalAddress());
+                }
+                if (socketChannel.connect(address)) {
+                    raceWon(race, socketChannel, address);
+                    return;
+                }
+                ConnectRace.Attempt attempt = new ConnectRace.Attempt(race, address);
+                SelectionKey key = socketChannel.register(this.selector, SelectionKey.OP_CONNECT, attempt);
+                attempt.setKey(key);
+                request.setKey(key);
+                race.getAttempts().add(attempt);
+                scheduleTimeout(attempt, this.clock.now());
+                return;
+            } catch (IOException ex) {
+                if (socketChannel != null) {
+                    closeChannel(socketChannel);
+                }
+                race.setLastException(ex);
+            }
+        }
+        if (race.getAttempts().isEmpty()) {
+            raceLost(race);
+        }
+    }
+
+    private void scheduleNextAttempt(final ConnectRace race, long now) {
+        if (race.hasNextCandidate()) {
+            this.timeoutWheel.schedule(race, now + this.connectAttemptDelay);
+        }
+    }
+
+    private void nextAttemptDue(final ConnectRace race, long now) {
+        if (race.getSessionRequest().isCompleted()) {
+            abortRace(race);
+            return;
+        }
+        startAttempt(race);
+        scheduleNextAttempt(race, now);
+    }
+
+    private void raceWon(final ConnectRace race, final SocketChannel channel, final SocketAddress address) {
+        SessionRequestImpl sessionRequest = race.getSessionRequest();
+        abortRace(race);
+        if (sessionRequest.isCompleted()) {
+            closeChannel(channel);
+            return;
+        }
+        sessionRequest.setConnectAddress(address);
+        try {
+            try {
+                prepareSocket(channel.socket());
+            } catch (IOException ex) {
+                if (this.exceptionHandler == null
+                        || !this.exceptionHandler.handle(ex)) {
+                    throw new IOReactorException(
+                            "Failure initalizing socket", ex);
                 }
             }
+            ChannelEntry entry = new ChannelEntry(channel, sessionRequest);
+            addChannel(entry);
+        } catch (IOException ex) {
+            sessionRequest.failed(ex);
+        }
+    }
+
+    private void raceLost(final ConnectRace race) {
+        race.setFinished();
+        this.timeoutWheel.cancel(race);
+        IOException ex = race.getLastException();
+        if (ex == null) {
+            ex = new IOException("No candidate address to connect to");
+        }
+        race.getSessionRequest().failed(ex);
+    }
+
+    /**
+     * Finishes the race abandoning all attempts in progress.
+     */
+    private void abortRace(final ConnectRace race) {
+        race.setFinished();
+        this.timeoutWheel.cancel(race);
+        List<ConnectRace.Attempt> attempts = race.getAttempts();
+        for (int i = 0; i < attempts.size(); i++) {
+            ConnectRace.Attempt attempt = attempts.get(i);
+            this.timeoutWheel.cancel(attempt);
+            SelectionKey key = attempt.getKey();
+            key.cancel();
+            closeChannel((SocketChannel) key.channel());
+        }
+        attempts.clear();
+    }
 
+    private void scheduleTimeout(final SessionRequestHandle handle, long now) {
+        SessionRequestImpl sessionRequest = handle.getSessionRequest();
+        long deadline = now + this.selectTimeout;
+        int timeout = sessionRequest.getConnectTimeout();
+        if (timeout > 0) {
+            deadline = Math.min(deadline, handle.getRequestTime() + timeout);
+        }
+        this.timeoutWheel.schedule(handle, deadline);
+    }
+
+    private void requestTimedOut(final SessionRequestHandle handle, long now) {
+        SessionRequestImpl sessionRequest = handle.getSessionRequest();
+        if (sessionRequest.isCompleted()) {
+            if (handle instanceof ConnectRace.Attempt) {
+                abortRace(((ConnectRace.Attempt) handle).getRace());
+            }
+            return;
+        }
+        int timeout = sessionRequest.getConnectTimeout();
+        if (timeout > 0 && handle.getRequestTime() + timeout <= now) {
+            sessionRequest.timeout();
+            if (handle instanceof ConnectRace.Attempt) {
+                abortRace(((ConnectRace.Attempt) handle).getRace());
+            }
+        } else {
+            scheduleTimeout(handle, now);
         }
     }
 
@@ -162,7 +437,51 @@ public class DefaultConnectingIOReactor extends AbstractMultiworkerIOReactor
                 remoteAddress, localAddress, attachment, callback);
 
         this.requestQueue.add(sessionRequest);
-        this.selector.wakeup();
+        wakeup();
+
+        return sessionRequest;
+    }
+
+    public List<SessionRequest> connect(
+            final Collection<? extends SocketAddress> remoteAddresses,
+            final SocketAddress localAddress,
+            final Object attachment,
+            final SessionRequestCallback callback) {
+        if (remoteAddresses == null) {
+            throw new IllegalArgumentException("Remote addresses may not be null");
+        }
+        if (this.status.compareTo(IOReactorStatus.ACTIVE) > 0) {
+            throw new IllegalStateException("I/O reactor has been shut down");
+        }
+        List<SessionRequestImpl> sessionRequests = new ArrayList<SessionRequestImpl>(
+                remoteAddresses.size());
+        for (SocketAddress remoteAddress: remoteAddresses) {
+            sessionRequests.add(new SessionRequestImpl(
+                    remoteAddress, localAddress, attachment, callback));
+        }
+        if (!sessionRequests.isEmpty()) {
+            this.requestQueue.addAll(sessionRequests);
+            wakeup();
+        }
+        return new ArrayList<SessionRequest>(sessionRequests);
+    }
+
+    public SessionRequest connectAny(
+            final List<? extends SocketAddress> candidates,
+            final SocketAddress localAddress,
+            final Object attachment,
+            final SessionRequestCallback callback) {
+        if (candidates == null || candidates.isEmpty()) {
+            throw new IllegalArgumentException("Candidate addresses may not be null or empty");
+        }
+        if (this.status.compareTo(IOReactorStatus.ACTIVE) > 0) {
+            throw new IllegalStateException("I/O reactor has been shut down");
+        }
+        SessionRequestImpl sessionRequest = new SessionRequestImpl(
+                candidates, localAddress, attachment, callback);
+
+        this.requestQueue.add(sessionRequest);
+        wakeup();
 
         return sessionRequest;
     }
@@ -179,12 +498,153 @@ public class DefaultConnectingIOReactor extends AbstractMultiworkerIOReactor
         }
     }
 
+    private static void closeChannel(final SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    /**
+     * Resolves the host name of the remote address of the given request
+     * from the address cache or else submits it for resolution by a resolver
+     * thread, which puts the request back into the request queue once
+     * the host name has been resolved.
+     *
+     * @return <code>true</code> if the host name has been resolved,
+     *   <code>false</code> if pending resolution or failed.
+     */
+    private boolean resolveAddress(final SessionRequestImpl request) {
+        InetSocketAddress remoteAddress = (InetSocketAddress) request.getRemoteAddress();
+        String host = remoteAddress.getHostName();
+        InetAddress[] addresses;
+        try {
+            addresses = this.addressCache.get(host, System.currentTimeMillis());
+        } catch (UnknownHostException ex) {
+            request.failed(ex);
+            return false;
+        }
+        if (addresses != null) {
+            setResolvedAddresses(request, addresses);
+            return true;
+        }
+        synchronized (this.pendingLookups) {
+            List<SessionRequestImpl> waiting = this.pendingLookups.get(host);
+            if (waiting != null) {
+                waiting.add(request);
+                return false;
+            }
+            waiting = new ArrayList<SessionRequestImpl>();
+            waiting.add(request);
+            this.pendingLookups.put(host, waiting);
+            if (this.resolverExecutor == null) {
+                this.resolverExecutor = Executors.newFixedThreadPool(
+                        this.resolverThreads, new ResolverThreadFactory());
+            }
+            try {
+                this.resolverExecutor.execute(new LookupTask(host));
+            } catch (RejectedExecutionException ex) {
+                // Shutting down
+                this.pendingLookups.remove(host);
+                request.cancel();
+            }
+        }
+        return false;
+    }
+
+    private void lookupCompleted(final String host, final InetAddress[] addresses,
+            final UnknownHostException failure) {
+        long now = System.currentTimeMillis();
+        if (addresses != null) {
+            this.addressCache.put(host, addresses, now);
+        } else {
+            this.addressCache.putFailure(host, now);
+        }
+        List<SessionRequestImpl> waiting;
+        synchronized (this.pendingLookups) {
+            waiting = this.pendingLookups.remove(host);
+        }
+        if (waiting == null) {
+            return;
+        }
+        for (int i = 0; i < waiting.size(); i++) {
+            SessionRequestImpl request = waiting.get(i);
+            if (addresses != null) {
+                setResolvedAddresses(request, addresses);
+            } else {
+                request.failed(failure);
+            }
+        }
+        if (addresses != null) {
+            this.requestQueue.addAll(waiting);
+            wakeup();
+        }
+    }
+
+    /**
+     * Sets the connect address of the given request to the first of
+     * the resolved addresses. If there are several, they all become
+     * candidates, alternating between address families.
+     */
+    private static void setResolvedAddresses(final SessionRequestImpl request,
+            final InetAddress[] addresses) {
+        int port = ((InetSocketAddress) request.getRemoteAddress()).getPort();
+        request.setConnectAddress(new InetSocketAddress(addresses[0], port));
+        if (addresses.length > 1) {
+            List<InetAddress> sameFamily = new ArrayList<InetAddress>(addresses.length);
+            List<InetAddress> otherFamily = new ArrayList<InetAddress>(addresses.length);
+            Class<?> family = addresses[0].getClass();
+            for (int i = 0; i < addresses.length; i++) {
+                if (addresses[i].getClass() == family) {
+                    sameFamily.add(addresses[i]);
+                } else {
+                    otherFamily.add(addresses[i]);
+                }
+            }
+            SocketAddress[] candidates = new SocketAddress[addresses.length];
+            int n = 0;
+            for (int i = 0; n < candidates.length; i++) {
+                if (i < sameFamily.size()) {
+                    candidates[n++] = new InetSocketAddress(sameFamily.get(i), port);
+                }
+                if (i < otherFamily.size()) {
+                    candidates[n++] = new InetSocketAddress(otherFamily.get(i), port);
+                }
+            }
+            request.setCandidates(candidates);
+        }
+    }
+
+    private static boolean isUnresolved(final SocketAddress address) {
+        return address instanceof InetSocketAddress
+            && ((InetSocketAddress) address).isUnresolved();
+    }
+
     private void processSessionRequests() throws IOReactorException {
-        SessionRequestImpl request;
-        while ((request = this.requestQueue.poll()) != null) {
+        for (int i = 0; i < this.connectBatchSize; i++) {
+            SessionRequestImpl request = this.requestQueue.poll();
+            if (request == null) {
+                break;
+            }
             if (request.isCompleted()) {
                 continue;
             }
+            if (request.getCandidates() == null
+                    && isUnresolved(request.getConnectAddress())
+                    && !resolveAddress(request)) {
+                continue;
+            }
+            SocketAddress[] candidates = request.getCandidates();
+            if (candidates != null && candidates.length > 1) {
+                try {
+                    validateAddress(request.getLocalAddress());
+                } catch (IOException ex) {
+                    request.failed(ex);
+                    continue;
+                }
+                startRace(request, candidates);
+                continue;
+            }
             SocketChannel socketChannel;
             try {
                 socketChannel = SocketChannel.open();
@@ -194,28 +654,39 @@ public class DefaultConnectingIOReactor extends AbstractMultiworkerIOReactor
             }
             try {
                 validateAddress(request.getLocalAddress());
-                validateAddress(request.getRemoteAddress());
-
+                validateAddress(request.getConnectAddress());
+            } catch (IOException ex) {
+                closeChannel(socketChannel);
+                request.failed(ex);
+                continue;
+            }
+            if (this.workerConnect
+                    && connectChannel(new ChannelEntry(socketChannel, request))) {
+                continue;
+            }
+            try {
                 if (request.getLocalAddress() != null) {
                     socketChannel.socket().bind(request.getLocalAddress());
                 }
-                boolean connected = socketChannel.connect(request.getRemoteAddress());
+                boolean connected = socketChannel.connect(request.getConnectAddress());
                 if (connected) {
                     prepareSocket(socketChannel.socket());
                     ChannelEntry entry = new ChannelEntry(socketChannel, request);
                     addChannel(entry);
-                    return;
+                    continue;
                 }
             } catch (IOException ex) {
+                closeChannel(socketChannel);
                 request.failed(ex);
-                return;
+                continue;
             }
 
-            SessionRequestHandle requestHandle = new SessionRequestHandle(request);
+            SessionRequestHandle requestHandle = new SessionRequestHandle(request, this.clock.now());
             SelectionKey key;
             try {
                 key = socketChannel.register(this.selector, SelectionKey.OP_CONNECT, requestHandle);
                 request.setKey(key);
+                scheduleTimeout(requestHandle, requestHandle.getRequestTime());
             } catch (CancelledKeyException ex) {
                 // Ignore cancelled keys
             } catch (IOException ex) {
@@ -225,4 +696,45 @@ public class DefaultConnectingIOReactor extends AbstractMultiworkerIOReactor
         }
     }
 
+    class LookupTask implements Runnable {
+
+        private final String host;
+
+        LookupTask(final String host) {
+            super();
+            this.host = host;
+        }
+
+        public void run() {
+            InetAddress[] addresses = null;
+            UnknownHostException failure = null;
+            try {
+                addresses = addressResolver.resolve(this.host);
+                if (addresses == null || addresses.length == 0) {
+                    throw new UnknownHostException(this.host);
+                }
+            } catch (UnknownHostException ex) {
+                addresses = null;
+                failure = ex;
+            } catch (RuntimeException ex) {
+                addresses = null;
+                failure = new UnknownHostException(this.host + ": " + ex.getMessage());
+            }
+            lookupCompleted(this.host, addresses, failure);
+        }
+
+    }
+
+    static class ResolverThreadFactory implements ThreadFactory {
+
+        private static AtomicInteger COUNT = new AtomicInteger(0);
+
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(r, "I/O resolver " + (COUNT.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
 }
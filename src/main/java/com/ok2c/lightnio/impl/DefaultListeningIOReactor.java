@@ -15,17 +15,21 @@
 package com.ok2c.lightnio.impl;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.Socket;
 import java.net.SocketAddress;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
-import java.nio.channels.SocketChannel;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 
 import com.ok2c.lightnio.IOReactorException;
@@ -37,13 +41,39 @@ import com.ok2c.lightnio.ListeningIOReactor;
  * Default implementation of {@link ListeningIOReactor}. This class extends
  * {@link AbstractMultiworkerIOReactor} with capability to listen for incoming
  * connections.
+ * <p>
+ * By default connections are accepted by the main I/O reactor and handed
+ * over to the worker I/O reactors. If {@link IOReactorConfig#isReusePortAccept()}
+ * is enabled and the platform supports <code>SO_REUSEPORT</code>, each worker
+ * I/O reactor binds a server socket of its own to the endpoint address and
+ * accepts connections directly, leaving it to the kernel to spread incoming
+ * connections across the workers.
+ * <p>
+ * Upon each accept readiness event up to {@link IOReactorConfig#getAcceptBatchSize()}
+ * pending connections are accepted. Accept statistics are available through
+ * {@link #getAcceptMetrics()}.
+ * <p>
+ * If any of the overload high-water marks of {@link IOReactorConfig} is set,
+ * the I/O reactor periodically checks the loop latency, the number of
+ * channels pending registration and the number of sessions of the worker
+ * I/O reactors. Accepting new connections is suspended once any of them
+ * reaches its high-water mark and resumed once all of them fall to their
+ * low-water marks. Connections arriving in the meantime remain in the accept
+ * queue or, if {@link IOReactorConfig#isOverloadShedding()} is enabled,
+ * are accepted and closed immediately.
  */
 public class DefaultListeningIOReactor extends AbstractMultiworkerIOReactor
         implements ListeningIOReactor {
 
     private final Queue<ListenerEndpointImpl> requestQueue;
     private final Set<ListenerEndpointImpl> endpoints;
-    private final Set<SocketAddress> pausedEndpoints;
+    private final Map<SocketAddress, Integer> pausedEndpoints;
+
+    private final boolean reusePortAccept;
+    private final int backlogSize;
+    private final AcceptMetrics acceptMetrics;
+    private final AcceptThrottle acceptThrottle;
+    private final Acceptor acceptor;
 
     private volatile boolean paused;
 
@@ -53,7 +83,39 @@ public class DefaultListeningIOReactor extends AbstractMultiworkerIOReactor
         super(config, threadFactory);
         this.requestQueue = new ConcurrentLinkedQueue<ListenerEndpointImpl>();
         this.endpoints = Collections.synchronizedSet(new HashSet<ListenerEndpointImpl>());
-        this.pausedEndpoints = new HashSet<SocketAddress>();
+        this.pausedEndpoints = new HashMap<SocketAddress, Integer>();
+        this.reusePortAccept = config.isReusePortAccept();
+        this.backlogSize = config.getBacklogSize();
+        this.acceptMetrics = new AcceptMetrics();
+        this.acceptor = new Acceptor(config.getAcceptBatchSize(), new AcceptCallback() {
+
+            public void prepareSocket(final Socket socket) throws IOException {
+                DefaultListeningIOReactor.this.prepareSocket(socket);
+            }
+
+            public void channelAccepted(final ChannelEntry entry) {
+                addChannel(entry);
+            }
+
+        });
+        if (AcceptThrottle.isEnabled(config)) {
+            this.acceptThrottle = new AcceptThrottle(config, this.acceptMetrics);
+            final long interval = config.getOverloadCheckInterval();
+            schedule(new Runnable() {
+
+                public void run() {
+                    checkOverload();
+                    try {
+                        schedule(this, interval);
+                    } catch (RejectedExecutionException ex) {
+                        // Shutting down
+                    }
+                }
+
+            }, interval);
+        } else {
+            this.acceptThrottle = null;
+        }
     }
 
     public DefaultListeningIOReactor(final IOReactorConfig config) throws IOReactorException {
@@ -68,6 +130,20 @@ public class DefaultListeningIOReactor extends AbstractMultiworkerIOReactor
         }
     }
 
+    /**
+     * The listening I/O reactor has no time based processing of its own
+     * and blocks until an I/O event occurs or it gets woken up.
+     */
+    @Override
+    protected long getNextDeadline(long now) {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    protected boolean hasPendingRequests() {
+        return !this.paused && !this.requestQueue.isEmpty();
+    }
+
     @Override
     protected void processEvents(int readyCount) throws IOReactorException {
         if (!this.paused) {
@@ -75,14 +151,22 @@ public class DefaultListeningIOReactor extends AbstractMultiworkerIOReactor
         }
 
         if (readyCount > 0) {
-            Set<SelectionKey> selectedKeys = this.selector.selectedKeys();
-            for (Iterator<SelectionKey> it = selectedKeys.iterator(); it.hasNext(); ) {
+            SelectedKeySet selectedKeySet = getSelectedKeySet();
+            if (selectedKeySet != null) {
+                for (int i = 0; i < selectedKeySet.size(); i++) {
+                    processEvent(selectedKeySet.get(i));
+                }
+                selectedKeySet.clear();
+            } else {
+                Set<SelectionKey> selectedKeys = this.selector.selectedKeys();
+                for (Iterator<SelectionKey> it = selectedKeys.iterator(); it.hasNext(); ) {
 
-                SelectionKey key = it.next();
-                processEvent(key);
+                    SelectionKey key = it.next();
+                    processEvent(key);
 
+                }
+                selectedKeys.clear();
             }
-            selectedKeys.clear();
         }
     }
 
@@ -91,32 +175,9 @@ public class DefaultListeningIOReactor extends AbstractMultiworkerIOReactor
         try {
 
             if (key.isAcceptable()) {
-
-                ServerSocketChannel serverChannel = (ServerSocketChannel) key.channel();
-                SocketChannel socketChannel = null;
-                try {
-                    socketChannel = serverChannel.accept();
-                } catch (IOException ex) {
-                    if (this.exceptionHandler == null ||
-                            !this.exceptionHandler.handle(ex)) {
-                        throw new IOReactorException(
-                                "Failure accepting connection", ex);
-                    }
-                }
-
-                if (socketChannel != null) {
-                    try {
-                        prepareSocket(socketChannel.socket());
-                    } catch (IOException ex) {
-                        if (this.exceptionHandler == null ||
-                                !this.exceptionHandler.handle(ex)) {
-                            throw new IOReactorException(
-                                    "Failure initalizing socket", ex);
-                        }
-                    }
-                    ChannelEntry entry = new ChannelEntry(socketChannel);
-                    addChannel(entry);
-                }
+                boolean overloaded = this.acceptThrottle != null && checkOverload();
+                this.acceptor.accept(key, this.acceptThrottle, overloaded,
+                        this.acceptMetrics, this.exceptionHandler);
             }
 
         } catch (CancelledKeyException ex) {
@@ -126,9 +187,32 @@ public class DefaultListeningIOReactor extends AbstractMultiworkerIOReactor
         }
     }
 
-    private ListenerEndpointImpl createEndpoint(final SocketAddress address) {
+    /**
+     * Updates the overload state from the current load of the worker
+     * I/O reactors.
+     *
+     * @return <code>true</code> if overloaded, <code>false</code> otherwise.
+     */
+    private boolean checkOverload() {
+        long loopLatency = 0;
+        int pendingChannels = 0;
+        int sessions = 0;
+        for (int i = 0; i < getWorkerCount(); i++) {
+            BaseIOReactor worker = getWorker(i);
+            if (worker == null) {
+                return this.acceptThrottle.isOverloaded();
+            }
+            loopLatency = Math.max(loopLatency, worker.getLoopLatency());
+            pendingChannels += worker.getPendingChannelCount();
+            sessions += worker.getSessionCount();
+        }
+        return this.acceptThrottle.update(loopLatency, pendingChannels, sessions);
+    }
+
+    private ListenerEndpointImpl createEndpoint(final SocketAddress address, int backlog) {
         ListenerEndpointImpl endpoint = new ListenerEndpointImpl(
                 address,
+                backlog,
                 new ListenerEndpointClosedCallback() {
 
                     public void endpointClosed(final ListenerEndpoint endpoint) {
@@ -136,22 +220,52 @@ public class DefaultListeningIOReactor extends AbstractMultiworkerIOReactor
                     }
 
                 });
+        endpoint.acceptMetrics = this.acceptMetrics;
+        endpoint.acceptThrottle = this.acceptThrottle;
         return endpoint;
     }
 
     public ListenerEndpoint listen(final SocketAddress address) {
+        return listen(address, this.backlogSize);
+    }
+
+    /**
+     * Opens a new listener endpoint with the given backlog.
+     *
+     * @param address the socket address to listen on.
+     * @param backlog maximum length of the queue of incoming connections
+     *   pending acceptance or <code>0</code> to use the system default.
+     * @return listener endpoint.
+     */
+    public ListenerEndpoint listen(final SocketAddress address, int backlog) {
         if (this.status.compareTo(IOReactorStatus.ACTIVE) > 0) {
             throw new IllegalStateException("I/O reactor has been shut down");
         }
-        ListenerEndpointImpl request = createEndpoint(address);
+        ListenerEndpointImpl request = createEndpoint(address, backlog);
         this.requestQueue.add(request);
-        this.selector.wakeup();
+        wakeup();
         return request;
     }
 
     private void processSessionRequests() throws IOReactorException {
         ListenerEndpointImpl request;
         while ((request = this.requestQueue.poll()) != null) {
+            if (this.reusePortAccept) {
+                try {
+                    if (bindWorkerChannels(request)) {
+                        continue;
+                    }
+                } catch (IOException ex) {
+                    request.failed(ex);
+                    if (this.exceptionHandler == null || !this.exceptionHandler.handle(ex)) {
+                        throw new IOReactorException("Failure binding socket to address "
+                                + request.getAddress(), ex);
+                    } else {
+                        return;
+                    }
+                }
+                // SO_REUSEPORT not supported. Accept on the main selector
+            }
             SocketAddress address = request.getAddress();
             ServerSocketChannel serverChannel;
             try {
@@ -161,7 +275,7 @@ public class DefaultListeningIOReactor extends AbstractMultiworkerIOReactor
                 throw new IOReactorException("Failure opening server socket", ex);
             }
             try {
-                serverChannel.socket().bind(address);
+                serverChannel.socket().bind(address, request.getBacklog());
             } catch (IOException ex) {
                 request.failed(ex);
                 if (this.exceptionHandler == null || !this.exceptionHandler.handle(ex)) {
@@ -185,6 +299,91 @@ public class DefaultListeningIOReactor extends AbstractMultiworkerIOReactor
         }
     }
 
+    /**
+     * Binds one server channel per worker I/O reactor to the address of
+     * the endpoint using <code>SO_REUSEPORT</code> and registers each channel
+     * with the selector of its worker.
+     *
+     * @return <code>true</code> if the endpoint has been bound,
+     *   <code>false</code> if <code>SO_REUSEPORT</code> is not supported.
+     */
+    private boolean bindWorkerChannels(final ListenerEndpointImpl request)
+            throws IOException, IOReactorException {
+        int workerCount = getWorkerCount();
+        ServerSocketChannel[] serverChannels = new ServerSocketChannel[workerCount];
+        boolean success = false;
+        try {
+            SocketAddress address = request.getAddress();
+            for (int i = 0; i < workerCount; i++) {
+                ServerSocketChannel serverChannel = ServerSocketChannel.open();
+                serverChannels[i] = serverChannel;
+                serverChannel.configureBlocking(false);
+                if (!setReusePort(serverChannel)) {
+                    return false;
+                }
+                serverChannel.socket().bind(address, request.getBacklog());
+                // Ephemeral port gets assigned by the first bind
+                address = serverChannel.socket().getLocalSocketAddress();
+            }
+            for (int i = 0; i < workerCount; i++) {
+                request.addWorkerChannel(serverChannels[i]);
+                registerWorkerChannel(i, serverChannels[i], SelectionKey.OP_ACCEPT, request);
+            }
+            success = true;
+            this.endpoints.add(request);
+            request.completed(address);
+            return true;
+        } finally {
+            if (!success) {
+                for (int i = 0; i < serverChannels.length; i++) {
+                    if (serverChannels[i] != null) {
+                        try {
+                            serverChannels[i].close();
+                        } catch (IOException ignore) {
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Enables <code>SO_REUSEPORT</code> on the given channel. The option is
+     * set reflectively as it is not available on all supported platforms.
+     *
+     * @return <code>true</code> if the option has been set,
+     *   <code>false</code> if it is not supported.
+     */
+    private static boolean setReusePort(final ServerSocketChannel channel) {
+        try {
+            Class<?> optionsClass = Class.forName("java.net.StandardSocketOptions");
+            Object option = optionsClass.getField("SO_REUSEPORT").get(null);
+            Class<?> optionClass = Class.forName("java.net.SocketOption");
+            Method method = ServerSocketChannel.class.getMethod("setOption", optionClass, Object.class);
+            method.invoke(channel, option, Boolean.TRUE);
+            return true;
+        } catch (Exception ex) {
+            // Not supported by this platform
+            return false;
+        }
+    }
+
+    /**
+     * Returns statistics of connections accepted by this I/O reactor,
+     * including those accepted directly by the worker I/O reactors.
+     */
+    public AcceptMetrics getAcceptMetrics() {
+        return this.acceptMetrics;
+    }
+
+    /**
+     * Determines whether accepting new connections is currently throttled
+     * due to overload of the worker I/O reactors.
+     */
+    public boolean isOverloaded() {
+        return this.acceptThrottle != null && this.acceptThrottle.isOverloaded();
+    }
+
     public Set<ListenerEndpoint> getEndpoints() {
         Set<ListenerEndpoint> set = new HashSet<ListenerEndpoint>();
         synchronized (this.endpoints) {
@@ -209,10 +408,11 @@ public class DefaultListeningIOReactor extends AbstractMultiworkerIOReactor
         synchronized (this.endpoints) {
             Iterator<ListenerEndpointImpl> it = this.endpoints.iterator();
             while (it.hasNext()) {
-                ListenerEndpoint endpoint = it.next();
+                ListenerEndpointImpl endpoint = it.next();
                 if (!endpoint.isClosed()) {
                     endpoint.close();
-                    this.pausedEndpoints.add(endpoint.getAddress());
+                    this.pausedEndpoints.put(endpoint.getAddress(),
+                            Integer.valueOf(endpoint.getBacklog()));
                 }
             }
             this.endpoints.clear();
@@ -224,12 +424,13 @@ public class DefaultListeningIOReactor extends AbstractMultiworkerIOReactor
             return;
         }
         this.paused = false;
-        for (SocketAddress address: this.pausedEndpoints) {
-            ListenerEndpointImpl request = createEndpoint(address);
+        for (Map.Entry<SocketAddress, Integer> entry: this.pausedEndpoints.entrySet()) {
+            ListenerEndpointImpl request = createEndpoint(
+                    entry.getKey(), entry.getValue().intValue());
             this.requestQueue.add(request);
         }
         this.pausedEndpoints.clear();
-        this.selector.wakeup();
+        wakeup();
     }
 
 }
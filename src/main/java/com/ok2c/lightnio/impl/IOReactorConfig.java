@@ -22,6 +22,34 @@ public final class IOReactorConfig {
     private long gracePeriod;
     private boolean tcpNoDelay;
     private int soLinger;
+    private boolean monotonicClock;
+    private boolean optimizedSelectedKeys;
+    private int loopEventBudget;
+    private int sessionEventBudget;
+    private long loopByteBudget;
+    private long sessionByteBudget;
+    private int taskQueueCapacity;
+    private int taskBudget;
+    private long balanceInterval;
+    private int balanceThreshold;
+    private boolean reusePortAccept;
+    private int acceptBatchSize;
+    private int backlogSize;
+    private long loopLatencyLowWatermark;
+    private long loopLatencyHighWatermark;
+    private int pendingChannelLowWatermark;
+    private int pendingChannelHighWatermark;
+    private int sessionLowWatermark;
+    private int sessionHighWatermark;
+    private long overloadCheckInterval;
+    private boolean overloadShedding;
+    private boolean workerConnect;
+    private int connectBatchSize;
+    private long connectAttemptDelay;
+    private int resolverThreads;
+    private int addressCacheSize;
+    private long addressCacheTtl;
+    private long addressCacheNegativeTtl;
 
     public IOReactorConfig() {
         super();
@@ -31,6 +59,34 @@ public final class IOReactorConfig {
         this.gracePeriod = 5000;
         this.tcpNoDelay = false;
         this.soLinger = 0;
+        this.monotonicClock = false;
+        this.optimizedSelectedKeys = false;
+        this.loopEventBudget = 0;
+        this.sessionEventBudget = 0;
+        this.loopByteBudget = 0;
+        this.sessionByteBudget = 0;
+        this.taskQueueCapacity = 65536;
+        this.taskBudget = 1024;
+        this.balanceInterval = 0;
+        this.balanceThreshold = 32;
+        this.reusePortAccept = false;
+        this.acceptBatchSize = 16;
+        this.backlogSize = 0;
+        this.loopLatencyLowWatermark = 0;
+        this.loopLatencyHighWatermark = 0;
+        this.pendingChannelLowWatermark = 0;
+        this.pendingChannelHighWatermark = 0;
+        this.sessionLowWatermark = 0;
+        this.sessionHighWatermark = 0;
+        this.overloadCheckInterval = 100;
+        this.overloadShedding = false;
+        this.workerConnect = false;
+        this.connectBatchSize = 256;
+        this.connectAttemptDelay = 250;
+        this.resolverThreads = 2;
+        this.addressCacheSize = 1024;
+        this.addressCacheTtl = 60000;
+        this.addressCacheNegativeTtl = 5000;
     }
 
     public int getWorkerCount() {
@@ -90,4 +146,288 @@ public final class IOReactorConfig {
         this.soLinger = soLinger;
     }
 
+    public boolean isMonotonicClock() {
+        return this.monotonicClock;
+    }
+
+    public void setMonotonicClock(boolean monotonicClock) {
+        this.monotonicClock = monotonicClock;
+    }
+
+    public boolean isOptimizedSelectedKeys() {
+        return this.optimizedSelectedKeys;
+    }
+
+    public void setOptimizedSelectedKeys(boolean optimizedSelectedKeys) {
+        this.optimizedSelectedKeys = optimizedSelectedKeys;
+    }
+
+    public int getLoopEventBudget() {
+        return this.loopEventBudget;
+    }
+
+    public void setLoopEventBudget(int loopEventBudget) {
+        if (loopEventBudget < 0) {
+            throw new IllegalArgumentException("Loop event budget may not be negative");
+        }
+        this.loopEventBudget = loopEventBudget;
+    }
+
+    public int getSessionEventBudget() {
+        return this.sessionEventBudget;
+    }
+
+    public void setSessionEventBudget(int sessionEventBudget) {
+        if (sessionEventBudget < 0) {
+            throw new IllegalArgumentException("Session event budget may not be negative");
+        }
+        this.sessionEventBudget = sessionEventBudget;
+    }
+
+    public long getLoopByteBudget() {
+        return this.loopByteBudget;
+    }
+
+    public void setLoopByteBudget(long loopByteBudget) {
+        if (loopByteBudget < 0) {
+            throw new IllegalArgumentException("Loop byte budget may not be negative");
+        }
+        this.loopByteBudget = loopByteBudget;
+    }
+
+    public long getSessionByteBudget() {
+        return this.sessionByteBudget;
+    }
+
+    public void setSessionByteBudget(long sessionByteBudget) {
+        if (sessionByteBudget < 0) {
+            throw new IllegalArgumentException("Session byte budget may not be negative");
+        }
+        this.sessionByteBudget = sessionByteBudget;
+    }
+
+    public int getTaskQueueCapacity() {
+        return this.taskQueueCapacity;
+    }
+
+    public void setTaskQueueCapacity(int taskQueueCapacity) {
+        if (taskQueueCapacity <= 0) {
+            throw new IllegalArgumentException("Task queue capacity may not be negative or zero");
+        }
+        this.taskQueueCapacity = taskQueueCapacity;
+    }
+
+    public int getTaskBudget() {
+        return this.taskBudget;
+    }
+
+    public void setTaskBudget(int taskBudget) {
+        if (taskBudget < 0) {
+            throw new IllegalArgumentException("Task budget may not be negative");
+        }
+        this.taskBudget = taskBudget;
+    }
+
+    public long getBalanceInterval() {
+        return this.balanceInterval;
+    }
+
+    public void setBalanceInterval(long balanceInterval) {
+        if (balanceInterval < 0) {
+            throw new IllegalArgumentException("Balance interval may not be negative");
+        }
+        this.balanceInterval = balanceInterval;
+    }
+
+    public int getBalanceThreshold() {
+        return this.balanceThreshold;
+    }
+
+    public void setBalanceThreshold(int balanceThreshold) {
+        if (balanceThreshold <= 0) {
+            throw new IllegalArgumentException("Balance threshold may not be negative or zero");
+        }
+        this.balanceThreshold = balanceThreshold;
+    }
+
+    public boolean isReusePortAccept() {
+        return this.reusePortAccept;
+    }
+
+    public void setReusePortAccept(boolean reusePortAccept) {
+        this.reusePortAccept = reusePortAccept;
+    }
+
+    public int getAcceptBatchSize() {
+        return this.acceptBatchSize;
+    }
+
+    public void setAcceptBatchSize(int acceptBatchSize) {
+        if (acceptBatchSize <= 0) {
+            throw new IllegalArgumentException("Accept batch size may not be negative or zero");
+        }
+        this.acceptBatchSize = acceptBatchSize;
+    }
+
+    public int getBacklogSize() {
+        return this.backlogSize;
+    }
+
+    public void setBacklogSize(int backlogSize) {
+        if (backlogSize < 0) {
+            throw new IllegalArgumentException("Backlog size may not be negative");
+        }
+        this.backlogSize = backlogSize;
+    }
+
+    public long getLoopLatencyLowWatermark() {
+        return this.loopLatencyLowWatermark;
+    }
+
+    public long getLoopLatencyHighWatermark() {
+        return this.loopLatencyHighWatermark;
+    }
+
+    public void setLoopLatencyWatermarks(long lowWatermark, long highWatermark) {
+        if (lowWatermark < 0 || highWatermark < 0) {
+            throw new IllegalArgumentException("Loop latency watermark may not be negative");
+        }
+        if (lowWatermark > highWatermark) {
+            throw new IllegalArgumentException("Low watermark may not exceed high watermark");
+        }
+        this.loopLatencyLowWatermark = lowWatermark;
+        this.loopLatencyHighWatermark = highWatermark;
+    }
+
+    public int getPendingChannelLowWatermark() {
+        return this.pendingChannelLowWatermark;
+    }
+
+    public int getPendingChannelHighWatermark() {
+        return this.pendingChannelHighWatermark;
+    }
+
+    public void setPendingChannelWatermarks(int lowWatermark, int highWatermark) {
+        if (lowWatermark < 0 || highWatermark < 0) {
+            throw new IllegalArgumentException("Pending channel watermark may not be negative");
+        }
+        if (lowWatermark > highWatermark) {
+            throw new IllegalArgumentException("Low watermark may not exceed high watermark");
+        }
+        this.pendingChannelLowWatermark = lowWatermark;
+        this.pendingChannelHighWatermark = highWatermark;
+    }
+
+    public int getSessionLowWatermark() {
+        return this.sessionLowWatermark;
+    }
+
+    public int getSessionHighWatermark() {
+        return this.sessionHighWatermark;
+    }
+
+    public void setSessionWatermarks(int lowWatermark, int highWatermark) {
+        if (lowWatermark < 0 || highWatermark < 0) {
+            throw new IllegalArgumentException("Session watermark may not be negative");
+        }
+        if (lowWatermark > highWatermark) {
+            throw new IllegalArgumentException("Low watermark may not exceed high watermark");
+        }
+        this.sessionLowWatermark = lowWatermark;
+        this.sessionHighWatermark = highWatermark;
+    }
+
+    public long getOverloadCheckInterval() {
+        return this.overloadCheckInterval;
+    }
+
+    public void setOverloadCheckInterval(long overloadCheckInterval) {
+        if (overloadCheckInterval <= 0) {
+            throw new IllegalArgumentException("Overload check interval may not be negative or zero");
+        }
+        this.overloadCheckInterval = overloadCheckInterval;
+    }
+
+    public boolean isOverloadShedding() {
+        return this.overloadShedding;
+    }
+
+    public void setOverloadShedding(boolean overloadShedding) {
+        this.overloadShedding = overloadShedding;
+    }
+
+    public boolean isWorkerConnect() {
+        return this.workerConnect;
+    }
+
+    public void setWorkerConnect(boolean workerConnect) {
+        this.workerConnect = workerConnect;
+    }
+
+    public int getConnectBatchSize() {
+        return this.connectBatchSize;
+    }
+
+    public void setConnectBatchSize(int connectBatchSize) {
+        if (connectBatchSize <= 0) {
+            throw new IllegalArgumentException("Connect batch size may not be negative or zero");
+        }
+        this.connectBatchSize = connectBatchSize;
+    }
+
+    public int getResolverThreads() {
+        return this.resolverThreads;
+    }
+
+    public void setResolverThreads(int resolverThreads) {
+        if (resolverThreads <= 0) {
+            throw new IllegalArgumentException("Resolver thread count may not be negative or zero");
+        }
+        this.resolverThreads = resolverThreads;
+    }
+
+    public int getAddressCacheSize() {
+        return this.addressCacheSize;
+    }
+
+    public void setAddressCacheSize(int addressCacheSize) {
+        if (addressCacheSize <= 0) {
+            throw new IllegalArgumentException("Address cache size may not be negative or zero");
+        }
+        this.addressCacheSize = addressCacheSize;
+    }
+
+    public long getAddressCacheTtl() {
+        return this.addressCacheTtl;
+    }
+
+    public void setAddressCacheTtl(long addressCacheTtl) {
+        if (addressCacheTtl < 0) {
+            throw new IllegalArgumentException("Address cache TTL may not be negative");
+        }
+        this.addressCacheTtl = addressCacheTtl;
+    }
+
+    public long getAddressCacheNegativeTtl() {
+        return this.addressCacheNegativeTtl;
+    }
+
+    public void setAddressCacheNegativeTtl(long addressCacheNegativeTtl) {
+        if (addressCacheNegativeTtl < 0) {
+            throw new IllegalArgumentException("Address cache negative TTL may not be negative");
+        }
+        this.addressCacheNegativeTtl = addressCacheNegativeTtl;
+    }
+
+    public long getConnectAttemptDelay() {
+        return this.connectAttemptDelay;
+    }
+
+    public void setConnectAttemptDelay(long connectAttemptDelay) {
+        if (connectAttemptDelay < 0) {
+            throw new IllegalArgumentException("Connect attempt delay may not be negative");
+        }
+        this.connectAttemptDelay = connectAttemptDelay;
+    }
+
 }
@@ -16,52 +16,107 @@ package com.ok2c.lightnio.impl;
 
 import java.io.IOException;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
+import java.nio.channels.CancelledKeyException;
 import java.nio.channels.Channel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import com.ok2c.lightnio.IOSession;
 import com.ok2c.lightnio.SessionBufferStatus;
 
 /**
  * Default implementation of {@link IOSession}.
+ * <p>
+ * Event mask changes made by the I/O reactor thread that owns the session are
+ * applied to the selection key directly. Changes made by other threads update
+ * the event mask using compare-and-set and are either applied to the selection
+ * key or queued for the I/O reactor if interest ops queueing is enabled. None
+ * of the methods of this class acquire the session's monitor.
+ * <p>
+ * If the I/O reactor enforces byte budgets, {@link #channel()} returns
+ * a wrapper around the socket channel that counts the bytes transferred.
  */
 public class IOSessionImpl implements IOSession {
 
+    private static final AtomicIntegerFieldUpdater<IOSessionImpl> STATUS =
+        AtomicIntegerFieldUpdater.newUpdater(IOSessionImpl.class, "status");
+    private static final AtomicIntegerFieldUpdater<IOSessionImpl> EVENT_MASK =
+        AtomicIntegerFieldUpdater.newUpdater(IOSessionImpl.class, "currentEventMask");
+    private static final AtomicIntegerFieldUpdater<IOSessionImpl> SUSPENDED_EVENTS =
+        AtomicIntegerFieldUpdater.newUpdater(IOSessionImpl.class, "suspendedEvents");
+    private static final AtomicIntegerFieldUpdater<IOSessionImpl> INTEREST_OPS_QUEUED =
+        AtomicIntegerFieldUpdater.newUpdater(IOSessionImpl.class, "interestOpsQueued");
+    private static final AtomicIntegerFieldUpdater<IOSessionImpl> TIMEOUT_QUEUED =
+        AtomicIntegerFieldUpdater.newUpdater(IOSessionImpl.class, "timeoutQueued");
+
     private volatile int status;
 
-    private final SelectionKey key;
     private final ByteChannel channel;
+    private final ByteCountingChannel byteCounter;
     private final Map<String, Object> attributes;
-    private final InterestOpsCallback interestOpsCallback;
-    private final SessionClosedCallback sessionClosedCallback;
+
+    // Re-bound when the session migrates to another I/O reactor.
+    // The key is always written last and read first
+    private volatile SelectionKey key;
+    private volatile InterestOpsCallback interestOpsCallback;
+    private volatile SessionClosedCallback sessionClosedCallback;
+    private volatile SocketTimeoutCallback socketTimeoutCallback;
+    private volatile SelectorWakeup selectorWakeup;
 
     private SessionBufferStatus bufferStatus;
-    private int socketTimeout;
+    private volatile int socketTimeout;
     private volatile int currentEventMask;
+    private volatile int suspendedEvents;
+    private volatile int interestOpsQueued;
+    private volatile int timeoutQueued;
 
-    public IOSessionImpl(
+    // Link to the next session in the interest ops queue
+    IOSessionImpl nextQueued;
+
+    IOSessionImpl(
             final SelectionKey key,
             final InterestOpsCallback interestOpsCallback,
-            final SessionClosedCallback sessionClosedCallback) {
+            final SessionClosedCallback sessionClosedCallback,
+            final SocketTimeoutCallback socketTimeoutCallback,
+            final SelectorWakeup selectorWakeup,
+            boolean countBytes) {
         super();
         if (key == null) {
             throw new IllegalArgumentException("Selection key may not be null");
         }
         this.key = key;
-        this.channel = (ByteChannel) this.key.channel();
+        if (countBytes) {
+            this.byteCounter = new ByteCountingChannel((ByteChannel) this.key.channel());
+            this.channel = this.byteCounter;
+        } else {
+            this.byteCounter = null;
+            this.channel = (ByteChannel) this.key.channel();
+        }
         this.interestOpsCallback = interestOpsCallback;
         this.sessionClosedCallback = sessionClosedCallback;
+        this.socketTimeoutCallback = socketTimeoutCallback;
+        this.selectorWakeup = selectorWakeup;
         this.attributes = Collections.synchronizedMap(new HashMap<String, Object>());
-        this.currentEventMask = 0;
+        this.currentEventMask = key.interestOps();
         this.socketTimeout = 0;
         this.status = ACTIVE;
     }
 
+    public IOSessionImpl(
+            final SelectionKey key,
+            final InterestOpsCallback interestOpsCallback,
+            final SessionClosedCallback sessionClosedCallback) {
+        this(key, interestOpsCallback, sessionClosedCallback, null, null, false);
+    }
+
     public IOSessionImpl(
             final SelectionKey key,
             final SessionClosedCallback sessionClosedCallback) {
@@ -72,8 +127,19 @@ public class IOSessionImpl implements IOSession {
         return this.channel;
     }
 
+    /**
+     * Returns the total number of bytes read from and written to the channel
+     * of this session, or <code>-1</code> if byte counting is not enabled.
+     * The count is maintained without synchronization and is therefore
+     * only approximate if the channel is written to by several threads.
+     */
+    long getBytesTransferred() {
+        ByteCountingChannel byteCounter = this.byteCounter;
+        return byteCounter != null ? byteCounter.count : -1;
+    }
+
     public SocketAddress getLocalAddress() {
-        Channel channel = this.channel;
+        Channel channel = this.key.channel();
         if (channel instanceof SocketChannel) {
             return ((SocketChannel)channel).socket().getLocalSocketAddress();
         } else {
@@ -82,7 +148,7 @@ public class IOSessionImpl implements IOSession {
     }
 
     public SocketAddress getRemoteAddress() {
-        Channel channel = this.channel;
+        Channel channel = this.key.channel();
         if (channel instanceof SocketChannel) {
             return ((SocketChannel)channel).socket().getRemoteSocketAddress();
         } else {
@@ -90,94 +156,258 @@ public class IOSessionImpl implements IOSession {
         }
     }
 
-    public synchronized int getEventMask() {
-        return this.interestOpsCallback != null ? this.currentEventMask : this.key.interestOps();
+    public int getEventMask() {
+        return this.currentEventMask;
     }
 
-    public synchronized void setEventMask(int ops) {
+    public void setEventMask(int ops) {
         if (this.status == CLOSED) {
             return;
         }
-        if (this.interestOpsCallback != null) {
-            // update the current event mask
-            this.currentEventMask = ops;
-
-            // local variable
-            InterestOpEntry entry = new InterestOpEntry(this.key, this.currentEventMask);
+        // update the current event mask
+        this.currentEventMask = ops;
+        updateInterestOps();
+    }
 
-            // add this operation to the interestOps() queue
-            this.interestOpsCallback.addInterestOps(entry);
-        } else {
-            this.key.interestOps(ops);
+    public void setEvent(int op) {
+        if (this.status == CLOSED) {
+            return;
         }
-        this.key.selector().wakeup();
+        // update the current event mask
+        int ops;
+        do {
+            ops = this.currentEventMask;
+        } while (!EVENT_MASK.compareAndSet(this, ops, ops | op));
+        updateInterestOps();
     }
 
-    public synchronized void setEvent(int op) {
+    public void clearEvent(int op) {
         if (this.status == CLOSED) {
             return;
         }
-        if (this.interestOpsCallback != null) {
-            // update the current event mask
-            this.currentEventMask |= op;
-
-            // local variable
-            InterestOpEntry entry = new InterestOpEntry(this.key, this.currentEventMask);
+        // update the current event mask
+        int ops;
+        do {
+            ops = this.currentEventMask;
+        } while (!EVENT_MASK.compareAndSet(this, ops, ops & ~op));
+        updateInterestOps();
+    }
 
-            // add this operation to the interestOps() queue
-            this.interestOpsCallback.addInterestOps(entry);
-        } else {
-            int ops = this.key.interestOps();
-            this.key.interestOps(ops | op);
+    /**
+     * Temporarily stops the selection key from reacting to the given events
+     * without changing the event mask of this session. The handler remains
+     * free to change the event mask while the events are suspended. This
+     * method can be called by any thread.
+     *
+     * @param ops the events to suspend.
+     */
+    void suspendEvents(int ops) {
+        if (this.status == CLOSED) {
+            return;
+        }
+        int suspended;
+        do {
+            suspended = this.suspendedEvents;
+        } while (!SUSPENDED_EVENTS.compareAndSet(this, suspended, suspended | ops));
+        if ((this.currentEventMask & ops & ~suspended) != 0) {
+            updateInterestOps();
         }
-        this.key.selector().wakeup();
     }
 
-    public synchronized void clearEvent(int op) {
+    /**
+     * Lets the selection key react to the given events again, provided
+     * they are set in the event mask of this session. This method can be
+     * called by any thread.
+     *
+     * @param ops the events to resume.
+     */
+    void resumeEvents(int ops) {
         if (this.status == CLOSED) {
             return;
         }
-        if (this.interestOpsCallback != null) {
-            // update the current event mask
-            this.currentEventMask &= ~op;
+        int suspended;
+        do {
+            suspended = this.suspendedEvents;
+        } while (!SUSPENDED_EVENTS.compareAndSet(this, suspended, suspended & ~ops));
+        if ((this.currentEventMask & ops & suspended) != 0) {
+            updateInterestOps();
+        }
+    }
 
-            // local variable
-            InterestOpEntry entry = new InterestOpEntry(this.key, this.currentEventMask);
+    /**
+     * Returns the event mask of this session less the suspended events.
+     */
+    int getInterestOps() {
+        return effectiveOps();
+    }
+
+    private int effectiveOps() {
+        return this.currentEventMask & ~this.suspendedEvents;
+    }
 
-            // add this operation to the interestOps() queue
-            this.interestOpsCallback.addInterestOps(entry);
+    private boolean isReactorThread() {
+        SelectorWakeup selectorWakeup = this.selectorWakeup;
+        return selectorWakeup != null && selectorWakeup.isReactorThread();
+    }
+
+    private void updateInterestOps() {
+        SelectionKey key = this.key;
+        InterestOpsCallback interestOpsCallback = this.interestOpsCallback;
+        if (interestOpsCallback != null && !isReactorThread()) {
+            // queue the session unless already queued
+            if (queueInterestOps(interestOpsCallback)) {
+                wakeup();
+            }
+            return;
+        }
+        // Apply the event mask directly. Keep applying until the mask
+        // no longer changes, so that the most recent mask wins when
+        // several threads update the selection key concurrently
+        int ops;
+        do {
+            ops = effectiveOps();
+            try {
+                key.interestOps(ops);
+            } catch (CancelledKeyException ex) {
+                // Closed or migrating concurrently
+                return;
+            }
+        } while (ops != effectiveOps());
+        if (!isReactorThread()) {
+            wakeup();
+        }
+    }
+
+    private boolean queueInterestOps(final InterestOpsCallback interestOpsCallback) {
+        if (INTEREST_OPS_QUEUED.compareAndSet(this, 0, 1)) {
+            interestOpsCallback.addInterestOps(this);
+            return true;
         } else {
-            int ops = this.key.interestOps();
-            this.key.interestOps(ops & ~op);
+            // The most recent event mask will be applied
+            // when the queued session gets processed
+            return false;
+        }
+    }
+
+    /**
+     * Applies the current event mask to the selection key of this session
+     * and marks the session as no longer queued. Invoked by the I/O reactor
+     * thread only. If the session has migrated to another I/O reactor in
+     * the meantime, that I/O reactor is woken up.
+     */
+    void applyInterestOps() {
+        this.interestOpsQueued = 0;
+        // The mask must be read after the session has been unmarked
+        int ops = effectiveOps();
+        try {
+            this.key.interestOps(ops);
+        } catch (CancelledKeyException ex) {
+            // Closed concurrently
+            return;
+        }
+        if (!isReactorThread()) {
+            wakeup();
         }
-        this.key.selector().wakeup();
     }
 
-    public synchronized int getSocketTimeout() {
+    /**
+     * Binds this session to the selection key of another I/O reactor
+     * the session has been migrated to and re-applies the current event
+     * mask. Invoked by the I/O reactor thread of the new selection key.
+     * The previous selection key is expected to have been cancelled.
+     */
+    void rebind(
+            final SelectionKey key,
+            final InterestOpsCallback interestOpsCallback,
+            final SessionClosedCallback sessionClosedCallback,
+            final SocketTimeoutCallback socketTimeoutCallback,
+            final SelectorWakeup selectorWakeup) {
+        if (key == null) {
+            throw new IllegalArgumentException("Selection key may not be null");
+        }
+        this.interestOpsCallback = interestOpsCallback;
+        this.sessionClosedCallback = sessionClosedCallback;
+        this.socketTimeoutCallback = socketTimeoutCallback;
+        this.selectorWakeup = selectorWakeup;
+        this.key = key;
+        // Event mask updates that went to the cancelled key get applied
+        // here. Updates made after this point see the new key
+        int ops;
+        do {
+            ops = effectiveOps();
+            try {
+                key.interestOps(ops);
+            } catch (CancelledKeyException ex) {
+                // Closed concurrently
+                return;
+            }
+        } while (ops != effectiveOps());
+    }
+
+    /**
+     * Returns the selection key the session is currently bound to.
+     */
+    SelectionKey getSelectionKey() {
+        return this.key;
+    }
+
+    public int getSocketTimeout() {
         return this.socketTimeout;
     }
 
-    public synchronized void setSocketTimeout(int timeout) {
+    /**
+     * Sets the socket timeout. The I/O reactor is notified of the change,
+     * so that the timeout takes effect even if the session stays idle.
+     * This method can be called by any thread.
+     */
+    public void setSocketTimeout(int timeout) {
+        if (this.socketTimeout == timeout) {
+            return;
+        }
         this.socketTimeout = timeout;
+        SocketTimeoutCallback callback = this.socketTimeoutCallback;
+        if (callback != null && TIMEOUT_QUEUED.compareAndSet(this, 0, 1)) {
+            callback.socketTimeoutChanged(this);
+        }
     }
 
-    public synchronized void close() {
-        if (this.status == CLOSED) {
+    /**
+     * Clears the pending socket timeout change notification. Called by
+     * the I/O reactor thread before the timeout gets re-armed.
+     */
+    void clearTimeoutQueued() {
+        this.timeoutQueued = 0;
+    }
+
+    public void close() {
+        if (!STATUS.compareAndSet(this, ACTIVE, CLOSED)) {
             return;
         }
-        this.status = CLOSED;
-        this.key.cancel();
+        SelectionKey key = this.key;
+        key.cancel();
         try {
-            this.key.channel().close();
+            key.channel().close();
         } catch (IOException ex) {
             // Munching exceptions is not nice
             // but in this case it is justified
         }
-        if (this.sessionClosedCallback != null) {
-            this.sessionClosedCallback.sessionClosed(this);
+        SessionClosedCallback sessionClosedCallback = this.sessionClosedCallback;
+        if (sessionClosedCallback != null) {
+            sessionClosedCallback.sessionClosed(this);
         }
-        if (this.key.selector().isOpen()) {
-            this.key.selector().wakeup();
+        if (key.selector().isOpen()) {
+            wakeup();
+        }
+    }
+
+    private void wakeup() {
+        SelectionKey key = this.key;
+        SelectorWakeup selectorWakeup = this.selectorWakeup;
+        if (selectorWakeup != null) {
+            // Skip redundant wakeups
+            selectorWakeup.wakeup();
+        } else {
+            key.selector().wakeup();
         }
     }
 
@@ -239,15 +469,15 @@ public class IOSessionImpl implements IOSession {
     }
 
     @Override
-    public synchronized String toString() {
+    public String toString() {
+        SelectionKey key = this.key;
         StringBuffer buffer = new StringBuffer();
         buffer.append("[");
-        if (this.key.isValid()) {
+        if (key.isValid()) {
             buffer.append("interested ops: ");
-            formatOps(buffer, this.interestOpsCallback != null ?
-                    this.currentEventMask : this.key.interestOps());
+            formatOps(buffer, this.currentEventMask);
             buffer.append("; ready ops: ");
-            formatOps(buffer, this.key.readyOps());
+            formatOps(buffer, key.readyOps());
         } else {
             buffer.append("invalid");
         }
@@ -255,4 +485,94 @@ public class IOSessionImpl implements IOSession {
         return buffer.toString();
     }
 
+    static class ByteCountingChannel
+            implements ByteChannel, ScatteringByteChannel, GatheringByteChannel {
+
+        private final ByteChannel channel;
+
+        long count;
+
+        ByteCountingChannel(final ByteChannel channel) {
+            super();
+            this.channel = channel;
+        }
+
+        public int read(final ByteBuffer dst) throws IOException {
+            int bytesRead = this.channel.read(dst);
+            if (bytesRead > 0) {
+                this.count += bytesRead;
+            }
+            return bytesRead;
+        }
+
+        public int write(final ByteBuffer src) throws IOException {
+            int bytesWritten = this.channel.write(src);
+            if (bytesWritten > 0) {
+                this.count += bytesWritten;
+            }
+            return bytesWritten;
+        }
+
+        public long read(
+                final ByteBuffer[] dsts, int offset, int length) throws IOException {
+            long bytesRead;
+            if (this.channel instanceof ScatteringByteChannel) {
+                bytesRead = ((ScatteringByteChannel) this.channel).read(dsts, offset, length);
+            } else {
+                bytesRead = 0;
+                for (int i = offset; i < offset + length; i++) {
+                    int n = this.channel.read(dsts[i]);
+                    if (n < 0) {
+                        return bytesRead > 0 ? bytesRead : -1;
+                    }
+                    bytesRead += n;
+                    if (dsts[i].hasRemaining()) {
+                        break;
+                    }
+                }
+            }
+            if (bytesRead > 0) {
+                this.count += bytesRead;
+            }
+            return bytesRead;
+        }
+
+        public long read(final ByteBuffer[] dsts) throws IOException {
+            return read(dsts, 0, dsts.length);
+        }
+
+        public long write(
+                final ByteBuffer[] srcs, int offset, int length) throws IOException {
+            long bytesWritten;
+            if (this.channel instanceof GatheringByteChannel) {
+                bytesWritten = ((GatheringByteChannel) this.channel).write(srcs, offset, length);
+            } else {
+                bytesWritten = 0;
+                for (int i = offset; i < offset + length; i++) {
+                    bytesWritten += this.channel.write(srcs[i]);
+                    if (srcs[i].hasRemaining()) {
+                        break;
+                    }
+                }
+            }
+            if (bytesWritten > 0) {
+                this.count += bytesWritten;
+            }
+            return bytesWritten;
+        }
+
+        public long write(final ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        public boolean isOpen() {
+            return this.channel.isOpen();
+        }
+
+        public void close() throws IOException {
+            this.channel.close();
+        }
+
+    }
+
 }
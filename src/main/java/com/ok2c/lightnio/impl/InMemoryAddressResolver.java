@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link AddressResolver} implementation that resolves host names from
+ * a table of host entries kept in memory, much like a local hosts file.
+ * Useful as a stand-in for the name service in tests. Host names are
+ * case insensitive.
+ */
+public class InMemoryAddressResolver implements AddressResolver {
+
+    private final Map<String, InetAddress[]> hosts;
+
+    public InMemoryAddressResolver() {
+        super();
+        this.hosts = new ConcurrentHashMap<String, InetAddress[]>();
+    }
+
+    /**
+     * Adds a host entry replacing the existing entry for the same host name,
+     * if any.
+     *
+     * @param host the host name.
+     * @param addresses the addresses of the host.
+     */
+    public void add(final String host, final InetAddress... addresses) {
+        if (host == null) {
+            throw new IllegalArgumentException("Host may not be null");
+        }
+        if (addresses == null || addresses.length == 0) {
+            throw new IllegalArgumentException("Addresses may not be null or empty");
+        }
+        InetAddress[] copy = new InetAddress[addresses.length];
+        System.arraycopy(addresses, 0, copy, 0, addresses.length);
+        this.hosts.put(host.toLowerCase(), copy);
+    }
+
+    /**
+     * Removes the host entry for the given host name.
+     *
+     * @param host the host name.
+     */
+    public void remove(final String host) {
+        if (host == null) {
+            throw new IllegalArgumentException("Host may not be null");
+        }
+        this.hosts.remove(host.toLowerCase());
+    }
+
+    public InetAddress[] resolve(final String host) throws UnknownHostException {
+        InetAddress[] addresses = this.hosts.get(host.toLowerCase());
+        if (addresses == null) {
+            throw new UnknownHostException(host);
+        }
+        InetAddress[] copy = new InetAddress[addresses.length];
+        System.arraycopy(addresses, 0, copy, 0, addresses.length);
+        return copy;
+    }
+
+}
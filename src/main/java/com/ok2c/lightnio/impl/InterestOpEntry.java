@@ -1,55 +0,0 @@
-/*
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *   http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing,
- * software distributed under the License is distributed on an
- * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
- * KIND, either express or implied.  See the License for the
- * specific language governing permissions and limitations
- * under the License.
- */
-package com.ok2c.lightnio.impl;
-
-import java.nio.channels.SelectionKey;
-
-/**
- * Helper class, representing an entry on an {@link java.nio.channels.SelectionKey#interestOps(int)
- * interestOps(int)} queue.
- */
-class InterestOpEntry {
-
-    private final SelectionKey key;
-    private final int eventMask;
-
-    public InterestOpEntry(final SelectionKey key, int eventMask) {
-        super();
-        if (key == null) {
-            throw new IllegalArgumentException("Selection key may not be null");
-        }
-        this.key = key;
-        this.eventMask = eventMask;
-    }
-
-    public SelectionKey getSelectionKey() {
-        return this.key;
-    }
-
-    public int getEventMask() {
-        return this.eventMask;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-        return this.key.equals(obj);
-    }
-
-    @Override
-    public int hashCode() {
-        return this.key.hashCode();
-    }
-
-}
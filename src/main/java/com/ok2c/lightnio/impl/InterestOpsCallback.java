@@ -17,9 +17,11 @@ package com.ok2c.lightnio.impl;
 /**
  * Callback interface used internally by I/O session implementations to delegate execution
  * of a {@link java.nio.channels.SelectionKey#interestOps(int)} operation to the I/O reactor.
+ * The session is expected to call back only once until its pending event mask has been
+ * applied.
  */
 interface InterestOpsCallback {
 
-    void addInterestOps(InterestOpEntry entry);
+    void addInterestOps(IOSessionImpl session);
 
 }
@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+/**
+ * {@link WorkerSelector} implementation that assigns new channels to
+ * the worker I/O reactor whose I/O select loop has recently been taking
+ * the least time to process I/O events. Ties are broken in favor of
+ * the worker with the least number of sessions.
+ */
+public class LeastLatencyWorkerSelector implements WorkerSelector {
+
+    public LeastLatencyWorkerSelector() {
+        super();
+    }
+
+    public int select(final ChannelEntry entry, final BaseIOReactor[] workers) {
+        int selected = 0;
+        long minLatency = Long.MAX_VALUE;
+        int minCount = Integer.MAX_VALUE;
+        for (int i = 0; i < workers.length; i++) {
+            BaseIOReactor worker = workers[i];
+            long latency = worker.getLoopLatency();
+            int count = worker.getSessionCount() + worker.getPendingChannelCount();
+            if (latency < minLatency || (latency == minLatency && count < minCount)) {
+                minLatency = latency;
+                minCount = count;
+                selected = i;
+            }
+        }
+        return selected;
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+/**
+ * {@link WorkerSelector} implementation that assigns new channels to
+ * the worker I/O reactor with the least number of active sessions, counting
+ * the channels still pending registration. Ties are broken in favor of
+ * the worker that comes first.
+ */
+public class LeastSessionsWorkerSelector implements WorkerSelector {
+
+    public LeastSessionsWorkerSelector() {
+        super();
+    }
+
+    public int select(final ChannelEntry entry, final BaseIOReactor[] workers) {
+        int selected = 0;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < workers.length; i++) {
+            BaseIOReactor worker = workers[i];
+            int count = worker.getSessionCount() + worker.getPendingChannelCount();
+            if (count < min) {
+                min = count;
+                selected = i;
+            }
+        }
+        return selected;
+    }
+
+}
@@ -18,6 +18,8 @@ import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.channels.Channel;
 import java.nio.channels.SelectionKey;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.ok2c.lightnio.ListenerEndpoint;
 
@@ -32,23 +34,48 @@ public class ListenerEndpointImpl implements ListenerEndpoint {
     private volatile SocketAddress address;
     private volatile IOException exception;
 
+    private final int backlog;
     private final ListenerEndpointClosedCallback callback;
+    private final List<Channel> workerChannels;
+
+    volatile AcceptMetrics acceptMetrics;
+    volatile AcceptThrottle acceptThrottle;
 
     public ListenerEndpointImpl(
             final SocketAddress address,
+            int backlog,
             final ListenerEndpointClosedCallback callback) {
         super();
         if (address == null) {
             throw new IllegalArgumentException("Address may not be null");
         }
+        if (backlog < 0) {
+            throw new IllegalArgumentException("Backlog may not be negative");
+        }
         this.address = address;
+        this.backlog = backlog;
         this.callback = callback;
+        this.workerChannels = new CopyOnWriteArrayList<Channel>();
+    }
+
+    public ListenerEndpointImpl(
+            final SocketAddress address,
+            final ListenerEndpointClosedCallback callback) {
+        this(address, 0, callback);
     }
 
     public SocketAddress getAddress() {
         return this.address;
     }
 
+    /**
+     * Returns the maximum length of the queue of incoming connections
+     * pending acceptance or <code>0</code> if the system default is used.
+     */
+    public int getBacklog() {
+        return this.backlog;
+    }
+
     public boolean isCompleted() {
         return this.completed;
     }
@@ -111,6 +138,17 @@ public class ListenerEndpointImpl implements ListenerEndpoint {
         this.key = key;
     }
 
+    /**
+     * Adds a server channel accepting connections on behalf of this endpoint
+     * in one of the worker I/O reactors. The channel is closed along with
+     * the endpoint.
+     *
+     * @param channel the server channel.
+     */
+    protected void addWorkerChannel(final Channel channel) {
+        this.workerChannels.add(channel);
+    }
+
     public boolean isClosed() {
         return this.closed || (this.key != null && !this.key.isValid());
     }
@@ -130,6 +168,11 @@ public class ListenerEndpointImpl implements ListenerEndpoint {
                 } catch (IOException ignore) {}
             }
         }
+        for (Channel channel: this.workerChannels) {
+            try {
+                channel.close();
+            } catch (IOException ignore) {}
+        }
         if (this.callback != null) {
             this.callback.endpointClosed(this);
         }
@@ -0,0 +1,202 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.ok2c.lightnio.EventMask;
+import com.ok2c.lightnio.IOEventDispatch;
+import com.ok2c.lightnio.IOSession;
+
+/**
+ * {@link IOEventDispatch} decorator that runs the
+ * {@link IOEventDispatch#inputReady(IOSession)},
+ * {@link IOEventDispatch#outputReady(IOSession)},
+ * {@link IOEventDispatch#timeout(IOSession)} and
+ * {@link IOEventDispatch#disconnected(IOSession)} callbacks of the decorated
+ * dispatch on the given {@link Executor} instead of the I/O reactor thread,
+ * so that a slow handler does not hold up other sessions of the same I/O
+ * reactor. {@link IOEventDispatch#connected(IOSession)} is still run by the
+ * I/O reactor thread.
+ * <p>
+ * The callbacks of a session are run strictly in the order of the events,
+ * one at a time, through a serial queue of the session. While input or
+ * output events of a session are queued, the I/O reactor stops reacting to
+ * the readiness of its channel for the same kind of events until the queue
+ * of the session has been drained. Thus a slow handler makes the session
+ * stop reading rather than let its queue grow. The event mask of the session
+ * is left intact, so handlers can change it as usual. Events can only be
+ * suspended for sessions created by the I/O reactors of this package.
+ */
+public class OffloadingIOEventDispatch implements IOEventDispatch {
+
+    private static final String QUEUE_KEY = "lightnio.offload.queue";
+
+    private final IOEventDispatch dispatch;
+    private final Executor executor;
+
+    public OffloadingIOEventDispatch(final IOEventDispatch dispatch, final Executor executor) {
+        super();
+        if (dispatch == null) {
+            throw new IllegalArgumentException("Event dispatch may not be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor may not be null");
+        }
+        this.dispatch = dispatch;
+        this.executor = executor;
+    }
+
+    public void connected(final IOSession session) {
+        session.setAttribute(QUEUE_KEY, new SerialQueue(session));
+        this.dispatch.connected(session);
+    }
+
+    public void inputReady(final IOSession session) {
+        submit(session, EventMask.READ, new Runnable() {
+
+            public void run() {
+                dispatch.inputReady(session);
+            }
+
+        });
+    }
+
+    public void outputReady(final IOSession session) {
+        submit(session, EventMask.WRITE, new Runnable() {
+
+            public void run() {
+                dispatch.outputReady(session);
+            }
+
+        });
+    }
+
+    public void timeout(final IOSession session) {
+        submit(session, 0, new Runnable() {
+
+            public void run() {
+                dispatch.timeout(session);
+            }
+
+        });
+    }
+
+    public void disconnected(final IOSession session) {
+        submit(session, 0, new Runnable() {
+
+            public void run() {
+                dispatch.disconnected(session);
+            }
+
+        });
+    }
+
+    private void submit(final IOSession session, int ops, final Runnable task) {
+        SerialQueue queue = (SerialQueue) session.getAttribute(QUEUE_KEY);
+        if (queue == null) {
+            // Not connected through this dispatch
+            task.run();
+            return;
+        }
+        queue.submit(task, ops);
+    }
+
+    /**
+     * Triggered when a callback of the decorated dispatch throws
+     * a {@link RuntimeException} while run by the executor.
+     * <p>
+     * This implementation closes the session. Super-classes can override
+     * this method to react to the exception differently.
+     *
+     * @param session the I/O session.
+     * @param ex the runtime exception.
+     */
+    protected void handleRuntimeException(final IOSession session, final RuntimeException ex) {
+        session.close();
+    }
+
+    class SerialQueue implements Runnable {
+
+        private final IOSession session;
+        private final Queue<Runnable> tasks;
+
+        private boolean scheduled;
+        private int suspendedOps;
+
+        SerialQueue(final IOSession session) {
+            super();
+            this.session = session;
+            this.tasks = new LinkedList<Runnable>();
+        }
+
+        void submit(final Runnable task, int ops) {
+            synchronized (this) {
+                this.tasks.add(task);
+                if (ops != 0) {
+                    suspend(ops);
+                }
+                if (this.scheduled) {
+                    return;
+                }
+                this.scheduled = true;
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException ex) {
+                // Run by the I/O reactor thread as a last resort
+                run();
+            }
+        }
+
+        private void suspend(int ops) {
+            if ((this.suspendedOps & ops) != ops && this.session instanceof IOSessionImpl) {
+                this.suspendedOps |= ops;
+                ((IOSessionImpl) this.session).suspendEvents(ops);
+            }
+        }
+
+        private void resume() {
+            if (this.suspendedOps != 0) {
+                ((IOSessionImpl) this.session).resumeEvents(this.suspendedOps);
+                this.suspendedOps = 0;
+            }
+        }
+
+        public void run() {
+            for (;;) {
+                Runnable task;
+                synchronized (this) {
+                    task = this.tasks.poll();
+                    if (task == null) {
+                        resume();
+                        this.scheduled = false;
+                        return;
+                    }
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    handleRuntimeException(this.session, ex);
+                }
+            }
+        }
+
+    }
+
+}
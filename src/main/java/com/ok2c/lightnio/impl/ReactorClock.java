@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+/**
+ * Coarse-grained clock used by I/O reactors. The time is sampled explicitly
+ * by the I/O reactor thread around the blocking select operation and read
+ * back from a cached value everywhere on the event processing path, so that
+ * the system clock is not queried for every I/O event.
+ * <p>
+ * In the monotonic mode the time is derived from {@link System#nanoTime()}
+ * relative to the wall clock time at which the clock was created. The values
+ * still look like milliseconds since the epoch but are not affected by
+ * the wall clock being adjusted, which could otherwise cause a mass
+ * expiry of session timeouts.
+ */
+public class ReactorClock {
+
+    private final boolean monotonic;
+    private final long wallBase;
+    private final long nanoBase;
+
+    private volatile long now;
+
+    /**
+     * Creates new ReactorClock instance.
+     *
+     * @param monotonic <code>true</code> if the time should be derived from
+     *   a monotonic time source, <code>false</code> otherwise.
+     */
+    public ReactorClock(boolean monotonic) {
+        super();
+        this.monotonic = monotonic;
+        this.wallBase = System.currentTimeMillis();
+        this.nanoBase = System.nanoTime();
+        this.now = this.wallBase;
+    }
+
+    public ReactorClock() {
+        this(false);
+    }
+
+    /**
+     * Returns <code>true</code> if the clock is based on a monotonic time
+     * source, <code>false</code> otherwise.
+     */
+    public boolean isMonotonic() {
+        return this.monotonic;
+    }
+
+    /**
+     * Samples the time source and updates the cached time.
+     *
+     * @return current time in milliseconds.
+     */
+    public long update() {
+        long time;
+        if (this.monotonic) {
+            time = this.wallBase + (System.nanoTime() - this.nanoBase) / 1000000;
+        } else {
+            time = System.currentTimeMillis();
+        }
+        this.now = time;
+        return time;
+    }
+
+    /**
+     * Returns the time in milliseconds as of the last {@link #update()}.
+     *
+     * @return cached time in milliseconds.
+     */
+    public long now() {
+        return this.now;
+    }
+
+}
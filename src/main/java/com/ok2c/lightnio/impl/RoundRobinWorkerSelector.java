@@ -0,0 +1,36 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link WorkerSelector} implementation that assigns new channels to worker
+ * I/O reactors in turn irrespective of their load.
+ */
+public class RoundRobinWorkerSelector implements WorkerSelector {
+
+    private final AtomicInteger counter;
+
+    public RoundRobinWorkerSelector() {
+        super();
+        this.counter = new AtomicInteger(0);
+    }
+
+    public int select(final ChannelEntry entry, final BaseIOReactor[] workers) {
+        return (this.counter.getAndIncrement() & Integer.MAX_VALUE) % workers.length;
+    }
+
+}
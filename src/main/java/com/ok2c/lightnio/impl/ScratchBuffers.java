@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Per-thread scratch buffers shared by the lazy session buffers of all
+ * sessions served by the same I/O reactor thread. The content of a scratch
+ * buffer does not survive beyond the method call that obtained it.
+ */
+final class ScratchBuffers {
+
+    private static final ThreadLocal<ByteBuffer> BYTES = new ThreadLocal<ByteBuffer>();
+    private static final ThreadLocal<CharBuffer> CHARS = new ThreadLocal<CharBuffer>();
+
+    private ScratchBuffers() {
+    }
+
+    /**
+     * Returns the byte scratch buffer of the calling thread cleared and
+     * limited to the given size.
+     */
+    static ByteBuffer getByteBuffer(int size) {
+        ByteBuffer buffer = BYTES.get();
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(size);
+            BYTES.set(buffer);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Returns the char scratch buffer of the calling thread cleared and
+     * limited to the given size.
+     */
+    static CharBuffer getCharBuffer(int size) {
+        CharBuffer buffer = CHARS.get();
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = CharBuffer.allocate(size);
+            CHARS.set(buffer);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+}
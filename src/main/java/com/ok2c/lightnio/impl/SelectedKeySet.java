@@ -0,0 +1,176 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.lang.reflect.Field;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Flat array-backed set of selected keys that can be installed into
+ * the JDK {@link Selector} implementation in place of its hash based
+ * selected-key set. Adding a key is an array store and the I/O reactor
+ * can walk the keys by index without allocating an iterator.
+ * <p>
+ * The set relies on the selector adding a key at most once per select
+ * operation and on being cleared after each select operation. It does not
+ * support {@link #contains(Object)} and {@link #remove(Object)}, which
+ * the JDK selector does not depend upon. Instances of this class are not
+ * threading safe and are expected to be accessed by the I/O reactor thread
+ * only.
+ */
+public final class SelectedKeySet extends AbstractSet<SelectionKey> {
+
+    private SelectionKey[] keys;
+    private int size;
+
+    public SelectedKeySet(int initialCapacity) {
+        super();
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("Initial capacity may not be negative or zero");
+        }
+        this.keys = new SelectionKey[initialCapacity];
+        this.size = 0;
+    }
+
+    public SelectedKeySet() {
+        this(1024);
+    }
+
+    @Override
+    public boolean add(final SelectionKey key) {
+        if (key == null) {
+            return false;
+        }
+        if (this.size == this.keys.length) {
+            SelectionKey[] newKeys = new SelectionKey[this.keys.length << 1];
+            System.arraycopy(this.keys, 0, newKeys, 0, this.size);
+            this.keys = newKeys;
+        }
+        this.keys[this.size++] = key;
+        return true;
+    }
+
+    /**
+     * Returns the key at the given position.
+     *
+     * @param index the position of the key.
+     * @return the selection key.
+     */
+    public SelectionKey get(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + this.size);
+        }
+        return this.keys[index];
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        return false;
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(this.keys, 0, this.size, null);
+        this.size = 0;
+    }
+
+    @Override
+    public Iterator<SelectionKey> iterator() {
+        return new Iterator<SelectionKey>() {
+
+            private int idx = 0;
+
+            public boolean hasNext() {
+                return this.idx < size;
+            }
+
+            public SelectionKey next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return keys[this.idx++];
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+        };
+    }
+
+    /**
+     * Attempts to replace the selected-key set of the given selector with
+     * a new instance of this class. This requires reflective access to
+     * the internals of the JDK selector implementation, which newer JDKs
+     * deny unless the <code>sun.nio.ch</code> package has been opened to
+     * this library.
+     *
+     * @param selector the selector.
+     * @return the installed key set or <code>null</code> if the selector
+     *   does not support it.
+     */
+    public static SelectedKeySet install(final Selector selector) {
+        if (selector == null) {
+            throw new IllegalArgumentException("Selector may not be null");
+        }
+        try {
+            Class<?> implClass = Class.forName(
+                    "sun.nio.ch.SelectorImpl", false, ClassLoader.getSystemClassLoader());
+            if (!implClass.isAssignableFrom(selector.getClass())) {
+                return null;
+            }
+            Field selectedKeysField = implClass.getDeclaredField("selectedKeys");
+            Field publicSelectedKeysField = implClass.getDeclaredField("publicSelectedKeys");
+            selectedKeysField.setAccessible(true);
+            publicSelectedKeysField.setAccessible(true);
+
+            SelectedKeySet keySet = new SelectedKeySet();
+            Object selectedKeys = selectedKeysField.get(selector);
+            selectedKeysField.set(selector, keySet);
+            try {
+                publicSelectedKeysField.set(selector, keySet);
+            } catch (Exception ex) {
+                selectedKeysField.set(selector, selectedKeys);
+                throw ex;
+            }
+            return keySet;
+        } catch (Exception ex) {
+            // Not supported by this JDK or access denied.
+            // Stick to the default key set
+            return null;
+        }
+    }
+
+}
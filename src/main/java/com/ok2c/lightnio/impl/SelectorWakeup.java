@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.nio.channels.Selector;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Helper class used by I/O reactors to coalesce {@link Selector#wakeup()}
+ * calls. A wakeup is issued only if the I/O reactor is in its select window
+ * and no other wakeup has been issued in that window yet. Wakeups requested
+ * by the I/O reactor thread itself are always skipped, since the I/O reactor
+ * processes pending work before it blocks again.
+ * <p>
+ * The select window opens with {@link #beginSelect()}. After opening
+ * the window the I/O reactor must check for pending work and must not block
+ * if there is any, as wakeups requested before the window has been opened
+ * are skipped. The window closes with {@link #endSelect()} right after
+ * the select operation returns.
+ */
+class SelectorWakeup {
+
+    private final Selector selector;
+    private final AtomicBoolean pending;
+    private final AtomicLong wakeupCount;
+
+    private volatile Thread thread;
+    private volatile boolean selecting;
+
+    public SelectorWakeup(final Selector selector) {
+        super();
+        if (selector == null) {
+            throw new IllegalArgumentException("Selector may not be null");
+        }
+        this.selector = selector;
+        this.pending = new AtomicBoolean(false);
+        this.wakeupCount = new AtomicLong(0);
+    }
+
+    /**
+     * Binds the given thread as the I/O reactor thread.
+     *
+     * @param thread the I/O reactor thread. Can be <code>null</code>.
+     */
+    public void bind(final Thread thread) {
+        this.thread = thread;
+    }
+
+    /**
+     * Determines whether the calling thread is the I/O reactor thread.
+     */
+    public boolean isReactorThread() {
+        return Thread.currentThread() == this.thread;
+    }
+
+    /**
+     * Opens the select window.
+     */
+    public void beginSelect() {
+        this.selecting = true;
+    }
+
+    /**
+     * Closes the select window.
+     */
+    public void endSelect() {
+        this.selecting = false;
+        this.pending.set(false);
+    }
+
+    /**
+     * Wakes up the selector unless the wakeup is redundant.
+     */
+    public void wakeup() {
+        if (!this.selecting || Thread.currentThread() == this.thread) {
+            return;
+        }
+        if (this.pending.compareAndSet(false, true)) {
+            this.wakeupCount.incrementAndGet();
+            this.selector.wakeup();
+        }
+    }
+
+    /**
+     * Returns the total number of {@link Selector#wakeup()} calls issued.
+     */
+    public long getWakeupCount() {
+        return this.wakeupCount.get();
+    }
+
+}
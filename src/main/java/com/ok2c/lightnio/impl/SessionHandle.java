@@ -20,8 +20,11 @@ import com.ok2c.lightnio.IOSession;
  * Session handle class used by I/O reactor implementations to keep a reference
  * to a {@link IOSession} along with information about time of last I/O
  * operations on that session.
+ * <p>
+ * Session handles are scheduled with the {@link TimingWheel} of the I/O
+ * reactor that owns the session in order to track session timeouts.
  */
-public class SessionHandle {
+public class SessionHandle extends TimingWheel.Entry {
 
     private final IOSession session;
     private final long startedTime;
@@ -30,17 +33,35 @@ public class SessionHandle {
     private long lastWriteTime;
     private long lastAccessTime;
 
-    public SessionHandle(final IOSession session) {
+    // Per-loop I/O budget accounting maintained by the I/O reactor thread
+    long budgetLoop;
+    int loopEvents;
+    long loopBytes;
+    long resumedLoop;
+    int deferredOps;
+
+    /**
+     * Creates new SessionHandle instance.
+     *
+     * @param session the I/O session.
+     * @param now current time as supplied by the I/O reactor clock.
+     */
+    public SessionHandle(final IOSession session, long now) {
         super();
         if (session == null) {
             throw new IllegalArgumentException("Session may not be null");
         }
         this.session = session;
-        long now = System.currentTimeMillis();
         this.startedTime = now;
         this.lastReadTime = now;
         this.lastWriteTime = now;
         this.lastAccessTime = now;
+        this.budgetLoop = -1;
+        this.resumedLoop = -1;
+    }
+
+    public SessionHandle(final IOSession session) {
+        this(session, System.currentTimeMillis());
     }
 
     public IOSession getSession() {
@@ -63,16 +84,22 @@ public class SessionHandle {
         return this.lastAccessTime;
     }
 
-    public void resetLastRead() {
-        long now = System.currentTimeMillis();
+    public void resetLastRead(long now) {
         this.lastReadTime = now;
         this.lastAccessTime = now;
     }
 
-    public void resetLastWrite() {
-        long now = System.currentTimeMillis();
+    public void resetLastRead() {
+        resetLastRead(System.currentTimeMillis());
+    }
+
+    public void resetLastWrite(long now) {
         this.lastWriteTime = now;
         this.lastAccessTime = now;
     }
 
+    public void resetLastWrite() {
+        resetLastWrite(System.currentTimeMillis());
+    }
+
 }
@@ -34,9 +34,15 @@ import com.ok2c.lightnio.buffer.HeapByteBufferAllocator;
 /**
  * Default implementation of {@link SessionInputBuffer} based on
  * the {@link ExpandableBuffer} class.
+ * <p>
+ * Lazy buffers read into a scratch buffer shared by all sessions of the
+ * I/O reactor thread and keep a backing buffer of their own only while
+ * there is unread input.
  */
 public class SessionInputBufferImpl extends ExpandableBuffer implements SessionInputBuffer {
 
+    private final int buffersize;
+    private final int linebuffersize;
     private final CharBuffer charbuffer;
     private CharsetDecoder chardecoder;
 
@@ -44,15 +50,26 @@ public class SessionInputBufferImpl extends ExpandableBuffer implements SessionI
             int buffersize,
             int linebuffersize,
             final ByteBufferAllocator allocator,
-            final Charset charset) {
-        super(buffersize, allocator);
+            final Charset charset,
+            boolean lazy) {
+        super(buffersize, allocator, lazy);
         if (charset == null) {
             throw new IllegalArgumentException("Charset may not be null");
         }
-        this.charbuffer = CharBuffer.allocate(linebuffersize);
+        this.buffersize = buffersize;
+        this.linebuffersize = linebuffersize;
+        this.charbuffer = lazy ? null : CharBuffer.allocate(linebuffersize);
         this.chardecoder = charset.newDecoder();
     }
 
+    public SessionInputBufferImpl(
+            int buffersize,
+            int linebuffersize,
+            final ByteBufferAllocator allocator,
+            final Charset charset) {
+        this(buffersize, linebuffersize, allocator, charset, false);
+    }
+
     public SessionInputBufferImpl(
             int buffersize,
             int linebuffersize,
@@ -60,6 +77,14 @@ public class SessionInputBufferImpl extends ExpandableBuffer implements SessionI
         this(buffersize, linebuffersize, new HeapByteBufferAllocator(), charset);
     }
 
+    private CharBuffer getCharBuffer() {
+        if (this.charbuffer != null) {
+            return this.charbuffer;
+        }
+        // Lazy buffers use the scratch buffer of the I/O reactor thread
+        return ScratchBuffers.getCharBuffer(this.linebuffersize);
+    }
+
     public void resetCharset(final Charset charset) {
         if (charset == null) {
             throw new IllegalArgumentException("Charset may not be null");
@@ -74,6 +99,20 @@ public class SessionInputBufferImpl extends ExpandableBuffer implements SessionI
             throw new IllegalArgumentException("Channel may not be null");
         }
         setInputMode();
+        // Drop storage left attached by a previous read
+        releaseIfDrained();
+        if (isDetached()) {
+            // Read into the scratch buffer of the I/O reactor thread and
+            // attach a buffer of our own only if there is input to keep
+            ByteBuffer scratch = ScratchBuffers.getByteBuffer(this.buffersize);
+            int readNo = channel.read(scratch);
+            if (readNo > 0) {
+                scratch.flip();
+                ensureCapacity(scratch.remaining());
+                this.buffer.put(scratch);
+            }
+            return readNo;
+        }
         if (!this.buffer.hasRemaining()) {
             expand();
         }
@@ -83,7 +122,9 @@ public class SessionInputBufferImpl extends ExpandableBuffer implements SessionI
 
     public int read() {
         setOutputMode();
-        return this.buffer.get() & 0xff;
+        int b = this.buffer.get() & 0xff;
+        releaseIfDrained();
+        return b;
     }
 
     public int read(final ByteBuffer dst, int maxLen) {
@@ -96,6 +137,7 @@ public class SessionInputBufferImpl extends ExpandableBuffer implements SessionI
         for (int i = 0; i < chunk; i++) {
             dst.put(this.buffer.get());
         }
+        releaseIfDrained();
         return chunk;
     }
 
@@ -121,6 +163,7 @@ public class SessionInputBufferImpl extends ExpandableBuffer implements SessionI
         } else {
             bytesRead = dst.write(this.buffer);
         }
+        releaseIfDrained();
         return bytesRead;
     }
 
@@ -129,7 +172,9 @@ public class SessionInputBufferImpl extends ExpandableBuffer implements SessionI
             return 0;
         }
         setOutputMode();
-        return dst.write(this.buffer);
+        int bytesRead = dst.write(this.buffer);
+        releaseIfDrained();
+        return bytesRead;
     }
 
     protected int findLineDelim() {
@@ -165,23 +210,24 @@ public class SessionInputBufferImpl extends ExpandableBuffer implements SessionI
         // Ensure capacity of len assuming ASCII as the most likely charset
         linebuffer.ensureCapacity(len);
 
+        CharBuffer charbuffer = getCharBuffer();
         this.chardecoder.reset();
 
         for (;;) {
             CoderResult result = this.chardecoder.decode(
                     this.buffer,
-                    this.charbuffer,
+                    charbuffer,
                     true);
             if (result.isError()) {
                 result.throwException();
             }
             if (result.isOverflow()) {
-                this.charbuffer.flip();
+                charbuffer.flip();
                 linebuffer.append(
-                        this.charbuffer.array(),
-                        this.charbuffer.position(),
-                        this.charbuffer.remaining());
-                this.charbuffer.clear();
+                        charbuffer.array(),
+                        charbuffer.position(),
+                        charbuffer.remaining());
+                charbuffer.clear();
             }
             if (result.isUnderflow()) {
                 break;
@@ -190,14 +236,14 @@ public class SessionInputBufferImpl extends ExpandableBuffer implements SessionI
         this.buffer.limit(origLimit);
 
         // flush the decoder
-        this.chardecoder.flush(this.charbuffer);
-        this.charbuffer.flip();
+        this.chardecoder.flush(charbuffer);
+        charbuffer.flip();
         // append the decoded content to the line buffer
-        if (this.charbuffer.hasRemaining()) {
+        if (charbuffer.hasRemaining()) {
             linebuffer.append(
-                    this.charbuffer.array(),
-                    this.charbuffer.position(),
-                    this.charbuffer.remaining());
+                    charbuffer.array(),
+                    charbuffer.position(),
+                    charbuffer.remaining());
         }
 
         // discard LF if found
@@ -215,6 +261,7 @@ public class SessionInputBufferImpl extends ExpandableBuffer implements SessionI
                 }
             }
         }
+        releaseIfDrained();
         return true;
     }
 
@@ -0,0 +1,211 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+
+import com.ok2c.lightnio.SessionInputBuffer;
+import com.ok2c.lightnio.buffer.ByteBufferAllocator;
+import com.ok2c.lightnio.buffer.CharArrayBuffer;
+import com.ok2c.lightnio.buffer.HeapByteBufferAllocator;
+import com.ok2c.lightnio.buffer.RingBuffer;
+
+/**
+ * Implementation of {@link SessionInputBuffer} based on the
+ * {@link RingBuffer} class. Interleaving {@link #fill(ReadableByteChannel)}
+ * with reads never compacts the buffered content. A line that wraps around
+ * the end of the ring is copied out before being decoded.
+ */
+public class SessionInputRingBuffer extends RingBuffer implements SessionInputBuffer {
+
+    private final CharBuffer charbuffer;
+    private CharsetDecoder chardecoder;
+    private ByteBuffer linebytes;
+
+    public SessionInputRingBuffer(
+            int buffersize,
+            int linebuffersize,
+            final ByteBufferAllocator allocator,
+            final Charset charset) {
+        super(buffersize, allocator);
+        if (charset == null) {
+            throw new IllegalArgumentException("Charset may not be null");
+        }
+        this.charbuffer = CharBuffer.allocate(linebuffersize);
+        this.chardecoder = charset.newDecoder();
+    }
+
+    public SessionInputRingBuffer(
+            int buffersize,
+            int linebuffersize,
+            final Charset charset) {
+        this(buffersize, linebuffersize, new HeapByteBufferAllocator(), charset);
+    }
+
+    public void resetCharset(final Charset charset) {
+        if (charset == null) {
+            throw new IllegalArgumentException("Charset may not be null");
+        }
+        if (!this.chardecoder.charset().equals(charset)) {
+            this.chardecoder = charset.newDecoder();
+        }
+    }
+
+    public int fill(final ReadableByteChannel channel) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException("Channel may not be null");
+        }
+        if (available() == 0) {
+            expand();
+        }
+        return readFrom(channel);
+    }
+
+    public int read() {
+        return get();
+    }
+
+    public int read(final ByteBuffer dst, int maxLen) {
+        if (dst == null) {
+            return 0;
+        }
+        return get(dst, maxLen);
+    }
+
+    public int read(final ByteBuffer dst) {
+        if (dst == null) {
+            return 0;
+        }
+        return get(dst, dst.remaining());
+    }
+
+    public int read(final WritableByteChannel dst, int maxLen) throws IOException {
+        if (dst == null) {
+            return 0;
+        }
+        return writeTo(dst, maxLen);
+    }
+
+    public int read(final WritableByteChannel dst) throws IOException {
+        if (dst == null) {
+            return 0;
+        }
+        return writeTo(dst, Integer.MAX_VALUE);
+    }
+
+    public boolean readLine(
+            final CharArrayBuffer linebuffer,
+            boolean endOfStream) throws CharacterCodingException {
+
+        int len = indexOf((byte) TextConsts.LF);
+        if (len == -1) {
+            if (endOfStream && hasData()) {
+                // No more data. Get the rest
+                len = length();
+            } else {
+                // Either no complete line present in the buffer
+                // or no more data is expected
+                return false;
+            }
+        } else {
+            len++;
+        }
+
+        ByteBuffer src = contiguous(len);
+        boolean wrapped = src == null;
+        if (wrapped) {
+            if (this.linebytes == null || this.linebytes.capacity() < len) {
+                this.linebytes = ByteBuffer.allocate(Math.max(len, 64));
+            }
+            src = this.linebytes;
+            src.clear();
+            get(src, len);
+            src.flip();
+        }
+
+        // Ensure capacity of len assuming ASCII as the most likely charset
+        linebuffer.ensureCapacity(len);
+
+        this.chardecoder.reset();
+        this.charbuffer.clear();
+        for (;;) {
+            CoderResult result = this.chardecoder.decode(src, this.charbuffer, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isOverflow()) {
+                this.charbuffer.flip();
+                linebuffer.append(
+                        this.charbuffer.array(),
+                        this.charbuffer.position(),
+                        this.charbuffer.remaining());
+                this.charbuffer.clear();
+            }
+            if (result.isUnderflow()) {
+                break;
+            }
+        }
+        if (!wrapped) {
+            skip(len);
+        }
+
+        // flush the decoder
+        this.chardecoder.flush(this.charbuffer);
+        this.charbuffer.flip();
+        // append the decoded content to the line buffer
+        if (this.charbuffer.hasRemaining()) {
+            linebuffer.append(
+                    this.charbuffer.array(),
+                    this.charbuffer.position(),
+                    this.charbuffer.remaining());
+        }
+
+        // discard LF if found
+        int l = linebuffer.length();
+        if (l > 0) {
+            if (linebuffer.charAt(l - 1) == TextConsts.LF) {
+                l--;
+                linebuffer.setLength(l);
+            }
+            // discard CR if found
+            if (l > 0) {
+                if (linebuffer.charAt(l - 1) == TextConsts.CR) {
+                    l--;
+                    linebuffer.setLength(l);
+                }
+            }
+        }
+        return true;
+    }
+
+    public String readLine(boolean endOfStream) throws CharacterCodingException {
+        CharArrayBuffer charbuffer = new CharArrayBuffer(64);
+        boolean found = readLine(charbuffer, endOfStream);
+        if (found) {
+            return charbuffer.toString();
+        } else {
+            return null;
+        }
+    }
+
+}
@@ -34,11 +34,14 @@ import com.ok2c.lightnio.buffer.HeapByteBufferAllocator;
 /**
  * Default implementation of {@link SessionOutputBuffer} based on
  * the {@link ExpandableBuffer} class.
+ * <p>
+ * Lazy buffers keep a backing buffer only while there is unflushed output.
  */
 public class SessionOutputBufferImpl extends ExpandableBuffer implements SessionOutputBuffer {
 
     private static final byte[] CRLF = new byte[] {TextConsts.CR, TextConsts.LF};
 
+    private final int linebuffersize;
     private final CharBuffer charbuffer;
     private CharsetEncoder charencoder;
 
@@ -46,15 +49,25 @@ public class SessionOutputBufferImpl extends ExpandableBuffer implements Session
             int buffersize,
             int linebuffersize,
             final ByteBufferAllocator allocator,
-            final Charset charset) {
-        super(buffersize, allocator);
+            final Charset charset,
+            boolean lazy) {
+        super(buffersize, allocator, lazy);
         if (charset == null) {
             throw new IllegalArgumentException("Charset may not be null");
         }
-        this.charbuffer = CharBuffer.allocate(linebuffersize);
+        this.linebuffersize = linebuffersize;
+        this.charbuffer = lazy ? null : CharBuffer.allocate(linebuffersize);
         this.charencoder = charset.newEncoder();
     }
 
+    public SessionOutputBufferImpl(
+            int buffersize,
+            int linebuffersize,
+            final ByteBufferAllocator allocator,
+            final Charset charset) {
+        this(buffersize, linebuffersize, allocator, charset, false);
+    }
+
     public SessionOutputBufferImpl(
             int buffersize,
             int linebuffersize,
@@ -62,6 +75,14 @@ public class SessionOutputBufferImpl extends ExpandableBuffer implements Session
         this(buffersize, linebuffersize, new HeapByteBufferAllocator(), charset);
     }
 
+    private CharBuffer getCharBuffer() {
+        if (this.charbuffer != null) {
+            return this.charbuffer;
+        }
+        // Lazy buffers use the scratch buffer of the I/O reactor thread
+        return ScratchBuffers.getCharBuffer(this.linebuffersize);
+    }
+
     public void resetCharset(final Charset charset) {
         if (charset == null) {
             throw new IllegalArgumentException("Charset may not be null");
@@ -77,6 +98,7 @@ public class SessionOutputBufferImpl extends ExpandableBuffer implements Session
         }
         setOutputMode();
         int noWritten = channel.write(this.buffer);
+        releaseIfDrained();
         return noWritten;
     }
 
@@ -121,24 +143,25 @@ public class SessionOutputBufferImpl extends ExpandableBuffer implements Session
         // Do not bother if the buffer is empty
         if (linebuffer.length() > 0 ) {
             setInputMode();
+            CharBuffer charbuffer = getCharBuffer();
             this.charencoder.reset();
             // transfer the string in small chunks
             int remaining = linebuffer.length();
             int offset = 0;
             while (remaining > 0) {
-                int l = this.charbuffer.remaining();
+                int l = charbuffer.remaining();
                 boolean eol = false;
                 if (remaining <= l) {
                     l = remaining;
                     // terminate the encoding process
                     eol = true;
                 }
-                this.charbuffer.put(linebuffer.buffer(), offset, l);
-                this.charbuffer.flip();
+                charbuffer.put(linebuffer.buffer(), offset, l);
+                charbuffer.flip();
 
                 boolean retry = true;
                 while (retry) {
-                    CoderResult result = this.charencoder.encode(this.charbuffer, this.buffer, eol);
+                    CoderResult result = this.charencoder.encode(charbuffer, this.buffer, eol);
                     if (result.isError()) {
                         result.throwException();
                     }
@@ -147,7 +170,7 @@ public class SessionOutputBufferImpl extends ExpandableBuffer implements Session
                     }
                     retry = !result.isUnderflow();
                 }
-                this.charbuffer.compact();
+                charbuffer.compact();
                 offset += l;
                 remaining -= l;
             }
@@ -0,0 +1,430 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import com.ok2c.lightnio.SessionOutputBuffer;
+import com.ok2c.lightnio.buffer.ByteBufferAllocator;
+import com.ok2c.lightnio.buffer.CharArrayBuffer;
+import com.ok2c.lightnio.buffer.HeapByteBufferAllocator;
+import com.ok2c.lightnio.buffer.RecyclingByteBufferAllocator;
+
+/**
+ * Implementation of {@link SessionOutputBuffer} that keeps its content as
+ * a chain of {@link ByteBuffer}s and flushes them with a single gathering
+ * write where the channel supports it.
+ * <p>
+ * Content passed to {@link #write(ByteBuffer)} and lines of text are copied
+ * into tail buffers of fixed size obtained from the allocator, so small
+ * writes are coalesced. The chain never reallocates or copies content it
+ * already holds. Buffers passed to {@link #enqueue(ByteBuffer)} are queued
+ * by reference without copying their content.
+ * <p>
+ * If the allocator is a {@link RecyclingByteBufferAllocator}, tail buffers
+ * are released to it once flushed.
+ */
+public class SessionOutputChainedBuffer implements SessionOutputBuffer {
+
+    private static final byte[] CRLF = new byte[] {TextConsts.CR, TextConsts.LF};
+
+    private static final int MAX_GATHER = 64;
+
+    private final int buffersize;
+    private final int copyThreshold;
+    private final ByteBufferAllocator allocator;
+    private final LinkedList<Chunk> chain;
+    private final ByteBuffer[] gather;
+    private final CharBuffer charbuffer;
+    private CharsetEncoder charencoder;
+
+    private Chunk tail;
+    private int tailpos;
+    private int taillimit;
+    private int length;
+
+    /**
+     * Creates new SessionOutputChainedBuffer instance.
+     *
+     * @param buffersize the size of tail buffers.
+     * @param linebuffersize the size of the char buffer used to encode lines.
+     * @param copyThreshold buffers passed to {@link #enqueue(ByteBuffer)}
+     *   with fewer remaining bytes are copied rather than queued.
+     * @param allocator allocator to be used to allocate tail buffers.
+     * @param charset the charset used to encode lines.
+     */
+    public SessionOutputChainedBuffer(
+            int buffersize,
+            int linebuffersize,
+            int copyThreshold,
+            final ByteBufferAllocator allocator,
+            final Charset charset) {
+        super();
+        if (buffersize <= 0) {
+            throw new IllegalArgumentException("Buffer size may not be negative or zero");
+        }
+        if (copyThreshold < 0) {
+            throw new IllegalArgumentException("Copy threshold may not be negative");
+        }
+        if (allocator == null) {
+            throw new IllegalArgumentException("ByteBuffer allocator may not be null");
+        }
+        if (charset == null) {
+            throw new IllegalArgumentException("Charset may not be null");
+        }
+        this.buffersize = buffersize;
+        this.copyThreshold = copyThreshold;
+        this.allocator = allocator;
+        this.chain = new LinkedList<Chunk>();
+        this.gather = new ByteBuffer[MAX_GATHER];
+        this.charbuffer = CharBuffer.allocate(linebuffersize);
+        this.charencoder = charset.newEncoder();
+        this.length = 0;
+    }
+
+    public SessionOutputChainedBuffer(
+            int buffersize,
+            int linebuffersize,
+            final ByteBufferAllocator allocator,
+            final Charset charset) {
+        this(buffersize, linebuffersize, Math.min(buffersize, 1024), allocator, charset);
+    }
+
+    public SessionOutputChainedBuffer(
+            int buffersize,
+            int linebuffersize,
+            final Charset charset) {
+        this(buffersize, linebuffersize, new HeapByteBufferAllocator(), charset);
+    }
+
+    public void resetCharset(final Charset charset) {
+        if (charset == null) {
+            throw new IllegalArgumentException("Charset may not be null");
+        }
+        if (!this.charencoder.charset().equals(charset)) {
+            this.charencoder = charset.newEncoder();
+        }
+    }
+
+    /**
+     * Opens the tail buffer for appending, starting a new one if there is
+     * no tail buffer, it is full or <code>fresh</code> is set.
+     */
+    private ByteBuffer openTail(boolean fresh) {
+        if (fresh || this.tail == null
+                || this.tail.buffer.limit() == this.tail.buffer.capacity()) {
+            ByteBuffer buffer = this.allocator.allocate(this.buffersize);
+            buffer.clear();
+            buffer.limit(0);
+            this.tail = new Chunk(buffer, true);
+            this.chain.add(this.tail);
+        }
+        ByteBuffer buffer = this.tail.buffer;
+        this.tailpos = buffer.position();
+        this.taillimit = buffer.limit();
+        buffer.position(this.taillimit);
+        buffer.limit(buffer.capacity());
+        return buffer;
+    }
+
+    /**
+     * Makes the content appended since {@link #openTail(boolean)} part of
+     * the chain.
+     */
+    private void closeTail() {
+        ByteBuffer buffer = this.tail.buffer;
+        int end = buffer.position();
+        this.length += end - this.taillimit;
+        buffer.limit(end);
+        buffer.position(this.tailpos);
+    }
+
+    private void release(final Chunk chunk) {
+        if (chunk.pooled && this.allocator instanceof RecyclingByteBufferAllocator) {
+            ((RecyclingByteBufferAllocator) this.allocator).release(chunk.buffer);
+        }
+    }
+
+    public boolean hasData() {
+        return this.length > 0;
+    }
+
+    public int length() {
+        return this.length;
+    }
+
+    public int available() {
+        if (this.tail == null) {
+            return 0;
+        }
+        return this.tail.buffer.capacity() - this.tail.buffer.limit();
+    }
+
+    public int capacity() {
+        return this.length + available();
+    }
+
+    public int flush(final WritableByteChannel channel) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException("Channel may not be null");
+        }
+        if (this.length == 0) {
+            return 0;
+        }
+        long noWritten;
+        if (channel instanceof GatheringByteChannel && this.chain.size() > 1) {
+            int n = 0;
+            Iterator<Chunk> it = this.chain.iterator();
+            while (it.hasNext() && n < this.gather.length) {
+                ByteBuffer buffer = it.next().buffer;
+                if (buffer.hasRemaining()) {
+                    this.gather[n++] = buffer;
+                }
+            }
+            try {
+                noWritten = ((GatheringByteChannel) channel).write(this.gather, 0, n);
+            } finally {
+                // Do not hold on to flushed buffers
+                Arrays.fill(this.gather, 0, n, null);
+            }
+        } else {
+            noWritten = 0;
+            Iterator<Chunk> it = this.chain.iterator();
+            while (it.hasNext()) {
+                ByteBuffer buffer = it.next().buffer;
+                if (buffer.hasRemaining()) {
+                    noWritten += channel.write(buffer);
+                    if (buffer.hasRemaining()) {
+                        break;
+                    }
+                }
+            }
+        }
+        this.length -= (int) noWritten;
+        while (!this.chain.isEmpty()) {
+            Chunk chunk = this.chain.getFirst();
+            if (chunk.buffer.hasRemaining()) {
+                break;
+            }
+            if (chunk == this.tail) {
+                // Keep the tail buffer to coalesce subsequent writes
+                chunk.buffer.clear();
+                chunk.buffer.limit(0);
+                break;
+            }
+            this.chain.removeFirst();
+            release(chunk);
+        }
+        return (int) noWritten;
+    }
+
+    /**
+     * Queues the source buffer by reference. The buffer is copied instead
+     * if it has fewer remaining bytes than the copy threshold.
+     * <p>
+     * Ownership of the buffer passes to this session buffer: the caller may
+     * not modify the buffer's content, position or limit afterwards. The
+     * buffer's position advances as its content is flushed; once it has no
+     * remaining bytes this session buffer no longer refers to it.
+     *
+     * @param src the source buffer.
+     */
+    public void enqueue(final ByteBuffer src) {
+        if (src == null) {
+            return;
+        }
+        int len = src.remaining();
+        if (len == 0) {
+            return;
+        }
+        if (len < this.copyThreshold) {
+            write(src);
+            return;
+        }
+        this.chain.add(new Chunk(src, false));
+        // Subsequent writes must go after the queued buffer
+        this.tail = null;
+        this.length += len;
+    }
+
+    public void write(final ByteBuffer src) {
+        if (src == null) {
+            return;
+        }
+        while (src.hasRemaining()) {
+            ByteBuffer dst = openTail(false);
+            if (dst.remaining() < src.remaining()) {
+                int limit = src.limit();
+                src.limit(src.position() + dst.remaining());
+                dst.put(src);
+                src.limit(limit);
+            } else {
+                dst.put(src);
+            }
+            closeTail();
+        }
+    }
+
+    public void write(final ReadableByteChannel src) throws IOException {
+        if (src == null) {
+            return;
+        }
+        ByteBuffer dst = openTail(false);
+        try {
+            src.read(dst);
+        } finally {
+            closeTail();
+        }
+    }
+
+    private void write(final byte[] b) {
+        int off = 0;
+        int remaining = b.length;
+        while (remaining > 0) {
+            ByteBuffer dst = openTail(false);
+            int chunk = Math.min(dst.remaining(), remaining);
+            dst.put(b, off, chunk);
+            closeTail();
+            off += chunk;
+            remaining -= chunk;
+        }
+    }
+
+    private void writeCRLF() {
+        write(CRLF);
+    }
+
+    public void writeLine(final CharArrayBuffer linebuffer) throws CharacterCodingException {
+        if (linebuffer == null) {
+            return;
+        }
+        // Do not bother if the buffer is empty
+        if (linebuffer.length() > 0 ) {
+            this.charencoder.reset();
+            this.charbuffer.clear();
+            ByteBuffer dst = openTail(false);
+            try {
+                // transfer the string in small chunks
+                int remaining = linebuffer.length();
+                int offset = 0;
+                while (remaining > 0) {
+                    int l = this.charbuffer.remaining();
+                    boolean eol = false;
+                    if (remaining <= l) {
+                        l = remaining;
+                        // terminate the encoding process
+                        eol = true;
+                    }
+                    this.charbuffer.put(linebuffer.buffer(), offset, l);
+                    this.charbuffer.flip();
+
+                    boolean retry = true;
+                    while (retry) {
+                        CoderResult result = this.charencoder.encode(this.charbuffer, dst, eol);
+                        if (result.isError()) {
+                            result.throwException();
+                        }
+                        if (result.isOverflow()) {
+                            closeTail();
+                            dst = openTail(true);
+                        }
+                        retry = !result.isUnderflow();
+                    }
+                    this.charbuffer.compact();
+                    offset += l;
+                    remaining -= l;
+                }
+                // flush the encoder
+                boolean retry = true;
+                while (retry) {
+                    CoderResult result = this.charencoder.flush(dst);
+                    if (result.isError()) {
+                        result.throwException();
+                    }
+                    if (result.isOverflow()) {
+                        closeTail();
+                        dst = openTail(true);
+                    }
+                    retry = !result.isUnderflow();
+                }
+            } finally {
+                closeTail();
+            }
+        }
+        writeCRLF();
+    }
+
+    public void writeLine(final String s) throws IOException {
+        if (s == null) {
+            return;
+        }
+        if (s.length() > 0) {
+            CharArrayBuffer tmp = new CharArrayBuffer(s.length());
+            tmp.append(s);
+            writeLine(tmp);
+        } else {
+            writeCRLF();
+        }
+    }
+
+    /**
+     * Discards the content of this buffer, releasing tail buffers to the
+     * allocator and dropping references to queued buffers.
+     */
+    public void clear() {
+        while (!this.chain.isEmpty()) {
+            release(this.chain.removeFirst());
+        }
+        this.tail = null;
+        this.length = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("[len=");
+        sb.append(this.length);
+        sb.append(" chunks=");
+        sb.append(this.chain.size());
+        sb.append("]");
+        return sb.toString();
+    }
+
+    static final class Chunk {
+
+        final ByteBuffer buffer;
+        final boolean pooled;
+
+        Chunk(final ByteBuffer buffer, boolean pooled) {
+            super();
+            this.buffer = buffer;
+            this.pooled = pooled;
+        }
+
+    }
+
+}
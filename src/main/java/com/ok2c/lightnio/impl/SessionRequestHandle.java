@@ -20,19 +20,32 @@ import com.ok2c.lightnio.SessionRequest;
  * Session request handle class used by I/O reactor implementations to keep
  * a reference to a {@link SessionRequest} along with the time the request
  * was made.
+ * <p>
+ * Session request handles are scheduled with the {@link TimingWheel} of
+ * the I/O reactor in order to track connect timeouts.
  */
-public class SessionRequestHandle {
+public class SessionRequestHandle extends TimingWheel.Entry {
 
     private final SessionRequestImpl sessionRequest;
     private final long requestTime;
 
-    public SessionRequestHandle(final SessionRequestImpl sessionRequest) {
+    /**
+     * Creates new SessionRequestHandle instance.
+     *
+     * @param sessionRequest the session request.
+     * @param now current time as supplied by the I/O reactor clock.
+     */
+    public SessionRequestHandle(final SessionRequestImpl sessionRequest, long now) {
         super();
         if (sessionRequest == null) {
             throw new IllegalArgumentException("Session request may not be null");
         }
         this.sessionRequest = sessionRequest;
-        this.requestTime = System.currentTimeMillis();
+        this.requestTime = now;
+    }
+
+    public SessionRequestHandle(final SessionRequestImpl sessionRequest) {
+        this(sessionRequest, System.currentTimeMillis());
     }
 
     public SessionRequestImpl getSessionRequest() {
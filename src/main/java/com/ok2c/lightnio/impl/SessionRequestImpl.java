@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.channels.Channel;
 import java.nio.channels.SelectionKey;
+import java.util.List;
 
 import com.ok2c.lightnio.IOSession;
 import com.ok2c.lightnio.SessionRequest;
@@ -36,6 +37,8 @@ public class SessionRequestImpl implements SessionRequest {
     private final Object attachment;
     private final SessionRequestCallback callback;
 
+    private volatile SocketAddress connectAddress;
+    private volatile SocketAddress[] candidates;
     private volatile int connectTimeout;
     private volatile IOSession session = null;
     private volatile IOException exception = null;
@@ -56,10 +59,62 @@ public class SessionRequestImpl implements SessionRequest {
         this.connectTimeout = 0;
     }
 
+    /**
+     * Creates new SessionRequestImpl instance with several candidate remote
+     * addresses. Connect attempts are made to the candidates in the given
+     * order and the first connection to be established wins.
+     */
+    public SessionRequestImpl(
+            final List<? extends SocketAddress> candidates,
+            final SocketAddress localAddress,
+            final Object attachment,
+            final SessionRequestCallback callback) {
+        this(candidates != null && !candidates.isEmpty() ? candidates.get(0) : null,
+                localAddress, attachment, callback);
+        SocketAddress[] addresses = new SocketAddress[candidates.size()];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = candidates.get(i);
+            if (addresses[i] == null) {
+                throw new IllegalArgumentException("Remote address may not be null");
+            }
+        }
+        this.candidates = addresses;
+    }
+
     public SocketAddress getRemoteAddress() {
         return this.remoteAddress;
     }
 
+    /**
+     * Returns the address to connect to: the resolved remote address if
+     * the host name of the remote address has been resolved by the I/O
+     * reactor, the remote address otherwise.
+     */
+    SocketAddress getConnectAddress() {
+        SocketAddress address = this.connectAddress;
+        return address != null ? address : this.remoteAddress;
+    }
+
+    void setConnectAddress(final SocketAddress connectAddress) {
+        this.connectAddress = connectAddress;
+    }
+
+    /**
+     * Returns the candidate remote addresses or <code>null</code> if
+     * the request has a single remote address.
+     */
+    SocketAddress[] getCandidates() {
+        return this.candidates;
+    }
+
+    void setCandidates(final SocketAddress[] candidates) {
+        this.candidates = candidates;
+    }
+
+    public SocketAddress getConnectedAddress() {
+        return getSession() != null ? getConnectAddress() : null;
+    }
+
     public SocketAddress getLocalAddress() {
         return this.localAddress;
     }
@@ -102,9 +157,11 @@ public class SessionRequestImpl implements SessionRequest {
         if (this.completed) {
             return;
         }
+        // Set the session before signalling completion
+        // to threads that do not acquire the lock
+        this.session = session;
         this.completed = true;
         synchronized (this) {
-            this.session = session;
             if (this.callback != null) {
                 this.callback.completed(this);
             }
@@ -119,9 +176,9 @@ public class SessionRequestImpl implements SessionRequest {
         if (this.completed) {
             return;
         }
+        this.exception = exception;
         this.completed = true;
         synchronized (this) {
-            this.exception = exception;
             if (this.callback != null) {
                 this.callback.failed(this);
             }
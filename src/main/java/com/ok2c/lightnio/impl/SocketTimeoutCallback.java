@@ -0,0 +1,27 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+/**
+ * Callback interface used internally by I/O session implementations to notify
+ * the I/O reactor of a socket timeout change, so that the timeout gets
+ * re-armed by the I/O reactor thread. The session is expected to call back
+ * only once until the change has been picked up.
+ */
+interface SocketTimeoutCallback {
+
+    void socketTimeoutChanged(IOSessionImpl session);
+
+}
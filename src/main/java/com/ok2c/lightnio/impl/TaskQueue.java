@@ -0,0 +1,242 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded queue of tasks to be run by an I/O reactor thread.
+ * <p>
+ * Tasks can be submitted by any thread, while only the I/O reactor thread
+ * may take tasks off the queue. Delayed tasks travel through the same queue
+ * and are moved onto a deadline ordered heap once picked up by the I/O
+ * reactor thread. Tasks are taken off the queue in batches. The number of
+ * tasks run per batch is limited by the task budget, so that a steady stream
+ * of tasks cannot hold up the processing of I/O events.
+ */
+final class TaskQueue {
+
+    private final Queue<Runnable> queue;
+    private final AtomicInteger size;
+    private final int capacity;
+    private final int budget;
+    private final PriorityQueue<ScheduledTask> scheduledTasks;
+
+    private int remaining;
+    private long sequence;
+
+    /**
+     * Creates new TaskQueue instance.
+     *
+     * @param capacity maximum number of tasks pending pick up by the I/O
+     *   reactor thread.
+     * @param budget maximum number of tasks run per batch or <code>0</code>
+     *   if unlimited.
+     */
+    TaskQueue(int capacity, int budget) {
+        super();
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity may not be negative or zero");
+        }
+        if (budget < 0) {
+            throw new IllegalArgumentException("Budget may not be negative");
+        }
+        this.queue = new ConcurrentLinkedQueue<Runnable>();
+        this.size = new AtomicInteger(0);
+        this.capacity = capacity;
+        this.budget = budget;
+        this.scheduledTasks = new PriorityQueue<ScheduledTask>();
+        this.remaining = budget;
+        this.sequence = 0;
+    }
+
+    /**
+     * Adds the task to the queue. This method can be called by any thread.
+     *
+     * @param task the task.
+     * @return <code>true</code> if the task has been queued,
+     *   <code>false</code> if the queue is full.
+     */
+    boolean add(final Runnable task) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task may not be null");
+        }
+        int n;
+        do {
+            n = this.size.get();
+            if (n >= this.capacity) {
+                return false;
+            }
+        } while (!this.size.compareAndSet(n, n + 1));
+        this.queue.add(task);
+        return true;
+    }
+
+    /**
+     * Adds the task to the queue to be run once the given delay elapses.
+     * The delay is measured from the moment of this method call. This method
+     * can be called by any thread.
+     *
+     * @param task the task.
+     * @param delay the delay in milliseconds.
+     * @return <code>true</code> if the task has been queued,
+     *   <code>false</code> if the queue is full.
+     */
+    boolean schedule(final Runnable task, long delay) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task may not be null");
+        }
+        if (delay < 0) {
+            throw new IllegalArgumentException("Delay may not be negative");
+        }
+        return add(new ScheduledTask(task, delay));
+    }
+
+    /**
+     * Starts a new batch resetting the task budget.
+     */
+    void beginBatch() {
+        this.remaining = this.budget;
+    }
+
+    /**
+     * Returns the next task to be run in the current batch: a delayed task
+     * whose deadline has expired or else a task from the queue. This method
+     * may be called by the I/O reactor thread only.
+     *
+     * @param now current time as supplied by the I/O reactor clock.
+     * @return the task or <code>null</code> if there are no tasks ready
+     *   to be run or the task budget of the current batch has been exhausted.
+     */
+    Runnable poll(long now) {
+        if (this.budget > 0 && this.remaining <= 0) {
+            return null;
+        }
+        ScheduledTask scheduledTask = this.scheduledTasks.peek();
+        if (scheduledTask != null && scheduledTask.deadline <= now) {
+            this.scheduledTasks.poll();
+            this.remaining--;
+            return scheduledTask.task;
+        }
+        Runnable task;
+        while ((task = this.queue.poll()) != null) {
+            this.size.decrementAndGet();
+            if (task instanceof ScheduledTask) {
+                scheduledTask = (ScheduledTask) task;
+                long elapsed = (System.nanoTime() - scheduledTask.submitted) / 1000000;
+                scheduledTask.deadline = now + Math.max(0, scheduledTask.delay - elapsed);
+                scheduledTask.seqNo = this.sequence++;
+                if (scheduledTask.deadline > now) {
+                    this.scheduledTasks.add(scheduledTask);
+                    continue;
+                }
+                task = scheduledTask.task;
+            }
+            this.remaining--;
+            return task;
+        }
+        return null;
+    }
+
+    /**
+     * Determines whether there are tasks that have not been picked up
+     * by the I/O reactor thread yet.
+     */
+    boolean hasPendingTasks() {
+        return this.size.get() > 0;
+    }
+
+    /**
+     * Returns the deadline of the earliest delayed task picked up by the I/O
+     * reactor thread or {@link Long#MAX_VALUE} if none. This method may be
+     * called by the I/O reactor thread only.
+     */
+    long nextDeadline() {
+        ScheduledTask scheduledTask = this.scheduledTasks.peek();
+        return scheduledTask != null ? scheduledTask.deadline : Long.MAX_VALUE;
+    }
+
+    /**
+     * Discards all tasks that have not been picked up by the I/O reactor
+     * thread yet, cancelling those that implement {@link CancellableTask}.
+     * This method can be called by any thread.
+     */
+    void cancelPending() {
+        Runnable task;
+        while ((task = this.queue.poll()) != null) {
+            this.size.decrementAndGet();
+            cancel(task);
+        }
+    }
+
+    /**
+     * Discards all pending tasks, cancelling those that implement
+     * {@link CancellableTask}. This method may be called by the I/O reactor
+     * thread only.
+     */
+    void clear() {
+        cancelPending();
+        ScheduledTask scheduledTask;
+        while ((scheduledTask = this.scheduledTasks.poll()) != null) {
+            cancel(scheduledTask);
+        }
+    }
+
+    private static void cancel(final Runnable task) {
+        Runnable target = task;
+        if (target instanceof ScheduledTask) {
+            target = ((ScheduledTask) target).task;
+        }
+        if (target instanceof CancellableTask) {
+            ((CancellableTask) target).cancel();
+        }
+    }
+
+    static class ScheduledTask implements Runnable, Comparable<ScheduledTask> {
+
+        final Runnable task;
+        final long delay;
+        final long submitted;
+
+        long deadline;
+        long seqNo;
+
+        ScheduledTask(final Runnable task, long delay) {
+            super();
+            this.task = task;
+            this.delay = delay;
+            this.submitted = System.nanoTime();
+        }
+
+        public void run() {
+            this.task.run();
+        }
+
+        public int compareTo(final ScheduledTask other) {
+            if (this.deadline != other.deadline) {
+                return this.deadline < other.deadline ? -1 : 1;
+            }
+            if (this.seqNo != other.seqNo) {
+                return this.seqNo < other.seqNo ? -1 : 1;
+            }
+            return 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,311 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.util.Arrays;
+
+/**
+ * Hashed timing wheel used by I/O reactors to keep track of session and
+ * session request deadlines. Scheduling and cancelling an entry are constant
+ * time operations. Expired entries are found by visiting only those wheel
+ * buckets whose ticks have elapsed since the last expiry pass, so the cost of
+ * a pass is proportional to the number of entries hashed into the elapsed
+ * buckets rather than to the total number of scheduled entries.
+ * <p>
+ * Each bucket keeps track of the earliest deadline tick of its entries,
+ * so that the next expiry time can be found without visiting the entries
+ * themselves.
+ * <p>
+ * Entries are linked into the wheel intrusively, therefore scheduling does
+ * not allocate. Instances of this class are not threading safe and are
+ * expected to be accessed by the I/O reactor thread only.
+ */
+public class TimingWheel {
+
+    public static final long DEFAULT_TICK_DURATION = 100;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final long tickDuration;
+    private final Entry[] buckets;
+    private final long[] minTicks;
+    private final int mask;
+
+    private long currentTick;
+    private long nextExpiry;
+    private int size;
+
+    /**
+     * Creates new TimingWheel instance.
+     *
+     * @param tickDuration duration of one tick in milliseconds.
+     * @param wheelSize number of buckets. Will be rounded up to the next
+     *   power of two.
+     * @param now current time.
+     */
+    public TimingWheel(long tickDuration, int wheelSize, long now) {
+        super();
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration may not be negative or zero");
+        }
+        if (wheelSize <= 0) {
+            throw new IllegalArgumentException("Wheel size may not be negative or zero");
+        }
+        int n = 1;
+        while (n < wheelSize) {
+            n <<= 1;
+        }
+        this.tickDuration = tickDuration;
+        this.buckets = new Entry[n];
+        this.minTicks = new long[n];
+        Arrays.fill(this.minTicks, Long.MAX_VALUE);
+        this.mask = n - 1;
+        this.currentTick = now / tickDuration;
+        this.nextExpiry = -1;
+        this.size = 0;
+    }
+
+    public TimingWheel(long now) {
+        this(DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE, now);
+    }
+
+    /**
+     * Returns duration of one tick in milliseconds.
+     *
+     * @return tick duration.
+     */
+    public long getTickDuration() {
+        return this.tickDuration;
+    }
+
+    /**
+     * Returns the number of entries currently scheduled.
+     *
+     * @return number of scheduled entries.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Determines whether there are no entries scheduled.
+     *
+     * @return <code>true</code> if no entries are scheduled,
+     *   <code>false</code> otherwise.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Schedules the given entry to expire at the given deadline. If the entry
+     * is already scheduled it will be moved.
+     *
+     * @param entry the entry.
+     * @param deadline the deadline.
+     */
+    public void schedule(final Entry entry, long deadline) {
+        if (entry == null) {
+            throw new IllegalArgumentException("Entry may not be null");
+        }
+        if (entry.wheel != null) {
+            entry.wheel.unlink(entry);
+        }
+        long tick = deadline / this.tickDuration;
+        if (tick < this.currentTick) {
+            // Already overdue. Expire on the next pass
+            tick = this.currentTick;
+        }
+        int idx = (int) (tick & this.mask);
+        entry.deadline = deadline;
+        entry.wheel = this;
+        entry.bucket = idx;
+        entry.prev = null;
+        entry.next = this.buckets[idx];
+        if (entry.next != null) {
+            entry.next.prev = entry;
+        }
+        this.buckets[idx] = entry;
+        this.minTicks[idx] = Math.min(this.minTicks[idx], tick);
+        this.size++;
+        if (this.nextExpiry != -1) {
+            this.nextExpiry = Math.min(this.nextExpiry, (tick + 1) * this.tickDuration);
+        }
+    }
+
+    /**
+     * Removes the given entry from the wheel. This method has no effect if the
+     * entry is not scheduled.
+     *
+     * @param entry the entry.
+     */
+    public void cancel(final Entry entry) {
+        if (entry != null && entry.wheel == this) {
+            unlink(entry);
+        }
+    }
+
+    private void unlink(final Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            this.buckets[entry.bucket] = entry.next;
+            if (entry.next == null) {
+                this.minTicks[entry.bucket] = Long.MAX_VALUE;
+            }
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+        entry.wheel = null;
+        this.size--;
+    }
+
+    /**
+     * Advances the wheel to the given time, removing all entries whose
+     * deadline tick has elapsed and passing them to the given callback.
+     * Entries expire no later than one tick after their deadline. The
+     * callback may re-schedule expired entries.
+     *
+     * @param now current time.
+     * @param callback the expiry callback.
+     * @return number of expired entries.
+     */
+    public int expire(long now, final ExpiryCallback callback) {
+        long tick = now / this.tickDuration;
+        if (tick <= this.currentTick) {
+            // No tick elapsed since the last pass (or the clock went backwards)
+            return 0;
+        }
+        this.nextExpiry = -1;
+        if (this.size == 0) {
+            this.currentTick = tick;
+            return 0;
+        }
+        long first = this.currentTick;
+        long last = tick - 1;
+        if (last - first > this.mask) {
+            // Visit each bucket no more than once
+            first = last - this.mask;
+        }
+        Entry expired = null;
+        int count = 0;
+        for (long t = first; t <= last; t++) {
+            int idx = (int) (t & this.mask);
+            if (this.minTicks[idx] > last) {
+                // Nothing due in this bucket
+                continue;
+            }
+            long minTick = Long.MAX_VALUE;
+            Entry entry = this.buckets[idx];
+            while (entry != null) {
+                Entry next = entry.next;
+                long entryTick = entry.deadline / this.tickDuration;
+                if (entryTick <= last) {
+                    unlink(entry);
+                    entry.next = expired;
+                    expired = entry;
+                    count++;
+                } else {
+                    minTick = Math.min(minTick, entryTick);
+                }
+                entry = next;
+            }
+            this.minTicks[idx] = minTick;
+        }
+        this.currentTick = tick;
+        // Run callbacks only once the wheel is in a consistent state
+        while (expired != null) {
+            Entry entry = expired;
+            expired = entry.next;
+            entry.next = null;
+            callback.expired(entry, now);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the earliest time the next {@link #expire(long, ExpiryCallback)}
+     * pass may find an expired entry, or {@link Long#MAX_VALUE} if there are
+     * no entries scheduled. The value is a lower bound: entries hashed into
+     * the wheel further than one revolution ahead or cancelled since
+     * the value was computed may cause an early pass that expires nothing.
+     * <p>
+     * The cost of this method is bounded by the number of wheel buckets
+     * regardless of the number of scheduled entries.
+     *
+     * @return time of the next expiry or {@link Long#MAX_VALUE}.
+     */
+    public long nextDeadline() {
+        if (this.size == 0) {
+            return Long.MAX_VALUE;
+        }
+        if (this.nextExpiry == -1) {
+            long last = this.currentTick + this.mask;
+            long next = (last + 1) * this.tickDuration;
+            for (long t = this.currentTick; t <= last; t++) {
+                if (this.minTicks[(int) (t & this.mask)] <= t) {
+                    // Entries get expired once their tick has elapsed
+                    next = (t + 1) * this.tickDuration;
+                    break;
+                }
+            }
+            this.nextExpiry = next;
+        }
+        return this.nextExpiry;
+    }
+
+    /**
+     * Callback interface used to notify of expired wheel entries.
+     */
+    public interface ExpiryCallback {
+
+        void expired(Entry entry, long now);
+
+    }
+
+    /**
+     * Base class for objects that can be scheduled with a {@link TimingWheel}.
+     */
+    public static abstract class Entry {
+
+        private TimingWheel wheel;
+        private Entry prev;
+        private Entry next;
+        private int bucket;
+        private long deadline;
+
+        /**
+         * Returns the deadline this entry has been scheduled to expire at.
+         *
+         * @return the deadline.
+         */
+        public long getDeadline() {
+            return this.deadline;
+        }
+
+        /**
+         * Determines whether the entry is currently scheduled.
+         *
+         * @return <code>true</code> if scheduled, <code>false</code> otherwise.
+         */
+        public boolean isScheduled() {
+            return this.wheel != null;
+        }
+
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+/**
+ * Strategy used by {@link AbstractMultiworkerIOReactor} to decide which
+ * worker I/O reactor a newly created channel is to be assigned to.
+ * <p>
+ * Implementations can base the decision upon the load figures reported by
+ * the worker I/O reactors such as {@link AbstractIOReactor#getSessionCount()},
+ * {@link AbstractIOReactor#getPendingChannelCount()} and
+ * {@link AbstractIOReactor#getLoopLatency()}. Implementations must be
+ * threading safe as new channels may be assigned by several threads
+ * concurrently.
+ */
+public interface WorkerSelector {
+
+    /**
+     * Selects the worker I/O reactor for the given channel entry.
+     * The array of worker I/O reactors must not be modified.
+     *
+     * @param entry the channel entry.
+     * @param workers the worker I/O reactors.
+     * @return the index of the selected worker I/O reactor.
+     */
+    int select(ChannelEntry entry, BaseIOReactor[] workers);
+
+}
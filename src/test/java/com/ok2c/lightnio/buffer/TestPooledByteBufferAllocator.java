@@ -0,0 +1,191 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PooledByteBufferAllocator}.
+ */
+public class TestPooledByteBufferAllocator {
+
+    @Test
+    public void testSizeClasses() throws Exception {
+        PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(false, 64, 1024, 4, 4);
+        ByteBuffer b1 = allocator.allocate(10);
+        Assert.assertEquals(64, b1.capacity());
+        Assert.assertEquals(10, b1.limit());
+        Assert.assertEquals(0, b1.position());
+        ByteBuffer b2 = allocator.allocate(65);
+        Assert.assertEquals(128, b2.capacity());
+        ByteBuffer b3 = allocator.allocate(1024);
+        Assert.assertEquals(1024, b3.capacity());
+        // Not pooled
+        ByteBuffer b4 = allocator.allocate(1025);
+        Assert.assertEquals(1025, b4.capacity());
+        Assert.assertEquals(4, allocator.getAllocatedCount());
+    }
+
+    @Test
+    public void testThreadCache() throws Exception {
+        PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(false, 64, 1024, 4, 4);
+        ByteBuffer b1 = allocator.allocate(100);
+        b1.put((byte) 1);
+        allocator.release(b1);
+        ByteBuffer b2 = allocator.allocate(128);
+        Assert.assertSame(b1, b2);
+        Assert.assertEquals(0, b2.position());
+        Assert.assertEquals(128, b2.limit());
+        Assert.assertEquals(1, allocator.getReusedCount());
+        Assert.assertEquals(0, allocator.getArenaSize());
+
+        // Foreign buffers are not pooled
+        allocator.release(ByteBuffer.allocate(100));
+        allocator.release(ByteBuffer.allocateDirect(128));
+        Assert.assertNotSame(b1, allocator.allocate(128));
+        Assert.assertEquals(1, allocator.getReusedCount());
+    }
+
+    @Test
+    public void testSharedArena() throws Exception {
+        final PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(true, 64, 1024, 0, 1);
+        ByteBuffer b1 = allocator.allocate(256);
+        ByteBuffer b2 = allocator.allocate(256);
+        Assert.assertTrue(b1.isDirect());
+        allocator.release(b1);
+        // Arena full
+        allocator.release(b2);
+        Assert.assertEquals(1, allocator.getArenaSize());
+
+        final AtomicReference<ByteBuffer> ref = new AtomicReference<ByteBuffer>();
+        Thread thread = new Thread(new Runnable() {
+
+            public void run() {
+                ref.set(allocator.allocate(200));
+            }
+
+        });
+        thread.start();
+        thread.join(5000);
+        Assert.assertSame(b1, ref.get());
+        Assert.assertEquals(0, allocator.getArenaSize());
+    }
+
+    static class TestBuffer extends ExpandableBuffer {
+
+        TestBuffer(int buffersize, final ByteBufferAllocator allocator) {
+            super(buffersize, allocator);
+        }
+
+        void put(final byte[] b) {
+            setInputMode();
+            ensureCapacity(this.buffer.position() + b.length);
+            this.buffer.put(b);
+        }
+
+        void take(int n) {
+            setOutputMode();
+            this.buffer.position(this.buffer.position() + n);
+        }
+
+        ByteBuffer getBuffer() {
+            return this.buffer;
+        }
+
+    }
+
+    @Test
+    public void testExpandableBufferRelease() throws Exception {
+        PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(false, 64, 1024, 4, 4);
+        TestBuffer buffer = new TestBuffer(100, allocator);
+        ByteBuffer initial = buffer.getBuffer();
+        Assert.assertEquals(128, buffer.available());
+        buffer.put(new byte[200]);
+        Assert.assertEquals(200, buffer.length());
+        // The outgrown buffer has been returned
+        Assert.assertSame(initial, allocator.allocate(128));
+
+        ByteBuffer expanded = buffer.getBuffer();
+        buffer.release();
+        Assert.assertEquals(0, buffer.capacity());
+        Assert.assertFalse(buffer.hasData());
+        Assert.assertSame(expanded, allocator.allocate(256));
+
+        // Usable after release
+        buffer.put(new byte[] { 1, 2, 3 });
+        Assert.assertEquals(3, buffer.length());
+        Assert.assertEquals(128, buffer.capacity());
+    }
+
+    @Test
+    public void testShrinkOnLowUsage() throws Exception {
+        PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(false, 64, 4096, 4, 4);
+        TestBuffer buffer = new TestBuffer(128, allocator);
+        buffer.setShrinkPolicy(2, 0.25f, false);
+        buffer.put(new byte[1000]);
+        buffer.take(1000);
+        Assert.assertEquals(1024, buffer.capacity());
+
+        // Two low usage cycles halve the capacity
+        buffer.put(new byte[10]);
+        buffer.take(10);
+        buffer.put(new byte[10]);
+        buffer.take(10);
+        buffer.put(new byte[10]);
+        Assert.assertEquals(512, buffer.capacity());
+        Assert.assertEquals(10, buffer.length());
+
+        // High usage resets the count
+        buffer.take(10);
+        buffer.put(new byte[10]);
+        buffer.take(10);
+        buffer.put(new byte[300]);
+        buffer.take(300);
+        buffer.put(new byte[10]);
+        buffer.take(10);
+        buffer.put(new byte[10]);
+        Assert.assertEquals(512, buffer.capacity());
+        buffer.take(10);
+        for (int i = 0; i < 10; i++) {
+            buffer.put(new byte[10]);
+            buffer.take(10);
+        }
+        buffer.put(new byte[10]);
+        // Never below the initial size
+        Assert.assertEquals(128, buffer.capacity());
+        Assert.assertTrue(allocator.getReusedCount() > 0);
+    }
+
+    @Test
+    public void testShrinkOnDrain() throws Exception {
+        PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(false, 64, 4096, 4, 4);
+        TestBuffer buffer = new TestBuffer(128, allocator);
+        buffer.setShrinkPolicy(0, 0.25f, true);
+        buffer.put(new byte[1000]);
+        buffer.take(500);
+        buffer.put(new byte[10]);
+        // Not drained yet
+        Assert.assertEquals(1024, buffer.capacity());
+        buffer.take(510);
+        buffer.put(new byte[10]);
+        Assert.assertEquals(128, buffer.capacity());
+        Assert.assertEquals(10, buffer.length());
+    }
+
+}
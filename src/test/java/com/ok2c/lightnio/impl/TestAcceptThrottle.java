@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link AcceptThrottle}.
+ */
+public class TestAcceptThrottle {
+
+    @Test
+    public void testWatermarks() throws Exception {
+        IOReactorConfig config = new IOReactorConfig();
+        Assert.assertFalse(AcceptThrottle.isEnabled(config));
+        config.setPendingChannelWatermarks(2, 8);
+        config.setSessionWatermarks(50, 100);
+        Assert.assertTrue(AcceptThrottle.isEnabled(config));
+
+        AcceptMetrics acceptMetrics = new AcceptMetrics();
+        AcceptThrottle throttle = new AcceptThrottle(config, acceptMetrics);
+        Assert.assertFalse(throttle.update(Long.MAX_VALUE, 7, 99));
+        Assert.assertTrue(throttle.update(0, 8, 0));
+        Assert.assertEquals(1, acceptMetrics.getThrottleCount());
+        // Pending channels below the high-water mark but above the low-water mark
+        Assert.assertTrue(throttle.update(0, 3, 0));
+        // Pending channels at the low-water mark but sessions above theirs
+        Assert.assertTrue(throttle.update(0, 2, 51));
+        Assert.assertFalse(throttle.update(0, 2, 50));
+        Assert.assertTrue(throttle.update(0, 0, 100));
+        Assert.assertEquals(2, acceptMetrics.getThrottleCount());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidWatermarks() throws Exception {
+        IOReactorConfig config = new IOReactorConfig();
+        config.setLoopLatencyWatermarks(10, 5);
+    }
+
+    @Test
+    public void testSuspendAndResume() throws Exception {
+        IOReactorConfig config = new IOReactorConfig();
+        config.setSessionWatermarks(0, 1);
+        AcceptMetrics acceptMetrics = new AcceptMetrics();
+        AcceptThrottle throttle = new AcceptThrottle(config, acceptMetrics);
+
+        Selector selector = Selector.open();
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.configureBlocking(false);
+            serverChannel.socket().bind(new InetSocketAddress(0));
+            SelectionKey key = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+            Assert.assertTrue(throttle.update(0, 0, 1));
+            throttle.suspend(key);
+            Assert.assertEquals(0, key.interestOps());
+            Assert.assertEquals(1, acceptMetrics.getDeferredCount());
+
+            Assert.assertFalse(throttle.update(0, 0, 0));
+            Assert.assertEquals(SelectionKey.OP_ACCEPT, key.interestOps());
+
+            // Suspending after the overload has cleared resumes immediately
+            throttle.suspend(key);
+            Assert.assertEquals(SelectionKey.OP_ACCEPT, key.interestOps());
+        } finally {
+            serverChannel.close();
+            selector.close();
+        }
+    }
+
+}
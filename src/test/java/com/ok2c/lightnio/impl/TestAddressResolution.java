@@ -0,0 +1,139 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ok2c.lightnio.SessionRequest;
+import com.ok2c.lightnio.testprotocol.NoOpSimpleProtocolHandler;
+import com.ok2c.lightnio.testprotocol.SimpleIOEventDispatch;
+
+/**
+ * Tests for asynchronous resolution of remote addresses by
+ * {@link DefaultConnectingIOReactor}.
+ */
+public class TestAddressResolution {
+
+    static class CountingResolver extends InMemoryAddressResolver {
+
+        final AtomicInteger count = new AtomicInteger(0);
+
+        @Override
+        public InetAddress[] resolve(final String host) throws UnknownHostException {
+            this.count.incrementAndGet();
+            return super.resolve(host);
+        }
+
+    }
+
+    @Test
+    public void testAddressCache() throws Exception {
+        AddressCache cache = new AddressCache(2, 1000, 100);
+        InetAddress[] addresses = new InetAddress[] { InetAddress.getByName("127.0.0.1") };
+        Assert.assertNull(cache.get("host1", 0));
+        cache.put("host1", addresses, 0);
+        Assert.assertSame(addresses, cache.get("HOST1", 999));
+        Assert.assertNull(cache.get("host1", 1000));
+
+        cache.putFailure("host2", 0);
+        try {
+            cache.get("host2", 99);
+            Assert.fail("UnknownHostException should have been thrown");
+        } catch (UnknownHostException expected) {
+        }
+        Assert.assertNull(cache.get("host2", 100));
+
+        cache.put("host1", addresses, 0);
+        cache.put("host2", addresses, 0);
+        cache.get("host1", 0);
+        cache.put("host3", addresses, 0);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNotNull(cache.get("host1", 0));
+        Assert.assertNull(cache.get("host2", 0));
+    }
+
+    @Test
+    public void testConnectUnresolved() throws Exception {
+        IOReactorConfig config = new IOReactorConfig();
+        config.setWorkerCount(1);
+        DefaultConnectingIOReactor ioReactor = new DefaultConnectingIOReactor(config);
+        CountingResolver resolver = new CountingResolver();
+        resolver.add("test.host", InetAddress.getByName("127.0.0.1"));
+        ioReactor.setAddressResolver(resolver);
+
+        ServerSocket serverSocket = new ServerSocket(0, 50);
+        Thread thread = start(ioReactor);
+        try {
+            int port = serverSocket.getLocalPort();
+            InetSocketAddress address = InetSocketAddress.createUnresolved("test.host", port);
+            SessionRequest[] requests = new SessionRequest[5];
+            for (int i = 0; i < requests.length; i++) {
+                requests[i] = ioReactor.connect(address, null, null, null);
+            }
+            for (int i = 0; i < requests.length; i++) {
+                requests[i].waitFor();
+                Assert.assertNull(requests[i].getException());
+                Assert.assertNotNull(requests[i].getSession());
+                Assert.assertSame(address, requests[i].getRemoteAddress());
+            }
+            int count = resolver.count.get();
+            Assert.assertTrue(count >= 1 && count <= requests.length);
+
+            // Served from the cache
+            SessionRequest request = ioReactor.connect(address, null, null, null);
+            request.waitFor();
+            Assert.assertNotNull(request.getSession());
+            Assert.assertEquals(count, resolver.count.get());
+
+            // Negative caching
+            InetSocketAddress unknown = InetSocketAddress.createUnresolved("unknown.host", port);
+            for (int i = 0; i < 2; i++) {
+                request = ioReactor.connect(unknown, null, null, null);
+                request.waitFor();
+                Assert.assertNull(request.getSession());
+                Assert.assertTrue(request.getException() instanceof UnknownHostException);
+            }
+            Assert.assertEquals(count + 1, resolver.count.get());
+        } finally {
+            serverSocket.close();
+            ioReactor.shutdown();
+            thread.join(5000);
+        }
+    }
+
+    private static Thread start(final DefaultConnectingIOReactor ioReactor) {
+        Thread thread = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    ioReactor.execute(new SimpleIOEventDispatch(
+                            "client", new NoOpSimpleProtocolHandler()));
+                } catch (Exception ex) {
+                }
+            }
+
+        });
+        thread.start();
+        return thread;
+    }
+
+}
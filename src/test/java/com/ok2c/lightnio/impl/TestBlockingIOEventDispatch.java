@@ -0,0 +1,157 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ok2c.lightnio.ListenerEndpoint;
+
+/**
+ * Tests for {@link BlockingIOEventDispatch}.
+ */
+public class TestBlockingIOEventDispatch {
+
+    static class EchoHandler implements BlockingSessionHandler {
+
+        public void handle(final BlockingIOSession session) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            while (session.read(buffer) != -1) {
+                buffer.flip();
+                session.write(buffer);
+                buffer.clear();
+            }
+        }
+
+    }
+
+    private DefaultListeningIOReactor ioReactor;
+    private Thread thread;
+
+    private int start(final BlockingIOEventDispatch dispatch) throws Exception {
+        IOReactorConfig config = new IOReactorConfig();
+        config.setWorkerCount(2);
+        this.ioReactor = new DefaultListeningIOReactor(config);
+        this.thread = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    ioReactor.execute(dispatch);
+                } catch (IOException ex) {
+                }
+            }
+
+        });
+        this.thread.start();
+        ListenerEndpoint endpoint = this.ioReactor.listen(new InetSocketAddress("localhost", 0));
+        endpoint.waitFor();
+        return ((InetSocketAddress) endpoint.getAddress()).getPort();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.ioReactor != null) {
+            this.ioReactor.shutdown();
+            this.thread.join(5000);
+        }
+    }
+
+    @Test
+    public void testEcho() throws Exception {
+        int port = start(new BlockingIOEventDispatch(new EchoHandler()));
+        final byte[] data = new byte[1024 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        final Socket socket = new Socket("localhost", port);
+        socket.setSoTimeout(5000);
+        try {
+            // Large enough for both peers to run into full socket buffers
+            Thread writer = new Thread(new Runnable() {
+
+                public void run() {
+                    try {
+                        OutputStream out = socket.getOutputStream();
+                        out.write(data);
+                        out.flush();
+                    } catch (IOException ex) {
+                    }
+                }
+
+            });
+            writer.start();
+            InputStream in = socket.getInputStream();
+            byte[] echoed = new byte[data.length];
+            int off = 0;
+            while (off < echoed.length) {
+                int n = in.read(echoed, off, echoed.length - off);
+                Assert.assertTrue(n != -1);
+                off += n;
+            }
+            writer.join(5000);
+            Assert.assertArrayEquals(data, echoed);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        final List<Exception> exceptions = new CopyOnWriteArrayList<Exception>();
+        final CountDownLatch done = new CountDownLatch(1);
+        BlockingSessionHandler handler = new BlockingSessionHandler() {
+
+            public void handle(final BlockingIOSession session) throws IOException {
+                session.setSocketTimeout(200);
+                try {
+                    session.read(ByteBuffer.allocate(16));
+                } catch (SocketTimeoutException ex) {
+                    exceptions.add(ex);
+                    session.write(ByteBuffer.wrap(new byte[] { 42 }));
+                } finally {
+                    done.countDown();
+                }
+            }
+
+        };
+        int port = start(new BlockingIOEventDispatch(handler));
+        Socket socket = new Socket("localhost", port);
+        socket.setSoTimeout(5000);
+        try {
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(1, exceptions.size());
+            InputStream in = socket.getInputStream();
+            Assert.assertEquals(42, in.read());
+            // Closed once the handler returns
+            Assert.assertEquals(-1, in.read());
+        } finally {
+            socket.close();
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ok2c.lightnio.SessionRequest;
+import com.ok2c.lightnio.testprotocol.NoOpSimpleProtocolHandler;
+import com.ok2c.lightnio.testprotocol.SimpleIOEventDispatch;
+
+/**
+ * Tests for connect attempts racing against each other.
+ */
+public class TestConnectRace {
+
+    private DefaultConnectingIOReactor ioReactor;
+    private Thread thread;
+    private ServerSocket serverSocket;
+    private InetAddress loopback;
+
+    @Before
+    public void setUp() throws Exception {
+        IOReactorConfig config = new IOReactorConfig();
+        config.setWorkerCount(1);
+        config.setConnectAttemptDelay(100);
+        this.ioReactor = new DefaultConnectingIOReactor(config);
+        this.thread = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    ioReactor.execute(new SimpleIOEventDispatch(
+                            "client", new NoOpSimpleProtocolHandler()));
+                } catch (Exception ex) {
+                }
+            }
+
+        });
+        this.thread.start();
+        this.loopback = InetAddress.getByName("127.0.0.1");
+        this.serverSocket = new ServerSocket(0, 50, this.loopback);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.serverSocket.close();
+        this.ioReactor.shutdown();
+        this.thread.join(5000);
+    }
+
+    private int closedPort() throws Exception {
+        ServerSocket socket = new ServerSocket(0, 1, this.loopback);
+        int port = socket.getLocalPort();
+        socket.close();
+        return port;
+    }
+
+    @Test
+    public void testFailedAttemptSkipped() throws Exception {
+        InetSocketAddress dead = new InetSocketAddress(this.loopback, closedPort());
+        InetSocketAddress live = new InetSocketAddress(this.loopback, this.serverSocket.getLocalPort());
+        List<SocketAddress> candidates = new ArrayList<SocketAddress>();
+        candidates.add(dead);
+        candidates.add(live);
+
+        SessionRequest request = this.ioReactor.connectAny(candidates, null, null, null);
+        request.waitFor();
+        Assert.assertNull(request.getException());
+        Assert.assertNotNull(request.getSession());
+        Assert.assertEquals(dead, request.getRemoteAddress());
+        Assert.assertEquals(live, request.getConnectedAddress());
+    }
+
+    @Test
+    public void testAllAttemptsFailed() throws Exception {
+        List<SocketAddress> candidates = new ArrayList<SocketAddress>();
+        candidates.add(new InetSocketAddress(this.loopback, closedPort()));
+        candidates.add(new InetSocketAddress(this.loopback, closedPort()));
+
+        SessionRequest request = this.ioReactor.connectAny(candidates, null, null, null);
+        request.waitFor();
+        Assert.assertNull(request.getSession());
+        Assert.assertNotNull(request.getException());
+        Assert.assertNull(request.getConnectedAddress());
+    }
+
+    @Test
+    public void testResolvedCandidates() throws Exception {
+        InMemoryAddressResolver resolver = new InMemoryAddressResolver();
+        // Nothing listens on the first address
+        resolver.add("test.host", InetAddress.getByName("127.0.0.2"), this.loopback);
+        this.ioReactor.setAddressResolver(resolver);
+
+        int port = this.serverSocket.getLocalPort();
+        SessionRequest request = this.ioReactor.connect(
+                InetSocketAddress.createUnresolved("test.host", port), null, null, null);
+        request.waitFor();
+        Assert.assertNull(request.getException());
+        Assert.assertNotNull(request.getSession());
+        Assert.assertEquals(new InetSocketAddress(this.loopback, port), request.getConnectedAddress());
+    }
+
+}
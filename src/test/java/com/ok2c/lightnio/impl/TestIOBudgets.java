@@ -0,0 +1,237 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ok2c.lightnio.IOReactorException;
+import com.ok2c.lightnio.IOSession;
+
+/**
+ * Tests for the per-loop and per-session I/O budgets of {@link BaseIOReactor}.
+ */
+public class TestIOBudgets {
+
+    static class LoopCountingIOReactor extends BaseIOReactor {
+
+        volatile int loops;
+
+        LoopCountingIOReactor(final IOReactorConfig config) throws IOReactorException {
+            super(config);
+        }
+
+        @Override
+        protected void validate() {
+            super.validate();
+            this.loops++;
+        }
+
+    }
+
+    class RecordingDispatch extends TestTaskQueue.NoopDispatch {
+
+        @Override
+        public void connected(final IOSession session) {
+            session.setAttribute("name", sessions.size() == 0 ? "a" : "b");
+            session.setEventMask(0);
+            sessions.add(session);
+            connected.countDown();
+        }
+
+        @Override
+        public void inputReady(final IOSession session) {
+            ByteBuffer dst = ByteBuffer.allocate(4096);
+            try {
+                while (session.channel().read(dst) > 0) {
+                    dst.clear();
+                }
+            } catch (IOException ex) {
+                session.close();
+            }
+            events.add(session.getAttribute("name") + "-in@" + ioReactor.loops);
+        }
+
+        @Override
+        public void outputReady(final IOSession session) {
+            events.add(session.getAttribute("name") + "-out@" + ioReactor.loops);
+            session.clearEvent(SelectionKey.OP_WRITE);
+        }
+
+    }
+
+    private LoopCountingIOReactor ioReactor;
+    private Thread thread;
+    private ServerSocketChannel serverChannel;
+    private SocketChannel clientA;
+    private SocketChannel clientB;
+    private CountDownLatch connected;
+    private List<IOSession> sessions;
+    private List<String> events;
+
+    @Before
+    public void setUp() throws Exception {
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.socket().bind(new InetSocketAddress("localhost", 0));
+        this.connected = new CountDownLatch(2);
+        this.sessions = new CopyOnWriteArrayList<IOSession>();
+        this.events = new CopyOnWriteArrayList<String>();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.ioReactor != null) {
+            this.ioReactor.shutdown();
+            this.thread.join(5000);
+        }
+        if (this.clientA != null) {
+            this.clientA.close();
+        }
+        if (this.clientB != null) {
+            this.clientB.close();
+        }
+        this.serverChannel.close();
+    }
+
+    private void start(final IOReactorConfig config, final RecordingDispatch dispatch) throws Exception {
+        this.ioReactor = new LoopCountingIOReactor(config);
+        this.thread = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    ioReactor.execute(dispatch);
+                } catch (Exception ex) {
+                }
+            }
+
+        });
+        this.thread.start();
+        this.clientA = SocketChannel.open(this.serverChannel.socket().getLocalSocketAddress());
+        this.ioReactor.addChannel(new ChannelEntry(this.serverChannel.accept()));
+        Assert.assertTrue(awaitSessions(1));
+        this.clientB = SocketChannel.open(this.serverChannel.socket().getLocalSocketAddress());
+        this.ioReactor.addChannel(new ChannelEntry(this.serverChannel.accept()));
+        Assert.assertTrue(this.connected.await(5, TimeUnit.SECONDS));
+    }
+
+    private boolean awaitSessions(int count) throws Exception {
+        for (int i = 0; i < 500 && this.sessions.size() < count; i++) {
+            Thread.sleep(10);
+        }
+        return this.sessions.size() >= count;
+    }
+
+    /**
+     * Sets the event masks of both sessions within the same I/O select loop.
+     */
+    private void setEventMasks(final int opsA, final int opsB) throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        this.ioReactor.execute(new Runnable() {
+
+            public void run() {
+                sessions.get(0).setEventMask(opsA);
+                sessions.get(1).setEventMask(opsB);
+                done.countDown();
+            }
+
+        });
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    private int findLoop(final String event) {
+        for (int i = 0; i < this.events.size(); i++) {
+            String s = this.events.get(i);
+            if (s.startsWith(event + "@")) {
+                return Integer.parseInt(s.substring(event.length() + 1));
+            }
+        }
+        return -1;
+    }
+
+    private int awaitEvent(final String event) throws Exception {
+        int loop = -1;
+        for (int i = 0; i < 500 && loop == -1; i++) {
+            Thread.sleep(10);
+            loop = findLoop(event);
+        }
+        return loop;
+    }
+
+    @Test
+    public void testDeferredSessionResumes() throws Exception {
+        IOReactorConfig config = new IOReactorConfig();
+        config.setSessionByteBudget(1024);
+        start(config, new RecordingDispatch());
+
+        // Session a receives more than its byte budget in one go
+        ByteBuffer src = ByteBuffer.allocate(8192);
+        while (src.hasRemaining()) {
+            this.clientA.write(src);
+        }
+        Thread.sleep(100);
+        setEventMasks(SelectionKey.OP_READ | SelectionKey.OP_WRITE, SelectionKey.OP_WRITE);
+
+        int resumed = awaitEvent("a-out");
+        Assert.assertTrue(resumed != -1);
+        int selected = findLoop("a-in");
+        Assert.assertTrue(selected != -1);
+        // Session b is not held up by session a
+        Assert.assertEquals(selected, findLoop("b-out"));
+        // Session a gets its write event in the next loop
+        Assert.assertEquals(selected + 1, resumed);
+    }
+
+    @Test
+    public void testDeferredEventNoLongerOfInterest() throws Exception {
+        IOReactorConfig config = new IOReactorConfig();
+        config.setLoopEventBudget(1);
+        start(config, new RecordingDispatch() {
+
+            @Override
+            public void outputReady(final IOSession session) {
+                super.outputReady(session);
+                // Lose interest in writing on behalf of both sessions
+                for (int i = 0; i < sessions.size(); i++) {
+                    sessions.get(i).clearEvent(SelectionKey.OP_WRITE);
+                }
+            }
+
+        });
+
+        setEventMasks(SelectionKey.OP_WRITE, SelectionKey.OP_WRITE);
+        for (int i = 0; i < 500 && this.events.isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertFalse(this.events.isEmpty());
+        // The session deferred by the loop budget must not be dispatched
+        // the write event it is no longer interested in
+        Thread.sleep(300);
+        Assert.assertEquals(1, this.events.size());
+    }
+
+}
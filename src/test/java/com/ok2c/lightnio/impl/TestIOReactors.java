@@ -17,8 +17,11 @@ package com.ok2c.lightnio.impl;
 import java.io.IOException;
 import java.net.BindException;
 import java.net.InetSocketAddress;
+import java.net.ServerSocket;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
@@ -28,6 +31,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import junit.framework.Assert;
 
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -102,6 +106,149 @@ public class TestIOReactors {
 
     @Test
     public void testBasicIO() throws Exception {
+        executeBasicIO();
+    }
+
+    @Test
+    public void testBasicIOInterestOpsQueueing() throws Exception {
+        this.testclient.shutdown(1000);
+        this.testserver.shutdown(1000);
+        IOReactorConfig config = new IOReactorConfig();
+        config.setWorkerCount(2);
+        config.setInterestOpsQueueing(true);
+        this.testclient = new SimpleClient(config);
+        this.testserver = new SimpleServer(config);
+        executeBasicIO();
+    }
+
+    @Test
+    public void testBasicIOOptimizedSelectedKeys() throws Exception {
+        Selector selector = Selector.open();
+        try {
+            // Newer JDKs deny access unless sun.nio.ch has been opened
+            Assume.assumeNotNull(SelectedKeySet.install(selector));
+        } finally {
+            selector.close();
+        }
+        this.testclient.shutdown(1000);
+        this.testserver.shutdown(1000);
+        IOReactorConfig config = new IOReactorConfig();
+        config.setWorkerCount(2);
+        config.setOptimizedSelectedKeys(true);
+        this.testclient = new SimpleClient(config);
+        this.testserver = new SimpleServer(config);
+        executeBasicIO();
+    }
+
+    @Test
+    public void testBasicIOWithBudgets() throws Exception {
+        this.testclient.shutdown(1000);
+        this.testserver.shutdown(1000);
+        IOReactorConfig config = new IOReactorConfig();
+        config.setWorkerCount(2);
+        config.setLoopEventBudget(4);
+        config.setSessionEventBudget(1);
+        config.setSessionByteBudget(256);
+        this.testclient = new SimpleClient(config);
+        this.testserver = new SimpleServer(config);
+        executeBasicIO();
+    }
+
+    @Test
+    public void testBasicIOReusePortAccept() throws Exception {
+        this.testclient.shutdown(1000);
+        this.testserver.shutdown(1000);
+        IOReactorConfig config = new IOReactorConfig();
+        config.setWorkerCount(2);
+        config.setReusePortAccept(true);
+        this.testclient = new SimpleClient(config);
+        this.testserver = new SimpleServer(config);
+        executeBasicIO();
+    }
+
+    @Test
+    public void testBasicIOAcceptBatch() throws Exception {
+        this.testclient.shutdown(1000);
+        this.testserver.shutdown(1000);
+        IOReactorConfig config = new IOReactorConfig();
+        config.setWorkerCount(2);
+        config.setAcceptBatchSize(4);
+        config.setBacklogSize(128);
+        this.testclient = new SimpleClient(config);
+        this.testserver = new SimpleServer(config);
+        executeBasicIO();
+
+        AcceptMetrics acceptMetrics = this.testserver.getAcceptMetrics();
+        Assert.assertEquals(50, acceptMetrics.getAcceptedCount());
+        Assert.assertTrue(acceptMetrics.getBatchCount() > 0);
+        Assert.assertTrue(acceptMetrics.getAcceptedPerWakeup() > 0);
+        Assert.assertEquals(0, acceptMetrics.getFailureCount());
+    }
+
+    @Test
+    public void testBasicIOWorkerConnect() throws Exception {
+        this.testclient.shutdown(1000);
+        this.testserver.shutdown(1000);
+        IOReactorConfig config = new IOReactorConfig();
+        config.setWorkerCount(2);
+        config.setWorkerConnect(true);
+        this.testclient = new SimpleClient(config);
+        this.testserver = new SimpleServer(config);
+        executeBasicIO();
+    }
+
+    @Test
+    public void testWorkerConnectRefused() throws Exception {
+        this.testclient.shutdown(1000);
+        IOReactorConfig config = new IOReactorConfig();
+        config.setWorkerCount(2);
+        config.setWorkerConnect(true);
+        this.testclient = new SimpleClient(config);
+        this.testclient.start(new SimpleClientProtocolHandler());
+
+        ServerSocket serverSocket = new ServerSocket(0);
+        int port = serverSocket.getLocalPort();
+        serverSocket.close();
+
+        SessionRequest sessionRequest = this.testclient.openConnection(
+                new InetSocketAddress("localhost", port), null);
+        sessionRequest.waitFor();
+        Assert.assertNull(sessionRequest.getSession());
+        Assert.assertNotNull(sessionRequest.getException());
+    }
+
+    @Test
+    public void testBulkConnect() throws Exception {
+        this.testclient.shutdown(1000);
+        IOReactorConfig config = new IOReactorConfig();
+        config.setWorkerCount(2);
+        config.setConnectBatchSize(4);
+        this.testclient = new SimpleClient(config);
+        this.testclient.start(new NoOpSimpleProtocolHandler());
+
+        ServerSocket serverSocket = new ServerSocket(0, 50);
+        try {
+            InetSocketAddress target = new InetSocketAddress("localhost", serverSocket.getLocalPort());
+            List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+            for (int i = 0; i < 20; i++) {
+                addresses.add(target);
+            }
+            List<SessionRequest> sessionRequests = this.testclient.openConnections(addresses, null);
+            Assert.assertEquals(20, sessionRequests.size());
+            for (int i = 0; i < sessionRequests.size(); i++) {
+                SessionRequest sessionRequest = sessionRequests.get(i);
+                sessionRequest.waitFor();
+                if (sessionRequest.getException() != null) {
+                    throw sessionRequest.getException();
+                }
+                Assert.assertNotNull(sessionRequest.getSession());
+            }
+        } finally {
+            serverSocket.close();
+        }
+    }
+
+    private void executeBasicIO() throws Exception {
         this.testserver.start(new SimpleServerProtocolHandler());
         this.testclient.start(new SimpleClientProtocolHandler());
 
@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ok2c.lightnio.EventMask;
+
+/**
+ * Unit tests for interest ops queueing in {@link IOSessionImpl}.
+ */
+public class TestInterestOpsQueueing {
+
+    static class QueuedSessions implements InterestOpsCallback {
+
+        final List<IOSessionImpl> sessions = new ArrayList<IOSessionImpl>();
+
+        public void addInterestOps(final IOSessionImpl session) {
+            this.sessions.add(session);
+        }
+
+    }
+
+    private Selector selector;
+    private SocketChannel channel;
+    private SelectionKey key;
+
+    @Before
+    public void setUp() throws Exception {
+        this.selector = Selector.open();
+        this.channel = SocketChannel.open();
+        this.channel.configureBlocking(false);
+        this.key = this.channel.register(this.selector, 0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.channel.close();
+        this.selector.close();
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        QueuedSessions queue = new QueuedSessions();
+        IOSessionImpl session = new IOSessionImpl(this.key, queue, null);
+
+        for (int i = 0; i < 10; i++) {
+            session.setEvent(EventMask.WRITE);
+            session.clearEvent(EventMask.WRITE);
+        }
+        session.setEventMask(EventMask.READ_WRITE);
+        session.clearEvent(EventMask.READ);
+
+        Assert.assertEquals(1, queue.sessions.size());
+        Assert.assertEquals(EventMask.WRITE, session.getEventMask());
+        Assert.assertEquals(0, this.key.interestOps());
+
+        session.applyInterestOps();
+        Assert.assertEquals(EventMask.WRITE, this.key.interestOps());
+
+        session.setEvent(EventMask.READ);
+        Assert.assertEquals(2, queue.sessions.size());
+        session.applyInterestOps();
+        Assert.assertEquals(EventMask.READ_WRITE, this.key.interestOps());
+    }
+
+    @Test
+    public void testClosedSession() throws Exception {
+        QueuedSessions queue = new QueuedSessions();
+        IOSessionImpl session = new IOSessionImpl(this.key, queue, null);
+        session.setEvent(EventMask.READ);
+        session.close();
+        // Must not fail on a cancelled key
+        session.applyInterestOps();
+        session.setEvent(EventMask.WRITE);
+        Assert.assertEquals(1, queue.sessions.size());
+    }
+
+}
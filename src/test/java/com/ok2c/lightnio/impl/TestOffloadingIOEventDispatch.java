@@ -0,0 +1,168 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ok2c.lightnio.EventMask;
+import com.ok2c.lightnio.IOSession;
+
+/**
+ * Unit tests for {@link OffloadingIOEventDispatch}.
+ */
+public class TestOffloadingIOEventDispatch {
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private SocketChannel clientChannel;
+    private SocketChannel channel;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.socket().bind(new InetSocketAddress("localhost", 0));
+        this.clientChannel = SocketChannel.open(this.serverChannel.socket().getLocalSocketAddress());
+        this.channel = this.serverChannel.accept();
+        this.channel.configureBlocking(false);
+        this.executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.executor.shutdownNow();
+        this.channel.close();
+        this.clientChannel.close();
+        this.serverChannel.close();
+        this.selector.close();
+    }
+
+    @Test
+    public void testOrderingAndSuspension() throws Exception {
+        SelectionKey key = this.channel.register(this.selector, EventMask.READ);
+        IOSessionImpl session = new IOSessionImpl(key, null);
+
+        final List<String> events = new CopyOnWriteArrayList<String>();
+        final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        TestTaskQueue.NoopDispatch handler = new TestTaskQueue.NoopDispatch() {
+
+            @Override
+            public void inputReady(final IOSession session) {
+                threads.add(Thread.currentThread());
+                events.add("in" + events.size());
+                if (events.size() == 1) {
+                    try {
+                        blocked.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                    }
+                }
+            }
+
+            @Override
+            public void timeout(final IOSession session) {
+                events.add("timeout");
+                done.countDown();
+            }
+
+        };
+        OffloadingIOEventDispatch dispatch = new OffloadingIOEventDispatch(handler, this.executor);
+        dispatch.connected(session);
+        dispatch.inputReady(session);
+        dispatch.inputReady(session);
+        dispatch.timeout(session);
+
+        // Input events are suspended while queued, the event mask is not
+        Assert.assertEquals(0, key.interestOps() & EventMask.READ);
+        Assert.assertEquals(EventMask.READ, session.getEventMask());
+
+        blocked.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        this.executor.shutdown();
+        Assert.assertTrue(this.executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals("in0", events.get(0));
+        Assert.assertEquals("in1", events.get(1));
+        Assert.assertEquals("timeout", events.get(2));
+        for (int i = 0; i < threads.size(); i++) {
+            Assert.assertNotSame(Thread.currentThread(), threads.get(i));
+        }
+        Assert.assertEquals(EventMask.READ, key.interestOps());
+    }
+
+    @Test
+    public void testHandlerEventMaskPreserved() throws Exception {
+        SelectionKey key = this.channel.register(this.selector, EventMask.READ);
+        IOSessionImpl session = new IOSessionImpl(key, null);
+
+        final CountDownLatch done = new CountDownLatch(1);
+        TestTaskQueue.NoopDispatch handler = new TestTaskQueue.NoopDispatch() {
+
+            @Override
+            public void inputReady(final IOSession session) {
+                session.clearEvent(EventMask.READ);
+                session.setEvent(EventMask.WRITE);
+            }
+
+            @Override
+            public void outputReady(final IOSession session) {
+                session.clearEvent(EventMask.WRITE);
+                done.countDown();
+            }
+
+        };
+        OffloadingIOEventDispatch dispatch = new OffloadingIOEventDispatch(handler, this.executor);
+        dispatch.connected(session);
+        dispatch.inputReady(session);
+        this.executor.shutdown();
+        Assert.assertTrue(this.executor.awaitTermination(5, TimeUnit.SECONDS));
+        // Handler stopped reading: the suspended event must not come back
+        Assert.assertEquals(EventMask.WRITE, session.getEventMask());
+        Assert.assertEquals(EventMask.WRITE, key.interestOps());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            dispatch = new OffloadingIOEventDispatch(handler, executor);
+            dispatch.connected(session);
+            dispatch.outputReady(session);
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(0, session.getEventMask());
+        Assert.assertEquals(0, key.interestOps());
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestReactorClock {
+
+    @Test
+    public void testCachedTime() throws Exception {
+        ReactorClock clock = new ReactorClock();
+        Assert.assertFalse(clock.isMonotonic());
+        long t1 = clock.update();
+        Assert.assertEquals(t1, clock.now());
+        Thread.sleep(50);
+        // The cached time does not move between updates
+        Assert.assertEquals(t1, clock.now());
+        long t2 = clock.update();
+        Assert.assertTrue(t2 - t1 >= 40);
+        Assert.assertEquals(t2, clock.now());
+    }
+
+    @Test
+    public void testCachedTimePerLoopIteration() throws Exception {
+        ReactorClock clock = new ReactorClock(true);
+        long last = clock.update();
+        for (int i = 0; i < 5; i++) {
+            // Simulate one I/O reactor loop iteration
+            Thread.sleep(20);
+            Assert.assertEquals(last, clock.now());
+            long time = clock.update();
+            Assert.assertTrue(time > last);
+            Assert.assertEquals(time, clock.now());
+            last = time;
+        }
+    }
+
+    @Test
+    public void testMonotonicNeverGoesBackwards() throws Exception {
+        ReactorClock clock = new ReactorClock(true);
+        Assert.assertTrue(clock.isMonotonic());
+        long start = clock.now();
+        long last = start;
+        for (int i = 0; i < 100000; i++) {
+            long time = clock.update();
+            Assert.assertTrue(time >= last);
+            last = time;
+        }
+        Assert.assertTrue(last >= start);
+        // Monotonic time starts out at the wall clock time
+        Assert.assertTrue(Math.abs(start - System.currentTimeMillis()) < 1000);
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ok2c.lightnio.IOEventDispatch;
+import com.ok2c.lightnio.IOReactorException;
+import com.ok2c.lightnio.IOSession;
+
+/**
+ * Tests for the select timeout derived by I/O reactors from the nearest
+ * pending deadline.
+ */
+public class TestSelectDeadline {
+
+    static class RecordingIOReactor extends BaseIOReactor {
+
+        // Time remaining until the deadline of each select operation
+        final List<Long> remaining = new CopyOnWriteArrayList<Long>();
+
+        RecordingIOReactor() throws IOReactorException {
+            super(1000, false);
+        }
+
+        @Override
+        protected long getNextDeadline(long now) {
+            long deadline = super.getNextDeadline(now);
+            this.remaining.add(deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - now);
+            return deadline;
+        }
+
+    }
+
+    private RecordingIOReactor ioReactor;
+    private Thread thread;
+    private CountDownLatch connected;
+    private ServerSocketChannel serverChannel;
+    private SocketChannel clientChannel;
+
+    @Before
+    public void setUp() throws Exception {
+        this.ioReactor = new RecordingIOReactor();
+        this.connected = new CountDownLatch(1);
+        this.thread = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    ioReactor.execute(new IOEventDispatch() {
+
+                        public void connected(final IOSession session) {
+                            session.setSocketTimeout(5000);
+                            connected.countDown();
+                        }
+
+                        public void inputReady(final IOSession session) {
+                        }
+
+                        public void outputReady(final IOSession session) {
+                        }
+
+                        public void timeout(final IOSession session) {
+                        }
+
+                        public void disconnected(final IOSession session) {
+                        }
+
+                    });
+                } catch (Exception ex) {
+                }
+            }
+
+        });
+        this.thread.start();
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.socket().bind(new InetSocketAddress("localhost", 0));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.ioReactor.shutdown();
+        this.thread.join(5000);
+        if (this.clientChannel != null) {
+            this.clientChannel.close();
+        }
+        this.serverChannel.close();
+    }
+
+    private void connect() throws Exception {
+        this.clientChannel = SocketChannel.open(this.serverChannel.socket().getLocalSocketAddress());
+        this.ioReactor.addChannel(new ChannelEntry(this.serverChannel.accept()));
+        Assert.assertTrue(this.connected.await(5, TimeUnit.SECONDS));
+    }
+
+    private long awaitSelect(final int count) throws Exception {
+        List<Long> remaining = this.ioReactor.remaining;
+        for (int i = 0; i < 500 && remaining.size() < count; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(remaining.size() >= count);
+        return remaining.get(remaining.size() - 1).longValue();
+    }
+
+    private long awaitSessionDeadline() throws Exception {
+        // Wait for the select operation following the timeout being armed
+        long remaining = Long.MAX_VALUE;
+        for (int i = 0; i < 500 && remaining == Long.MAX_VALUE; i++) {
+            Thread.sleep(10);
+            remaining = awaitSelect(1);
+        }
+        return remaining;
+    }
+
+    @Test
+    public void testEmptyWheel() throws Exception {
+        Assert.assertEquals(Long.MAX_VALUE, awaitSelect(1));
+        // Nothing pending: the I/O reactor stays blocked
+        int count = this.ioReactor.remaining.size();
+        Thread.sleep(300);
+        Assert.assertEquals(count, this.ioReactor.remaining.size());
+        Assert.assertEquals(Long.MAX_VALUE, awaitSelect(count));
+    }
+
+    @Test
+    public void testNearestDeadline() throws Exception {
+        connect();
+        long remaining = awaitSessionDeadline();
+        Assert.assertTrue(remaining > 4000);
+        Assert.assertTrue(remaining <= 5000 + TimingWheel.DEFAULT_TICK_DURATION);
+    }
+
+    @Test
+    public void testTaskBeforeWheelDeadline() throws Exception {
+        connect();
+        Assert.assertTrue(awaitSessionDeadline() > 4000);
+        final CountDownLatch done = new CountDownLatch(1);
+        long started = System.currentTimeMillis();
+        this.ioReactor.schedule(new Runnable() {
+
+            public void run() {
+                done.countDown();
+            }
+
+        }, 200);
+        // The I/O reactor must not wait for the session timeout
+        Assert.assertTrue(done.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(System.currentTimeMillis() - started < 2000);
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link SelectedKeySet}.
+ */
+public class TestSelectedKeySet {
+
+    @Test
+    public void testAddAndClear() throws Exception {
+        Selector selector = Selector.open();
+        Pipe pipe = Pipe.open();
+        try {
+            pipe.source().configureBlocking(false);
+            SelectionKey key = pipe.source().register(selector, SelectionKey.OP_READ);
+
+            SelectedKeySet keySet = new SelectedKeySet(2);
+            Assert.assertTrue(keySet.isEmpty());
+            for (int i = 0; i < 5; i++) {
+                Assert.assertTrue(keySet.add(key));
+            }
+            Assert.assertFalse(keySet.add(null));
+            Assert.assertEquals(5, keySet.size());
+            Assert.assertSame(key, keySet.get(4));
+
+            int count = 0;
+            for (Iterator<SelectionKey> it = keySet.iterator(); it.hasNext(); ) {
+                Assert.assertSame(key, it.next());
+                count++;
+            }
+            Assert.assertEquals(5, count);
+
+            keySet.clear();
+            Assert.assertTrue(keySet.isEmpty());
+            Assert.assertFalse(keySet.iterator().hasNext());
+        } finally {
+            pipe.source().close();
+            pipe.sink().close();
+            selector.close();
+        }
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() throws Exception {
+        SelectedKeySet keySet = new SelectedKeySet();
+        keySet.get(0);
+    }
+
+    @Test
+    public void testInstall() throws Exception {
+        Selector selector = Selector.open();
+        Pipe pipe = Pipe.open();
+        try {
+            pipe.source().configureBlocking(false);
+            SelectionKey key = pipe.source().register(selector, SelectionKey.OP_READ);
+            SelectedKeySet keySet = SelectedKeySet.install(selector);
+
+            pipe.sink().write(ByteBuffer.wrap(new byte[] {1}));
+            Assert.assertEquals(1, selector.select(1000));
+            if (keySet != null) {
+                Assert.assertSame(keySet, selector.selectedKeys());
+                Assert.assertEquals(1, keySet.size());
+                Assert.assertSame(key, keySet.get(0));
+            } else {
+                // Not supported by this JDK. The selector must be intact
+                Assert.assertTrue(selector.selectedKeys().contains(key));
+            }
+        } finally {
+            pipe.source().close();
+            pipe.sink().close();
+            selector.close();
+        }
+    }
+
+}
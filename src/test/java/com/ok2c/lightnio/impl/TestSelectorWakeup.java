@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.nio.channels.Selector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSelectorWakeup {
+
+    private Selector selector;
+
+    @Before
+    public void setUp() throws Exception {
+        this.selector = Selector.open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.selector.close();
+    }
+
+    @Test
+    public void testConcurrentWakeupsCoalesce() throws Exception {
+        final SelectorWakeup wakeup = new SelectorWakeup(this.selector);
+        wakeup.bind(new Thread());
+        wakeup.beginSelect();
+
+        int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            Thread t = new Thread(new Runnable() {
+
+                public void run() {
+                    try {
+                        start.await();
+                        for (int n = 0; n < 100; n++) {
+                            wakeup.wakeup();
+                        }
+                    } catch (InterruptedException ex) {
+                    } finally {
+                        done.countDown();
+                    }
+                }
+
+            });
+            t.start();
+        }
+        start.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, wakeup.getWakeupCount());
+        // The wakeup has actually been delivered to the selector
+        Assert.assertEquals(0, this.selector.select(5000));
+        wakeup.endSelect();
+
+        // A new select window allows one more wakeup
+        wakeup.beginSelect();
+        wakeup.wakeup();
+        wakeup.wakeup();
+        Assert.assertEquals(2, wakeup.getWakeupCount());
+        wakeup.endSelect();
+    }
+
+    @Test
+    public void testWakeupOutsideSelectWindow() throws Exception {
+        SelectorWakeup wakeup = new SelectorWakeup(this.selector);
+        wakeup.bind(new Thread());
+        wakeup.wakeup();
+        Assert.assertEquals(0, wakeup.getWakeupCount());
+        wakeup.beginSelect();
+        wakeup.endSelect();
+        wakeup.wakeup();
+        Assert.assertEquals(0, wakeup.getWakeupCount());
+    }
+
+    @Test
+    public void testSameThreadWakeupSkipped() throws Exception {
+        SelectorWakeup wakeup = new SelectorWakeup(this.selector);
+        wakeup.bind(Thread.currentThread());
+        Assert.assertTrue(wakeup.isReactorThread());
+        wakeup.beginSelect();
+        wakeup.wakeup();
+        Assert.assertEquals(0, wakeup.getWakeupCount());
+        wakeup.endSelect();
+    }
+
+}
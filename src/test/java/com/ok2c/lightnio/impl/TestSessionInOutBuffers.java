@@ -16,9 +16,11 @@ package com.ok2c.lightnio.impl;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.CharacterCodingException;
@@ -30,6 +32,8 @@ import org.junit.Test;
 import com.ok2c.lightnio.SessionInputBuffer;
 import com.ok2c.lightnio.SessionOutputBuffer;
 import com.ok2c.lightnio.buffer.CharArrayBuffer;
+import com.ok2c.lightnio.buffer.HeapByteBufferAllocator;
+import com.ok2c.lightnio.buffer.PooledByteBufferAllocator;
 
 /**
  * Unit tests for {@link SessionInputBuffer} and {@link SessionOutputBuffer}.
@@ -443,4 +447,202 @@ public class TestSessionInOutBuffers {
         outbuf.writeLine(s1);
     }
 
+    @Test
+    public void testLazyBuffers() throws Exception {
+        PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(false, 16, 1024, 4, 4);
+        SessionInputBufferImpl inbuf = new SessionInputBufferImpl(
+                16, 16, allocator, Charset.forName("ASCII"), true);
+        SessionOutputBufferImpl outbuf = new SessionOutputBufferImpl(
+                16, 16, allocator, Charset.forName("ASCII"), true);
+        Assert.assertEquals(0, inbuf.capacity());
+        Assert.assertEquals(0, outbuf.capacity());
+
+        // Nothing to keep
+        Assert.assertEquals(-1, inbuf.fill(newChannel(new byte[0])));
+        Assert.assertEquals(0, inbuf.capacity());
+        Assert.assertEquals(0, allocator.getAllocatedCount());
+
+        ReadableByteChannel inChannel = newChannel("One\r\nTwo\r\nThree and more");
+        Assert.assertEquals(16, inbuf.fill(inChannel));
+        Assert.assertEquals(16, inbuf.capacity());
+        CharArrayBuffer line = new CharArrayBuffer(64);
+        Assert.assertTrue(inbuf.readLine(line, false));
+        Assert.assertEquals("One", line.toString());
+        outbuf.writeLine(line);
+        Assert.assertTrue(outbuf.hasData());
+        line.clear();
+        Assert.assertTrue(inbuf.readLine(line, false));
+        Assert.assertEquals("Two", line.toString());
+        Assert.assertTrue(inbuf.hasData());
+        inbuf.fill(inChannel);
+        line.clear();
+        Assert.assertTrue(inbuf.readLine(line, true));
+        Assert.assertEquals("Three and more", line.toString());
+        Assert.assertFalse(inbuf.hasData());
+        Assert.assertEquals(0, inbuf.capacity());
+
+        ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        outbuf.flush(newChannel(outstream));
+        Assert.assertEquals("One\r\n", new String(outstream.toByteArray(), "US-ASCII"));
+        Assert.assertEquals(0, outbuf.capacity());
+
+        // Backing buffers are recycled
+        long allocated = allocator.getAllocatedCount();
+        inbuf.fill(newChannel("Four"));
+        Assert.assertEquals(allocated, allocator.getAllocatedCount());
+        Assert.assertTrue(allocator.getReusedCount() > 0);
+    }
+
+    @Test
+    public void testLazyInputBufferReleasedOnRead() throws Exception {
+        PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(false, 16, 1024, 4, 4);
+        SessionInputBufferImpl inbuf = new SessionInputBufferImpl(
+                16, 16, allocator, Charset.forName("ASCII"), true);
+        Assert.assertEquals(5, inbuf.fill(newChannel("hello")));
+        Assert.assertEquals(16, inbuf.capacity());
+        ByteBuffer dst = ByteBuffer.allocate(16);
+        Assert.assertEquals(5, inbuf.read(dst));
+        // Released as soon as drained
+        Assert.assertEquals(0, inbuf.capacity());
+        Assert.assertEquals(-1, inbuf.fill(newChannel(new byte[0])));
+        Assert.assertEquals(0, inbuf.capacity());
+
+        Assert.assertEquals(5, inbuf.fill(newChannel("hello")));
+        for (int i = 0; i < 5; i++) {
+            inbuf.read();
+        }
+        Assert.assertEquals(0, inbuf.capacity());
+
+        Assert.assertEquals(5, inbuf.fill(newChannel("hello")));
+        ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        Assert.assertEquals(5, inbuf.read(newChannel(outstream)));
+        Assert.assertEquals(0, inbuf.capacity());
+    }
+
+    @Test
+    public void testRingBufferReadLineWrapped() throws Exception {
+        SessionInputRingBuffer inbuf = new SessionInputRingBuffer(16, 16, Charset.forName("US-ASCII"));
+        inbuf.fill(newChannel("0123456789\r\nAB"));
+        Assert.assertEquals("0123456789", inbuf.readLine(false));
+        // Free space wraps around the end of the ring
+        inbuf.fill(newChannel("CD\r\nEF"));
+        Assert.assertEquals(8, inbuf.length());
+        Assert.assertEquals("ABCD", inbuf.readLine(false));
+        Assert.assertNull(inbuf.readLine(false));
+        Assert.assertEquals("EF", inbuf.readLine(true));
+        Assert.assertFalse(inbuf.hasData());
+        Assert.assertEquals(16, inbuf.capacity());
+    }
+
+    @Test
+    public void testRingBufferScatterGather() throws Exception {
+        Charset ascii = Charset.forName("US-ASCII");
+        SessionOutputRingBuffer outbuf = new SessionOutputRingBuffer(16, 16, ascii);
+        outbuf.writeLine("0123456789");
+        ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        Assert.assertEquals(8, outbuf.flush(new TrickleChannel(outstream, 8)));
+        Assert.assertEquals("01234567", new String(outstream.toByteArray(), "US-ASCII"));
+        // Wraps around the end of the ring
+        outbuf.writeLine("ABCDEFGH");
+        Assert.assertEquals(14, outbuf.length());
+        Assert.assertEquals(16, outbuf.capacity());
+
+        SessionInputRingBuffer inbuf = new SessionInputRingBuffer(16, 16, ascii);
+        inbuf.fill(newChannel("xxxxxxxxxxy"));
+        inbuf.read(ByteBuffer.allocate(10));
+
+        Pipe pipe = Pipe.open();
+        try {
+            // Gathering write across the wrap point
+            Assert.assertEquals(14, outbuf.flush(pipe.sink()));
+            Assert.assertFalse(outbuf.hasData());
+            // Scattering read across the wrap point
+            while (inbuf.length() < 15) {
+                inbuf.fill(pipe.source());
+            }
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+        Assert.assertEquals("y89", inbuf.readLine(false));
+        Assert.assertEquals("ABCDEFGH", inbuf.readLine(false));
+        Assert.assertFalse(inbuf.hasData());
+        Assert.assertEquals(16, inbuf.capacity());
+    }
+
+    @Test
+    public void testChainedBufferEnqueue() throws Exception {
+        byte[] pattern = new byte[100];
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = (byte) ('a' + (i % 26));
+        }
+        ByteBuffer payload = ByteBuffer.wrap(pattern);
+
+        SessionOutputChainedBuffer outbuf = new SessionOutputChainedBuffer(
+                16, 16, 8, new HeapByteBufferAllocator(), Charset.forName("US-ASCII"));
+        outbuf.writeLine("Header");
+        outbuf.enqueue(payload);
+        // Small writes are coalesced into a new tail buffer
+        outbuf.enqueue(ByteBuffer.wrap(new byte[] {'x', 'y'}));
+        outbuf.write(ByteBuffer.wrap(new byte[] {'z'}));
+        Assert.assertEquals(8 + 100 + 3, outbuf.length());
+
+        ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        Pipe pipe = Pipe.open();
+        try {
+            // Gathering write of the whole chain
+            Assert.assertEquals(111, outbuf.flush(pipe.sink()));
+            ByteBuffer dst = ByteBuffer.allocate(111);
+            while (dst.hasRemaining()) {
+                pipe.source().read(dst);
+            }
+            outstream.write(dst.array());
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+        Assert.assertFalse(outbuf.hasData());
+        // The queued buffer has been consumed in place
+        Assert.assertEquals(100, payload.position());
+        Assert.assertEquals("Header\r\n" + new String(pattern, "US-ASCII") + "xyz",
+                new String(outstream.toByteArray(), "US-ASCII"));
+
+        outbuf.writeLine("Next");
+        outstream.reset();
+        while (outbuf.flush(new TrickleChannel(outstream, 3)) > 0) {
+        }
+        Assert.assertEquals("Next\r\n", new String(outstream.toByteArray(), "US-ASCII"));
+    }
+
+    static class TrickleChannel implements WritableByteChannel {
+
+        private final WritableByteChannel channel;
+        private final int maxLen;
+
+        TrickleChannel(final ByteArrayOutputStream outstream, int maxLen) {
+            super();
+            this.channel = newChannel(outstream);
+            this.maxLen = maxLen;
+        }
+
+        public int write(final ByteBuffer src) throws IOException {
+            int limit = src.limit();
+            src.limit(Math.min(limit, src.position() + this.maxLen));
+            try {
+                return this.channel.write(src);
+            } finally {
+                src.limit(limit);
+            }
+        }
+
+        public boolean isOpen() {
+            return this.channel.isOpen();
+        }
+
+        public void close() throws IOException {
+            this.channel.close();
+        }
+
+    }
+
 }
@@ -0,0 +1,297 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ok2c.lightnio.EventMask;
+import com.ok2c.lightnio.IOEventDispatch;
+import com.ok2c.lightnio.IOSession;
+import com.ok2c.lightnio.ListenerEndpoint;
+
+/**
+ * Tests for migration of I/O sessions between worker I/O reactors.
+ */
+public class TestSessionMigration {
+
+    static class EchoDispatch implements IOEventDispatch {
+
+        final List<IOSession> sessions = new CopyOnWriteArrayList<IOSession>();
+        final List<Thread> readers = new CopyOnWriteArrayList<Thread>();
+        final ByteBuffer buffer = ByteBuffer.allocate(64);
+
+        public void connected(final IOSession session) {
+            session.setEventMask(EventMask.READ);
+            this.sessions.add(session);
+        }
+
+        public synchronized void inputReady(final IOSession session) {
+            this.readers.add(Thread.currentThread());
+            try {
+                this.buffer.clear();
+                int bytesRead = session.channel().read(this.buffer);
+                if (bytesRead == -1) {
+                    session.close();
+                    return;
+                }
+                this.buffer.flip();
+                while (this.buffer.hasRemaining()) {
+                    session.channel().write(this.buffer);
+                }
+            } catch (IOException ex) {
+                session.close();
+            }
+        }
+
+        public void outputReady(final IOSession session) {
+        }
+
+        public void timeout(final IOSession session) {
+            session.close();
+        }
+
+        public void disconnected(final IOSession session) {
+            this.sessions.remove(session);
+        }
+
+    }
+
+    private DefaultListeningIOReactor ioReactor;
+    private EchoDispatch dispatch;
+    private Thread thread;
+
+    private void start(final IOReactorConfig config) throws Exception {
+        this.ioReactor = new DefaultListeningIOReactor(config);
+        this.dispatch = new EchoDispatch();
+        this.thread = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    ioReactor.execute(dispatch);
+                } catch (IOException ex) {
+                }
+            }
+
+        });
+        this.thread.start();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        IOReactorConfig config = new IOReactorConfig();
+        config.setWorkerCount(2);
+        start(config);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.ioReactor.shutdown();
+        this.thread.join(5000);
+    }
+
+    private Socket connect() throws Exception {
+        ListenerEndpoint endpoint = this.ioReactor.listen(new InetSocketAddress("localhost", 0));
+        endpoint.waitFor();
+        int port = ((InetSocketAddress) endpoint.getAddress()).getPort();
+        return new Socket("localhost", port);
+    }
+
+    private static void echo(final Socket socket, int b) throws Exception {
+        OutputStream out = socket.getOutputStream();
+        InputStream in = socket.getInputStream();
+        out.write(b);
+        out.flush();
+        Assert.assertEquals(b, in.read());
+    }
+
+    private void awaitSessions(int count) throws Exception {
+        for (int i = 0; i < 500 && this.dispatch.sessions.size() != count; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, this.dispatch.sessions.size());
+    }
+
+    @Test
+    public void testMigrate() throws Exception {
+        Socket socket = connect();
+        socket.setSoTimeout(5000);
+        try {
+            awaitSessions(1);
+            echo(socket, 1);
+            Thread before = this.dispatch.readers.get(0);
+
+            IOSession session = this.dispatch.sessions.get(0);
+            session.setAttribute("test", "value");
+            boolean migrated = this.ioReactor.migrate(session, 0)
+                || this.ioReactor.migrate(session, 1);
+            Assert.assertTrue(migrated);
+            // Let the migration complete
+            Thread.sleep(100);
+
+            echo(socket, 2);
+            echo(socket, 3);
+            Thread after = this.dispatch.readers.get(this.dispatch.readers.size() - 1);
+            Assert.assertNotSame(before, after);
+            Assert.assertEquals("value", session.getAttribute("test"));
+        } finally {
+            socket.close();
+        }
+        awaitSessions(0);
+    }
+
+    @Test
+    public void testBalancer() throws Exception {
+        this.ioReactor.shutdown();
+        this.thread.join(5000);
+        IOReactorConfig config = new IOReactorConfig();
+        config.setWorkerCount(2);
+        config.setBalanceInterval(50);
+        config.setBalanceThreshold(2);
+        start(config);
+        this.ioReactor.setWorkerSelector(new WorkerSelector() {
+
+            public int select(final ChannelEntry entry, final BaseIOReactor[] workers) {
+                return 0;
+            }
+
+        });
+
+        Socket[] sockets = new Socket[8];
+        sockets[0] = connect();
+        int port = sockets[0].getPort();
+        for (int i = 1; i < sockets.length; i++) {
+            sockets[i] = new Socket("localhost", port);
+        }
+        try {
+            awaitSessions(sockets.length);
+            Thread.sleep(500);
+            for (int i = 0; i < sockets.length; i++) {
+                sockets[i].setSoTimeout(5000);
+                echo(sockets[i], i);
+            }
+            List<Thread> readers = this.dispatch.readers;
+            List<Thread> distinct = new CopyOnWriteArrayList<Thread>();
+            for (int i = 0; i < readers.size(); i++) {
+                Thread reader = readers.get(i);
+                if (!distinct.contains(reader)) {
+                    distinct.add(reader);
+                }
+            }
+            Assert.assertEquals(2, distinct.size());
+        } finally {
+            for (int i = 0; i < sockets.length; i++) {
+                sockets[i].close();
+            }
+        }
+        awaitSessions(0);
+    }
+
+    private static Thread startReactor(final BaseIOReactor ioReactor, final IOEventDispatch dispatch) {
+        Thread t = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    ioReactor.execute(dispatch);
+                } catch (IOException ex) {
+                }
+            }
+
+        });
+        t.start();
+        return t;
+    }
+
+    @Test
+    public void testMigrateToReactorShuttingDown() throws Exception {
+        EchoDispatch sourceDispatch = new EchoDispatch();
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        EchoDispatch targetDispatch = new EchoDispatch() {
+
+            @Override
+            public void disconnected(final IOSession session) {
+                disconnected.countDown();
+            }
+
+        };
+        BaseIOReactor source = new BaseIOReactor(new IOReactorConfig());
+        BaseIOReactor target = new BaseIOReactor(new IOReactorConfig());
+        Thread sourceThread = startReactor(source, sourceDispatch);
+        Thread targetThread = startReactor(target, targetDispatch);
+
+        final CountDownLatch blocked = new CountDownLatch(1);
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        SocketChannel clientChannel = null;
+        try {
+            serverChannel.socket().bind(new InetSocketAddress("localhost", 0));
+            clientChannel = SocketChannel.open(serverChannel.socket().getLocalSocketAddress());
+            clientChannel.socket().setSoTimeout(5000);
+            source.addChannel(new ChannelEntry(serverChannel.accept()));
+            for (int i = 0; i < 500 && sourceDispatch.sessions.isEmpty(); i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(1, sourceDispatch.sessions.size());
+            IOSessionImpl session = (IOSessionImpl) sourceDispatch.sessions.get(0);
+
+            // Keep the target busy so that the session cannot be attached
+            target.execute(new Runnable() {
+
+                public void run() {
+                    try {
+                        blocked.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                    }
+                }
+
+            });
+            source.migrateSession(session, target);
+            for (int i = 0; i < 500 && source.getSessionCount() > 0; i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(0, source.getSessionCount());
+
+            target.shutdown(100);
+            Assert.assertTrue(disconnected.await(5, TimeUnit.SECONDS));
+            Assert.assertTrue(session.isClosed());
+            Assert.assertEquals(-1, clientChannel.socket().getInputStream().read());
+        } finally {
+            blocked.countDown();
+            source.shutdown();
+            target.shutdown();
+            sourceThread.join(5000);
+            targetThread.join(5000);
+            if (clientChannel != null) {
+                clientChannel.close();
+            }
+            serverChannel.close();
+        }
+    }
+
+}
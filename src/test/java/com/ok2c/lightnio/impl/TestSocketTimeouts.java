@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ok2c.lightnio.IOSession;
+
+/**
+ * Unit tests for socket timeout handling by {@link BaseIOReactor}.
+ */
+public class TestSocketTimeouts {
+
+    @Test
+    public void testTimeoutSetOnIdleSession() throws Exception {
+        final AtomicReference<IOSession> sessionRef = new AtomicReference<IOSession>();
+        final CountDownLatch connected = new CountDownLatch(1);
+        final CountDownLatch timedOut = new CountDownLatch(1);
+        final BaseIOReactor ioReactor = new BaseIOReactor(new IOReactorConfig());
+        Thread thread = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    ioReactor.execute(new TestTaskQueue.NoopDispatch() {
+
+                        @Override
+                        public void connected(final IOSession session) {
+                            sessionRef.set(session);
+                            connected.countDown();
+                        }
+
+                        @Override
+                        public void timeout(final IOSession session) {
+                            timedOut.countDown();
+                        }
+
+                    });
+                } catch (Exception ex) {
+                }
+            }
+
+        });
+        thread.start();
+
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        SocketChannel clientChannel = null;
+        try {
+            serverChannel.socket().bind(new InetSocketAddress("localhost", 0));
+            clientChannel = SocketChannel.open(serverChannel.socket().getLocalSocketAddress());
+            ioReactor.addChannel(new ChannelEntry(serverChannel.accept()));
+            Assert.assertTrue(connected.await(5, TimeUnit.SECONDS));
+
+            // No timeout is armed and the session is idle: the I/O reactor
+            // is blocked in the select operation
+            Thread.sleep(200);
+            Assert.assertEquals(1, timedOut.getCount());
+            sessionRef.get().setSocketTimeout(100);
+            Assert.assertTrue(timedOut.await(5, TimeUnit.SECONDS));
+        } finally {
+            ioReactor.shutdown();
+            thread.join(5000);
+            if (clientChannel != null) {
+                clientChannel.close();
+            }
+            serverChannel.close();
+        }
+    }
+
+}
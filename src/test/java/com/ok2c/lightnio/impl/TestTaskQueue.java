@@ -0,0 +1,217 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ok2c.lightnio.IOEventDispatch;
+import com.ok2c.lightnio.IOSession;
+
+/**
+ * Unit tests for {@link TaskQueue} and task execution by I/O reactors.
+ */
+public class TestTaskQueue {
+
+    static class NamedTask implements Runnable {
+
+        final String name;
+
+        NamedTask(final String name) {
+            super();
+            this.name = name;
+        }
+
+        public void run() {
+        }
+
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        TaskQueue queue = new TaskQueue(10, 2);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(queue.add(new NamedTask("task" + i)));
+        }
+        queue.beginBatch();
+        Assert.assertEquals("task0", ((NamedTask) queue.poll(0)).name);
+        Assert.assertEquals("task1", ((NamedTask) queue.poll(0)).name);
+        Assert.assertNull(queue.poll(0));
+        Assert.assertTrue(queue.hasPendingTasks());
+
+        queue.beginBatch();
+        Assert.assertEquals("task2", ((NamedTask) queue.poll(0)).name);
+        Assert.assertEquals("task3", ((NamedTask) queue.poll(0)).name);
+        queue.beginBatch();
+        Assert.assertEquals("task4", ((NamedTask) queue.poll(0)).name);
+        Assert.assertNull(queue.poll(0));
+        Assert.assertFalse(queue.hasPendingTasks());
+    }
+
+    @Test
+    public void testCapacity() throws Exception {
+        TaskQueue queue = new TaskQueue(2, 0);
+        Assert.assertTrue(queue.add(new NamedTask("task0")));
+        Assert.assertTrue(queue.add(new NamedTask("task1")));
+        Assert.assertFalse(queue.add(new NamedTask("task2")));
+        queue.beginBatch();
+        Assert.assertNotNull(queue.poll(0));
+        Assert.assertTrue(queue.add(new NamedTask("task2")));
+        queue.clear();
+        Assert.assertFalse(queue.hasPendingTasks());
+        Assert.assertNull(queue.poll(0));
+    }
+
+    @Test
+    public void testClearCancels() throws Exception {
+        final List<String> cancelled = new CopyOnWriteArrayList<String>();
+        TaskQueue queue = new TaskQueue(10, 0);
+        Assert.assertTrue(queue.add(new NamedTask("task")));
+        Assert.assertTrue(queue.add(new CancellableNamedTask("pending", cancelled)));
+        Assert.assertTrue(queue.schedule(new CancellableNamedTask("delayed", cancelled), 50000));
+        queue.beginBatch();
+        Assert.assertEquals("task", ((NamedTask) queue.poll(0)).name);
+        Assert.assertEquals("pending", ((NamedTask) queue.poll(0)).name);
+        // The delayed task is moved onto the heap
+        Assert.assertNull(queue.poll(0));
+        Assert.assertTrue(queue.add(new CancellableNamedTask("queued", cancelled)));
+        queue.clear();
+        Assert.assertEquals(2, cancelled.size());
+        Assert.assertTrue(cancelled.contains("queued"));
+        Assert.assertTrue(cancelled.contains("delayed"));
+        Assert.assertEquals(Long.MAX_VALUE, queue.nextDeadline());
+    }
+
+    @Test
+    public void testShutdownCancelsPendingConnect() throws Exception {
+        BaseIOReactor ioReactor = new BaseIOReactor(new IOReactorConfig());
+        SocketChannel channel = SocketChannel.open();
+        SessionRequestImpl sessionRequest = new SessionRequestImpl(
+                new InetSocketAddress("localhost", 9), null, null, null);
+        ioReactor.connectChannel(new ChannelEntry(channel, sessionRequest));
+        ioReactor.hardShutdown();
+        Assert.assertTrue(sessionRequest.isCompleted());
+        Assert.assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void testScheduling() throws Exception {
+        TaskQueue queue = new TaskQueue(10, 0);
+        Assert.assertTrue(queue.schedule(new NamedTask("late"), 100000));
+        Assert.assertTrue(queue.schedule(new NamedTask("early"), 50000));
+        Assert.assertTrue(queue.schedule(new NamedTask("now"), 0));
+        Assert.assertEquals(Long.MAX_VALUE, queue.nextDeadline());
+
+        queue.beginBatch();
+        Assert.assertEquals("now", ((NamedTask) queue.poll(1000)).name);
+        Assert.assertNull(queue.poll(1000));
+        long deadline = queue.nextDeadline();
+        Assert.assertTrue(deadline > 1000 && deadline <= 1000 + 50000);
+
+        Assert.assertEquals("early", ((NamedTask) queue.poll(deadline)).name);
+        Assert.assertNull(queue.poll(deadline));
+        Assert.assertEquals("late", ((NamedTask) queue.poll(Long.MAX_VALUE)).name);
+        Assert.assertEquals(Long.MAX_VALUE, queue.nextDeadline());
+    }
+
+    @Test
+    public void testReactorTasks() throws Exception {
+        IOReactorConfig config = new IOReactorConfig();
+        config.setTaskBudget(1);
+        final BaseIOReactor ioReactor = new BaseIOReactor(config);
+        Thread thread = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    ioReactor.execute(new NoopDispatch());
+                } catch (Exception ex) {
+                }
+            }
+
+        });
+        thread.start();
+        try {
+            final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+            final CountDownLatch latch = new CountDownLatch(4);
+            Runnable task = new Runnable() {
+
+                public void run() {
+                    threads.add(Thread.currentThread());
+                    latch.countDown();
+                }
+
+            };
+            ioReactor.schedule(task, 100);
+            for (int i = 0; i < 3; i++) {
+                ioReactor.execute(task);
+            }
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < threads.size(); i++) {
+                Assert.assertSame(thread, threads.get(i));
+            }
+        } finally {
+            ioReactor.shutdown();
+            thread.join(5000);
+        }
+        try {
+            ioReactor.execute(new NamedTask("task"));
+            Assert.fail("RejectedExecutionException should have been thrown");
+        } catch (RejectedExecutionException expected) {
+        }
+    }
+
+    static class CancellableNamedTask extends NamedTask implements CancellableTask {
+
+        final List<String> cancelled;
+
+        CancellableNamedTask(final String name, final List<String> cancelled) {
+            super(name);
+            this.cancelled = cancelled;
+        }
+
+        public void cancel() {
+            this.cancelled.add(this.name);
+        }
+
+    }
+
+    static class NoopDispatch implements IOEventDispatch {
+
+        public void connected(final IOSession session) {
+        }
+
+        public void inputReady(final IOSession session) {
+        }
+
+        public void outputReady(final IOSession session) {
+        }
+
+        public void timeout(final IOSession session) {
+        }
+
+        public void disconnected(final IOSession session) {
+        }
+
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link TimingWheel}.
+ */
+public class TestTimingWheel {
+
+    static class TestEntry extends TimingWheel.Entry {
+
+        private final String name;
+
+        TestEntry(final String name) {
+            super();
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+
+    }
+
+    static class Expired implements TimingWheel.ExpiryCallback {
+
+        final List<TimingWheel.Entry> entries = new ArrayList<TimingWheel.Entry>();
+
+        public void expired(final TimingWheel.Entry entry, long now) {
+            this.entries.add(entry);
+        }
+
+    }
+
+    @Test
+    public void testBasicExpiry() throws Exception {
+        TimingWheel wheel = new TimingWheel(10, 8, 1000);
+        TestEntry e1 = new TestEntry("e1");
+        TestEntry e2 = new TestEntry("e2");
+        wheel.schedule(e1, 1025);
+        wheel.schedule(e2, 1055);
+        Assert.assertEquals(2, wheel.size());
+        Assert.assertTrue(e1.isScheduled());
+
+        Expired expired = new Expired();
+        Assert.assertEquals(0, wheel.expire(1025, expired));
+        Assert.assertEquals(1, wheel.expire(1030, expired));
+        Assert.assertEquals(1, expired.entries.size());
+        Assert.assertSame(e1, expired.entries.get(0));
+        Assert.assertFalse(e1.isScheduled());
+        Assert.assertEquals(1, wheel.size());
+
+        Assert.assertEquals(1, wheel.expire(1070, expired));
+        Assert.assertSame(e2, expired.entries.get(1));
+        Assert.assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void testMultipleRounds() throws Exception {
+        TimingWheel wheel = new TimingWheel(10, 8, 0);
+        TestEntry e1 = new TestEntry("e1");
+        TestEntry e2 = new TestEntry("e2");
+        // Both hash into the same bucket
+        wheel.schedule(e1, 15);
+        wheel.schedule(e2, 95);
+
+        Expired expired = new Expired();
+        Assert.assertEquals(1, wheel.expire(20, expired));
+        Assert.assertSame(e1, expired.entries.get(0));
+        Assert.assertEquals(0, wheel.expire(95, expired));
+        Assert.assertTrue(e2.isScheduled());
+        Assert.assertEquals(1, wheel.expire(100, expired));
+        Assert.assertSame(e2, expired.entries.get(1));
+    }
+
+    @Test
+    public void testLongGap() throws Exception {
+        TimingWheel wheel = new TimingWheel(10, 8, 0);
+        List<TestEntry> entries = new ArrayList<TestEntry>();
+        for (int i = 0; i < 20; i++) {
+            TestEntry entry = new TestEntry("e" + i);
+            entries.add(entry);
+            wheel.schedule(entry, i * 10);
+        }
+        Expired expired = new Expired();
+        Assert.assertEquals(20, wheel.expire(10000, expired));
+        Assert.assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void testRescheduleAndCancel() throws Exception {
+        TimingWheel wheel = new TimingWheel(10, 8, 0);
+        TestEntry e1 = new TestEntry("e1");
+        TestEntry e2 = new TestEntry("e2");
+        wheel.schedule(e1, 20);
+        wheel.schedule(e2, 20);
+        wheel.schedule(e1, 50);
+        Assert.assertEquals(2, wheel.size());
+        Assert.assertEquals(50, e1.getDeadline());
+        wheel.cancel(e2);
+        Assert.assertFalse(e2.isScheduled());
+        Assert.assertEquals(1, wheel.size());
+        wheel.cancel(e2);
+        Assert.assertEquals(1, wheel.size());
+
+        Expired expired = new Expired();
+        Assert.assertEquals(0, wheel.expire(40, expired));
+        Assert.assertEquals(1, wheel.expire(60, expired));
+        Assert.assertSame(e1, expired.entries.get(0));
+    }
+
+    @Test
+    public void testNextDeadline() throws Exception {
+        TimingWheel wheel = new TimingWheel(10, 8, 0);
+        Assert.assertEquals(Long.MAX_VALUE, wheel.nextDeadline());
+        TestEntry e1 = new TestEntry("e1");
+        TestEntry e2 = new TestEntry("e2");
+        wheel.schedule(e1, 55);
+        wheel.schedule(e2, 32);
+        // Entries expire once their tick has elapsed
+        Assert.assertEquals(40, wheel.nextDeadline());
+
+        Expired expired = new Expired();
+        Assert.assertEquals(1, wheel.expire(40, expired));
+        Assert.assertEquals(60, wheel.nextDeadline());
+        Assert.assertEquals(1, wheel.expire(60, expired));
+        Assert.assertEquals(Long.MAX_VALUE, wheel.nextDeadline());
+
+        // More than one revolution ahead: the deadline is a lower bound
+        TestEntry e3 = new TestEntry("e3");
+        wheel.schedule(e3, 500);
+        long deadline = wheel.nextDeadline();
+        Assert.assertTrue(deadline > 60 && deadline <= 500);
+    }
+
+    @Test
+    public void testNextDeadlineBeyondRevolution() throws Exception {
+        TimingWheel wheel = new TimingWheel(10, 16, 0);
+        int n = 100000;
+        for (int i = 0; i < n; i++) {
+            wheel.schedule(new TestEntry("e" + i), 1000000 + i);
+        }
+        Expired expired = new Expired();
+        // Nothing is due within a revolution: each pass must only look at
+        // the buckets, not at the entries hashed into them
+        long started = System.currentTimeMillis();
+        for (long now = 10; now <= 100000; now += 10) {
+            Assert.assertEquals(0, wheel.expire(now, expired));
+            Assert.assertEquals(now + 160, wheel.nextDeadline());
+        }
+        Assert.assertTrue(System.currentTimeMillis() - started < 2000);
+        Assert.assertEquals(n, wheel.expire(1100010, expired));
+        Assert.assertEquals(Long.MAX_VALUE, wheel.nextDeadline());
+    }
+
+    @Test
+    public void testOverdueEntry() throws Exception {
+        TimingWheel wheel = new TimingWheel(10, 8, 100);
+        TestEntry e1 = new TestEntry("e1");
+        wheel.schedule(e1, 50);
+        Expired expired = new Expired();
+        Assert.assertEquals(1, wheel.expire(110, expired));
+        Assert.assertSame(e1, expired.entries.get(0));
+    }
+
+    @Test
+    public void testRescheduleFromCallback() throws Exception {
+        final TimingWheel wheel = new TimingWheel(10, 8, 0);
+        final TestEntry e1 = new TestEntry("e1");
+        wheel.schedule(e1, 10);
+        final List<Long> times = new ArrayList<Long>();
+        TimingWheel.ExpiryCallback callback = new TimingWheel.ExpiryCallback() {
+
+            public void expired(final TimingWheel.Entry entry, long now) {
+                times.add(Long.valueOf(now));
+                wheel.schedule(entry, now + 30);
+            }
+
+        };
+        Assert.assertEquals(1, wheel.expire(20, callback));
+        Assert.assertTrue(e1.isScheduled());
+        Assert.assertEquals(0, wheel.expire(40, callback));
+        Assert.assertEquals(1, wheel.expire(60, callback));
+        Assert.assertEquals(2, times.size());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidTickDuration() throws Exception {
+        new TimingWheel(0, 8, 0);
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.ok2c.lightnio.impl;
+
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link WorkerSelector} implementations.
+ */
+public class TestWorkerSelectors {
+
+    private BaseIOReactor[] workers;
+    private List<SocketChannel> channels;
+
+    @Before
+    public void setUp() throws Exception {
+        IOReactorConfig config = new IOReactorConfig();
+        this.workers = new BaseIOReactor[3];
+        for (int i = 0; i < this.workers.length; i++) {
+            this.workers[i] = new BaseIOReactor(config);
+        }
+        this.channels = new ArrayList<SocketChannel>();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (int i = 0; i < this.workers.length; i++) {
+            this.workers[i].hardShutdown();
+        }
+        for (int i = 0; i < this.channels.size(); i++) {
+            this.channels.get(i).close();
+        }
+    }
+
+    private ChannelEntry createEntry() throws Exception {
+        SocketChannel channel = SocketChannel.open();
+        this.channels.add(channel);
+        return new ChannelEntry(channel);
+    }
+
+    @Test
+    public void testRoundRobin() throws Exception {
+        WorkerSelector selector = new RoundRobinWorkerSelector();
+        ChannelEntry entry = createEntry();
+        for (int i = 0; i < 7; i++) {
+            Assert.assertEquals(i % 3, selector.select(entry, this.workers));
+        }
+    }
+
+    @Test
+    public void testLeastSessions() throws Exception {
+        WorkerSelector selector = new LeastSessionsWorkerSelector();
+        this.workers[0].addChannel(createEntry());
+        this.workers[0].addChannel(createEntry());
+        this.workers[1].addChannel(createEntry());
+        Assert.assertEquals(2, selector.select(createEntry(), this.workers));
+        this.workers[2].addChannel(createEntry());
+        this.workers[2].addChannel(createEntry());
+        Assert.assertEquals(1, selector.select(createEntry(), this.workers));
+    }
+
+    @Test
+    public void testLeastLatency() throws Exception {
+        WorkerSelector selector = new LeastLatencyWorkerSelector();
+        // All idle. Least sessions wins
+        this.workers[0].addChannel(createEntry());
+        Assert.assertEquals(1, selector.select(createEntry(), this.workers));
+    }
+
+    @Test
+    public void testAddressHash() throws Exception {
+        WorkerSelector selector = new AddressHashWorkerSelector();
+        // Not connected. Falls back onto round-robin
+        ChannelEntry entry = createEntry();
+        Assert.assertEquals(0, selector.select(entry, this.workers));
+        Assert.assertEquals(1, selector.select(entry, this.workers));
+    }
+
+}
@@ -16,6 +16,7 @@ package com.ok2c.lightnio.testprotocol;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.Collection;
 import java.util.List;
 
 import com.ok2c.lightnio.IOEventDispatch;
@@ -46,6 +47,11 @@ public class SimpleClient extends AbstractIOService<DefaultConnectingIOReactor>
          return getIOReactor().connect(address, null, attachment, null);
     }
 
+    public List<SessionRequest> openConnections(
+            final Collection<InetSocketAddress> addresses, final Object attachment) {
+         return getIOReactor().connect(addresses, null, attachment, null);
+    }
+
     public List<ExceptionEvent> getAuditLog() {
         return getIOReactor().getAuditLog();
     }
@@ -21,6 +21,7 @@ import java.util.List;
 import com.ok2c.lightnio.IOEventDispatch;
 import com.ok2c.lightnio.IOReactorExceptionHandler;
 import com.ok2c.lightnio.ListenerEndpoint;
+import com.ok2c.lightnio.impl.AcceptMetrics;
 import com.ok2c.lightnio.impl.DefaultListeningIOReactor;
 import com.ok2c.lightnio.impl.ExceptionEvent;
 import com.ok2c.lightnio.impl.IOReactorConfig;
@@ -54,6 +55,10 @@ public class SimpleServer extends AbstractIOService<DefaultListeningIOReactor>{
         super.start(handler);
     }
 
+    public AcceptMetrics getAcceptMetrics() {
+        return getIOReactor().getAcceptMetrics();
+    }
+
     public List<ExceptionEvent> getAuditLog() {
         return getIOReactor().getAuditLog();
     }